@@ -0,0 +1,104 @@
+package com.example.demo;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * ベンチマーク用の組み込みH2
+ * schema.sqlでテーブルを作成し、指定件数のデータを投入する
+ */
+public final class BenchmarkDatabase {
+
+	/** 投入時のバッチサイズ */
+	private static final int BATCH_SIZE = 10_000;
+
+	/** 期限の基準日時 1件ごとに1分ずつずらす */
+	public static final LocalDateTime BASE_DEADLINE = LocalDateTime.of(2030, 1, 1, 9, 0);
+
+	private BenchmarkDatabase() {
+	}
+
+	/**
+	 * schema.sqlとタスクタイプ、権限のマスタだけを投入したDBを作成
+	 * アプリと同じくHikariCPのコネクションプール経由で接続する
+	 * @return
+	 */
+	public static HikariDataSource create() {
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setJdbcUrl("jdbc:h2:mem:bench-" + UUID.randomUUID());
+		dataSource.setUsername("sa");
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("INSERT INTO task_type VALUES(1, '緊急', '最優先で取り掛かるべきタスク'), "
+				+ "(2, '重要', '期限に間に合わせるべきタスク'), (3, 'できれば', '今後やってみたいアイデア')");
+		jdbcTemplate.update("INSERT INTO authority VALUES('USER', 10), ('STAFF', 20), ('ADMIN', 30)");
+		return dataSource;
+	}
+
+	/**
+	 * プールを閉じる 最後のコネクションが閉じた時点でインメモリDBも破棄される
+	 * @param dataSource
+	 */
+	public static void shutdown(HikariDataSource dataSource) {
+		dataSource.close();
+	}
+
+	/**
+	 * タスクを投入 idは1からcountまで、タスクタイプは1〜3の順に割り当てる
+	 * @param jdbcTemplate
+	 * @param count
+	 */
+	public static void loadTasks(JdbcTemplate jdbcTemplate, int count) {
+		List<Object[]> args = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < count; i++) {
+			args.add(new Object[] { i % 100 + 1, i % 3 + 1, "タスク" + i, "ベンチマーク用のタスク詳細 " + i,
+					BASE_DEADLINE.plusMinutes(i) });
+			if (args.size() == BATCH_SIZE) {
+				insertTasks(jdbcTemplate, args);
+				args.clear();
+			}
+		}
+		insertTasks(jdbcTemplate, args);
+	}
+
+	/**
+	 * ユーザーを投入 3件に1件を無効ユーザーにする
+	 * @param jdbcTemplate
+	 * @param count
+	 */
+	public static void loadUsers(JdbcTemplate jdbcTemplate, int count) {
+		List<Object[]> args = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < count; i++) {
+			args.add(new Object[] { "ユーザー" + i, "user" + i + "@example.com", "pass" + i, i % 3 != 1,
+					i % 50 == 0 ? "ADMIN" : "USER", "key" + i });
+			if (args.size() == BATCH_SIZE) {
+				insertUsers(jdbcTemplate, args);
+				args.clear();
+			}
+		}
+		insertUsers(jdbcTemplate, args);
+	}
+
+	private static void insertTasks(JdbcTemplate jdbcTemplate, List<Object[]> args) {
+		if (!args.isEmpty()) {
+			jdbcTemplate.batchUpdate(
+					"INSERT INTO task(user_id, type_id, title, detail, deadline) VALUES(?, ?, ?, ?, ?)", args);
+		}
+	}
+
+	private static void insertUsers(JdbcTemplate jdbcTemplate, List<Object[]> args) {
+		if (!args.isEmpty()) {
+			jdbcTemplate.batchUpdate("INSERT INTO user(username, email, password, enabled, authority_id, tempkey) "
+					+ "VALUES(?, ?, ?, ?, ?, ?)", args);
+		}
+	}
+}
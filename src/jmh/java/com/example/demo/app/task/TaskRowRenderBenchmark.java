@@ -0,0 +1,103 @@
+package com.example.demo.app.task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskType;
+
+/**
+ * タスク一覧の表の描画の比較
+ * 1回の呼び出しでROWS行を描画するため、スコアは行/秒、gc.alloc.rate.normは1行あたりのバイト数になる
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskRowRenderBenchmark {
+
+	static final int ROWS = 10_000;
+
+	//index.htmlの表の部分 変更前は各行をその場で描画し、変更後は描画済みの行を埋め込む
+	private static final String RENDER_TABLE = "<table><th:block th:each=\"obj : ${list}\">"
+			+ "<tr th:replace=\"task/row :: row\"></tr></th:block></table>";
+	private static final String CACHED_TABLE = "<table><th:block th:each=\"obj : ${list}\" "
+			+ "th:utext=\"${rowCache.render(obj)}\"></th:block></table>";
+
+	private SpringTemplateEngine templateEngine;
+	private Context context;
+
+	@Setup
+	public void setup() {
+		ClassLoaderTemplateResolver files = new ClassLoaderTemplateResolver();
+		files.setPrefix("templates/");
+		files.setSuffix(".html");
+		files.setCharacterEncoding("UTF-8");
+		files.setCheckExistence(true);
+		files.setOrder(1);
+		StringTemplateResolver strings = new StringTemplateResolver();
+		strings.setOrder(2);
+		templateEngine = new SpringTemplateEngine();
+		templateEngine.addTemplateResolver(files);
+		templateEngine.addTemplateResolver(strings);
+
+		TaskType type = new TaskType();
+		type.setId(1);
+		type.setType("緊急");
+		List<Task> list = new ArrayList<>(ROWS);
+		for (int i = 1; i <= ROWS; i++) {
+			Task task = new Task();
+			task.setId(i);
+			task.setUserId(1);
+			task.setTypeId(1);
+			task.setTaskType(type);
+			task.setTitle("タスク" + i);
+			task.setDetail("詳細" + i);
+			task.setDeadline(LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(i));
+			list.add(task);
+		}
+
+		context = new Context();
+		context.setVariable("list", list);
+		context.setVariable("contextPath", "");
+		context.setVariable("rowCache", new TaskRowCache(templateEngine, "", ROWS));
+	}
+
+	/**
+	 * 変更前: 全行を毎回描画
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public String renderRows() {
+		return templateEngine.process(RENDER_TABLE, context);
+	}
+
+	/**
+	 * 変更後: 描画済みの行を埋め込む（全行がキャッシュにある状態）
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public String cachedRows() {
+		return templateEngine.process(CACHED_TABLE, context);
+	}
+}
@@ -0,0 +1,94 @@
+package com.example.demo.aspect;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.example.demo.entity.TaskType;
+import com.example.demo.repository.TaskTypeDao;
+import com.example.demo.repository.TaskTypeDaoImpl;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * MethodMetricsInterceptorで計測した場合の1呼び出しあたりのオーバーヘッド
+ * DBに問い合わせないTaskTypeDao（メモリ上のキャッシュ）を対象に、
+ * 直接呼び出し、アスペクトなしのプロキシ、計測ありのプロキシを比較する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodMetricsBenchmark {
+
+	private HikariDataSource db;
+	private TaskTypeDao direct;
+	private TaskTypeDao proxy;
+	private TaskTypeDao measured;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		TaskTypeDaoImpl target = new TaskTypeDaoImpl(new JdbcTemplate(db));
+		target.findAll();
+		direct = target;
+
+		ProxyFactory plain = new ProxyFactory(target);
+		plain.setProxyTargetClass(true);
+		proxy = (TaskTypeDao) plain.getProxy();
+
+		MeterRegistry registry = new SimpleMeterRegistry();
+		ProxyFactory factory = new ProxyFactory(target);
+		factory.setProxyTargetClass(true);
+		factory.addAdvisor(MethodMetricsConfig.advisor(new MethodMetricsInterceptor(() -> registry)));
+		measured = (TaskTypeDao) factory.getProxy();
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public Optional<TaskType> direct() {
+		return direct.findById(2);
+	}
+
+	@Benchmark
+	public Optional<TaskType> proxy() {
+		return proxy.findById(2);
+	}
+
+	@Benchmark
+	public Optional<TaskType> measured() {
+		return measured.findById(2);
+	}
+
+	/**
+	 * 同じメソッドを複数スレッドから呼び出した場合（ヒストグラムへの書き込みの競合）
+	 */
+	@Benchmark
+	@Threads(4)
+	public Optional<TaskType> measuredContended() {
+		return measured.findById(2);
+	}
+}
@@ -0,0 +1,85 @@
+package com.example.demo.jdbc;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDao;
+import com.example.demo.repository.TaskDaoImpl;
+import com.example.demo.repository.TaskTypeDaoImpl;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * InstrumentedDataSourceで計測した場合のSQL1回あたりのオーバーヘッド
+ * 1件取得と1ページ（21件）取得を、計測なし（direct）と計測あり（instrumented）で比較する
+ * 計測ありはリクエストの集計（SqlRequestStats）にも加算する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstrumentedDataSourceBenchmark {
+
+	@Param({ "true", "false" })
+	public boolean instrumented;
+
+	private HikariDataSource db;
+	private TaskDao dao;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		BenchmarkDatabase.loadTasks(new JdbcTemplate(db), 10_000);
+
+		TaskProperties.Sql config = new TaskProperties().getSql();
+		config.setSlowThreshold(Duration.ofDays(1));
+		JdbcTemplate jdbcTemplate;
+		if (instrumented) {
+			SimpleMeterRegistry registry = new SimpleMeterRegistry();
+			SqlMetrics metrics = new SqlMetrics(() -> registry, config);
+			jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(db, () -> metrics));
+			SqlRequestStats.bind(new SqlRequestStats());
+		} else {
+			jdbcTemplate = new JdbcTemplate(db);
+		}
+		dao = new TaskDaoImpl(jdbcTemplate, new TaskTypeDaoImpl(jdbcTemplate));
+	}
+
+	@TearDown
+	public void tearDown() {
+		SqlRequestStats.bind(null);
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public Optional<Task> findById() {
+		return dao.findById(5_000);
+	}
+
+	@Benchmark
+	public List<Task> findPage() {
+		return dao.findPage(null, 21);
+	}
+}
@@ -0,0 +1,123 @@
+package com.example.demo.reminder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 通知のタイマーの登録・取り消し・刻みの処理時間
+ * 設定の既定値（刻み1秒、512枠）のホイールに、1日以内に発火するpending件のタイマーを載せた状態で計測する
+ * 比較としてDelayQueue（優先度付きキュー）での取り消し（remove）を計測する
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TimingWheelBenchmark {
+
+	private static final long TICK = 1000;
+	private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+	@Param({ "100000", "500000" })
+	public int pending;
+
+	private TimingWheel wheel;
+	private DelayQueue<DelayedTask> queue;
+	private DelayedTask[] queued;
+	private Random random;
+	private long now;
+
+	@Setup
+	public void setup() {
+		random = new Random(42);
+		wheel = new TimingWheel(TICK, 512, Integer.MAX_VALUE, 0);
+		queue = new DelayQueue<>();
+		queued = new DelayedTask[pending];
+		for (int id = 0; id < pending; id++) {
+			long fireAt = 1 + (long) (random.nextDouble() * DAY);
+			wheel.schedule(id, fireAt, fireAt);
+			queued[id] = new DelayedTask(id, fireAt);
+			queue.add(queued[id]);
+		}
+	}
+
+	/**
+	 * 登録済みのidの発火時刻を変える（更新）
+	 */
+	@Benchmark
+	public boolean reschedule() {
+		int id = random.nextInt(pending);
+		long fireAt = now + 1 + (long) (random.nextDouble() * DAY);
+		return wheel.schedule(id, fireAt, fireAt);
+	}
+
+	/**
+	 * 取り消してから登録し直す（削除と登録）
+	 */
+	@Benchmark
+	public boolean cancelAndSchedule() {
+		int id = random.nextInt(pending);
+		wheel.cancel(id);
+		long fireAt = now + 1 + (long) (random.nextDouble() * DAY);
+		return wheel.schedule(id, fireAt, fireAt);
+	}
+
+	@Benchmark
+	public boolean cancelAndScheduleDelayQueue() {
+		int id = random.nextInt(pending);
+		queue.remove(queued[id]);
+		queued[id] = new DelayedTask(id, now + 1 + (long) (random.nextDouble() * DAY));
+		return queue.add(queued[id]);
+	}
+
+	/**
+	 * 1刻み進め、発火したタイマーは1日後に登録し直して件数を保つ
+	 */
+	@Benchmark
+	public int tick() {
+		now += TICK;
+		List<TimingWheel.Expired> expired = wheel.advance(now);
+		for (TimingWheel.Expired timer : expired) {
+			wheel.schedule(timer.getId(), now + DAY, now + DAY);
+		}
+		return expired.size();
+	}
+
+	private static final class DelayedTask implements Delayed {
+
+		private final int id;
+		private final long fireAt;
+
+		DelayedTask(int id, long fireAt) {
+			this.id = id;
+			this.fireAt = fireAt;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(fireAt, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			DelayedTask task = (DelayedTask) other;
+			return fireAt != task.fireAt ? Long.compare(fireAt, task.fireAt) : Integer.compare(id, task.id);
+		}
+	}
+}
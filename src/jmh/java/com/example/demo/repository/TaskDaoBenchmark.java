@@ -0,0 +1,106 @@
+package com.example.demo.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.zaxxer.hikari.HikariDataSource;
+import com.example.demo.entity.Task;
+
+/**
+ * TaskDaoImplの各メソッドの1回あたりの処理時間
+ * 件数は -p tasks=1000 のように指定して絞り込める
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskDaoBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	private int tasks;
+
+	private HikariDataSource db;
+	private JdbcTemplate jdbcTemplate;
+	private TaskDaoImpl dao;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		jdbcTemplate = new JdbcTemplate(db);
+		BenchmarkDatabase.loadTasks(jdbcTemplate, tasks);
+		dao = new TaskDaoImpl(jdbcTemplate, new TaskTypeDaoImpl(jdbcTemplate));
+	}
+
+	/**
+	 * insertで増えた行を削除し、イテレーションごとに件数を揃える
+	 */
+	@TearDown(Level.Iteration)
+	public void removeInserted() {
+		jdbcTemplate.update("DELETE FROM task WHERE id > ?", tasks);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public List<Task> findAll() {
+		return dao.findAll();
+	}
+
+	@Benchmark
+	public Optional<Task> findById() {
+		return dao.findById(randomId());
+	}
+
+	@Benchmark
+	public List<Task> findByType() {
+		return dao.findByType(ThreadLocalRandom.current().nextInt(1, 4));
+	}
+
+	@Benchmark
+	public void insert() {
+		dao.insert(newTask(0));
+	}
+
+	@Benchmark
+	public int update() {
+		return dao.update(newTask(randomId()));
+	}
+
+	private int randomId() {
+		return ThreadLocalRandom.current().nextInt(1, tasks + 1);
+	}
+
+	private Task newTask(int id) {
+		Task task = new Task();
+		task.setId(id);
+		task.setUserId(1);
+		task.setTypeId(2);
+		task.setTitle("ベンチマーク");
+		task.setDetail("更新・登録用のタスク");
+		task.setDeadline(BenchmarkDatabase.BASE_DEADLINE.plusMinutes(id));
+		return task;
+	}
+}
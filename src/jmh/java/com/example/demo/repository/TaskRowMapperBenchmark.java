@@ -0,0 +1,99 @@
+package com.example.demo.repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.zaxxer.hikari.HikariDataSource;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskType;
+
+/**
+ * TaskDaoImpl.findAllの行マッピングの比較
+ * 1回の呼び出しでROWS行を読むため、スコアは行/秒、gc.alloc.rate.normは1行あたりのバイト数になる
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskRowMapperBenchmark {
+
+	static final int ROWS = 1000;
+
+	private static final String FIND_ALL_SQL = "SELECT task.id, user_id, type_id, title, detail, deadline, "
+			+ "type, comment FROM task "
+			+ "INNER JOIN task_type ON task.type_id = task_type.id";
+
+	private HikariDataSource db;
+	private JdbcTemplate jdbcTemplate;
+	private TaskDaoImpl dao;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		jdbcTemplate = new JdbcTemplate(db);
+		BenchmarkDatabase.loadTasks(jdbcTemplate, ROWS);
+		dao = new TaskDaoImpl(jdbcTemplate, new TaskTypeDaoImpl(jdbcTemplate));
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	/**
+	 * 変更前: queryForListで1行ごとにMapを生成し、列名で取り出してキャスト
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public List<Task> mapPerRow() {
+		List<Map<String, Object>> resultList = jdbcTemplate.queryForList(FIND_ALL_SQL);
+		List<Task> list = new ArrayList<>();
+		for (Map<String, Object> result : resultList) {
+			Task task = new Task();
+			task.setId((int) result.get("id"));
+			task.setUserId((int) result.get("user_id"));
+			task.setTypeId((int) result.get("type_id"));
+			task.setTitle((String) result.get("title"));
+			task.setDetail((String) result.get("detail"));
+			task.setDeadline(((Timestamp) result.get("deadline")).toLocalDateTime());
+
+			TaskType type = new TaskType();
+			type.setId((int) result.get("type_id"));
+			type.setType((String) result.get("type"));
+			type.setComment((String) result.get("comment"));
+			task.setTaskType(type);
+
+			list.add(task);
+		}
+		return list;
+	}
+
+	/**
+	 * 変更後: TaskDaoImplのRowMapperで列番号から直接マッピング
+	 */
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public List<Task> rowMapper() {
+		return dao.findAll();
+	}
+}
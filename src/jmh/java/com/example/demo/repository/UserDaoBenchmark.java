@@ -0,0 +1,69 @@
+package com.example.demo.repository;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.zaxxer.hikari.HikariDataSource;
+import com.example.demo.entity.User;
+
+/**
+ * UserDaoImplの参照系メソッドの1回あたりの処理時間
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserDaoBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	private int users;
+
+	private HikariDataSource db;
+	private UserDaoImpl dao;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(db);
+		BenchmarkDatabase.loadUsers(jdbcTemplate, users);
+		dao = new UserDaoImpl(jdbcTemplate, event -> {});
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public List<User> findAll() {
+		return dao.findAll();
+	}
+
+	@Benchmark
+	public List<User> findActiveUsers() {
+		return dao.findActiveUsers();
+	}
+
+	@Benchmark
+	public User findById() {
+		return dao.findById(ThreadLocalRandom.current().nextInt(1, users + 1));
+	}
+}
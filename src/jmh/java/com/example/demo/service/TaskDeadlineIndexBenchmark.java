@@ -0,0 +1,110 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.example.demo.config.TaskProperties;
+import com.example.demo.repository.TaskDaoImpl;
+import com.example.demo.repository.TaskTypeDaoImpl;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * 期限順のインデックスとSQL（idx_task_deadline、idx_task_type_deadlineを使うORDER BY deadline）の比較
+ * どちらもタスクのidのみを取り出す 期限は1件ごとに1分ずつずらしてあるため、24時間以内は1440件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class TaskDeadlineIndexBenchmark {
+
+	private static final int LIMIT = 100;
+
+	private static final String DUE_SQL = "SELECT id FROM task WHERE deadline >= ? AND deadline < ? "
+			+ "ORDER BY deadline, id LIMIT ?";
+	private static final String OVERDUE_SQL = "SELECT id FROM task WHERE deadline < ? ORDER BY deadline, id LIMIT ?";
+	private static final String URGENT_BY_TYPE_SQL = "SELECT id FROM task WHERE type_id = ? AND deadline >= ? "
+			+ "ORDER BY type_id, deadline, id LIMIT ?";
+
+	@Param({ "1000000" })
+	public int tasks;
+
+	private HikariDataSource db;
+	private JdbcTemplate jdbcTemplate;
+	private TaskDeadlineIndex index;
+
+	/** 全体の中ほどを現在とする */
+	private LocalDateTime now;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		jdbcTemplate = new JdbcTemplate(db);
+		BenchmarkDatabase.loadTasks(jdbcTemplate, tasks);
+		TaskProperties properties = new TaskProperties();
+		index = new TaskDeadlineIndex(new TaskDaoImpl(jdbcTemplate, new TaskTypeDaoImpl(jdbcTemplate)), properties);
+		index.afterSingletonsInstantiated();
+		now = BenchmarkDatabase.BASE_DEADLINE.plusMinutes(tasks / 2);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public List<Integer> dueIndex() {
+		return index.findBetween(now, now.plusHours(24), LIMIT);
+	}
+
+	@Benchmark
+	public List<Integer> dueSql() {
+		return jdbcTemplate.queryForList(DUE_SQL, Integer.class, now, now.plusHours(24), LIMIT);
+	}
+
+	@Benchmark
+	public List<Integer> overdueIndex() {
+		return index.findBefore(now, LIMIT);
+	}
+
+	@Benchmark
+	public List<Integer> overdueSql() {
+		return jdbcTemplate.queryForList(OVERDUE_SQL, Integer.class, now, LIMIT);
+	}
+
+	@Benchmark
+	public Map<Integer, List<Integer>> urgentByTypeIndex() {
+		return index.findFirstByType(now, 5);
+	}
+
+	@Benchmark
+	public Map<Integer, List<Integer>> urgentByTypeSql() {
+		Map<Integer, List<Integer>> result = new TreeMap<>();
+		for (int typeId = 1; typeId <= 3; typeId++) {
+			List<Integer> ids = new ArrayList<>(jdbcTemplate.queryForList(URGENT_BY_TYPE_SQL, Integer.class, typeId, now, 5));
+			result.put(typeId, ids);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,99 @@
+package com.example.demo.service;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+
+/**
+ * 全文検索のインデックスの検索時間
+ * 語彙からランダムに選んだ語でタイトルと詳細を作り、tasks件を登録してから検索する（DBは使わない）
+ * 語彙は20000語のため、1つの語を含むタスクはおよそ tasks × 7 / 20000 件
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class TaskSearchIndexBenchmark {
+
+	private static final int VOCABULARY = 20_000;
+
+	/** 10件に1件のタイトルに含める語 */
+	private static final String COMMON_WORD = "定例会議";
+
+	@Param({ "1000000" })
+	public int tasks;
+
+	private TaskSearchIndex index;
+	private String[] words;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		words = new String[VOCABULARY];
+		for (int i = 0; i < VOCABULARY; i++) {
+			StringBuilder word = new StringBuilder();
+			int length = 2 + random.nextInt(3);
+			for (int c = 0; c < length; c++) {
+				//カタカナと常用漢字の範囲の文字を混ぜる
+				word.append(random.nextBoolean()
+						? (char) ('ア' + random.nextInt(80))
+						: (char) ('一' + random.nextInt(2000)));
+			}
+			words[i] = word.toString();
+		}
+
+		index = new TaskSearchIndex(null, new TaskProperties());
+		for (int id = 1; id <= tasks; id++) {
+			Task task = new Task();
+			task.setId(id);
+			task.setTitle((id % 10 == 0 ? COMMON_WORD : word(random)) + "の" + word(random));
+			task.setDetail(word(random) + "を" + word(random) + "に、" + word(random) + "と" + word(random)
+					+ "で" + word(random) + "する");
+			index.add(task);
+		}
+	}
+
+	private String word(Random random) {
+		return words[random.nextInt(VOCABULARY)];
+	}
+
+	/**
+	 * 約350件が含む語
+	 */
+	@Benchmark
+	public int[] rareWord() {
+		return index.search(words[123], 20);
+	}
+
+	/**
+	 * 2語の両方を含むもの（ほぼ0件）
+	 */
+	@Benchmark
+	public int[] twoWords() {
+		return index.search(words[123] + " " + words[456], 20);
+	}
+
+	/**
+	 * 10万件が含む語（上位20件を選ぶ）
+	 */
+	@Benchmark
+	public int[] commonWord() {
+		return index.search(COMMON_WORD, 20);
+	}
+}
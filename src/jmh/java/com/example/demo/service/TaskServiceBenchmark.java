@@ -0,0 +1,125 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.example.demo.config.TaskProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDaoImpl;
+import com.example.demo.repository.TaskTypeDaoImpl;
+
+/**
+ * TaskServiceImplからDBまでを通した処理時間
+ * 画面で使う呼び出し（一覧1ページ、1件取得、絞り込み、登録、更新）を対象とする
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskServiceBenchmark {
+
+	private static final int PAGE_SIZE = 20;
+
+	@Param({ "1000", "100000", "1000000" })
+	private int tasks;
+
+	private HikariDataSource db;
+	private JdbcTemplate jdbcTemplate;
+	private TaskService service;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		jdbcTemplate = new JdbcTemplate(db);
+		BenchmarkDatabase.loadTasks(jdbcTemplate, tasks);
+		TaskTypeDaoImpl taskTypeDao = new TaskTypeDaoImpl(jdbcTemplate);
+		TaskProperties properties = new TaskProperties();
+		TaskDaoImpl dao = new TaskDaoImpl(jdbcTemplate, taskTypeDao);
+		//検索・期限のインデックスは読み込まない（このベンチマークでは使わない）
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(db));
+		service = new TaskServiceImpl(dao, taskTypeDao, transactionTemplate, properties, new TaskCache(properties),
+				event -> {}, new TaskSearchIndex(dao, properties), new TaskDeadlineIndex(dao, properties),
+				new TaskWriteBehind(dao, transactionTemplate, properties));
+	}
+
+	@TearDown(Level.Iteration)
+	public void removeInserted() {
+		jdbcTemplate.update("DELETE FROM task WHERE id > ?", tasks);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public TaskPage findPage() {
+		return service.findPage(null, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public TaskPage findPageByType() {
+		return service.findPageByType(ThreadLocalRandom.current().nextInt(1, 4), null, PAGE_SIZE);
+	}
+
+	/**
+	 * 1件取得 キャッシュの上限（既定1万件）を超える件数ではミスが多くなる
+	 */
+	@Benchmark
+	public Optional<Task> getTask() {
+		return service.getTask(randomId());
+	}
+
+	@Benchmark
+	public List<Task> findByType() {
+		return service.findByType(ThreadLocalRandom.current().nextInt(1, 4));
+	}
+
+	@Benchmark
+	public void insert() {
+		service.insert(newTask(0));
+	}
+
+	@Benchmark
+	public void update() {
+		service.update(newTask(randomId()));
+	}
+
+	private int randomId() {
+		return ThreadLocalRandom.current().nextInt(1, tasks + 1);
+	}
+
+	private Task newTask(int id) {
+		Task task = new Task();
+		task.setId(id);
+		task.setUserId(1);
+		task.setTypeId(2);
+		task.setTitle("ベンチマーク");
+		task.setDetail("更新・登録用のタスク");
+		task.setDeadline(BenchmarkDatabase.BASE_DEADLINE.plusMinutes(id));
+		return task;
+	}
+}
@@ -0,0 +1,156 @@
+package com.example.demo.service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDaoImpl;
+import com.example.demo.repository.TaskTypeDaoImpl;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * 1件登録のスループット（16スレッドから同時に登録）
+ * writeBehind=falseは1件ごとに登録・コミットする従来の処理、trueはまとめ書き
+ * roundTrip（マイクロ秒）を指定すると、SQLの実行とコミットのたびにその時間だけ待ち、ネットワーク越しのDBを模す
+ * （組み込みのH2は1回の往復とコミットがほぼ無料のため、0ではまとめる効果が出ない）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class TaskWriteBehindBenchmark {
+
+	@Param({ "false", "true" })
+	private boolean writeBehind;
+
+	/** まとめ書きで後続を待つ時間（ミリ秒） */
+	@Param({ "0", "2" })
+	private int linger;
+
+	@Param({ "0", "500" })
+	private int roundTrip;
+
+	private HikariDataSource db;
+	private JdbcTemplate jdbcTemplate;
+	private TaskWriteBehind writer;
+	private TaskService service;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		DataSource dataSource = roundTrip == 0 ? db : new RoundTripDataSource(db, roundTrip);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		TaskTypeDaoImpl taskTypeDao = new TaskTypeDaoImpl(jdbcTemplate);
+		TaskProperties properties = new TaskProperties();
+		properties.getWriteBehind().setEnabled(writeBehind);
+		properties.getWriteBehind().setLinger(Duration.ofMillis(linger));
+		TaskDaoImpl dao = new TaskDaoImpl(jdbcTemplate, taskTypeDao);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		writer = new TaskWriteBehind(dao, transactionTemplate, properties);
+		service = new TaskServiceImpl(dao, taskTypeDao, transactionTemplate, properties, new TaskCache(properties),
+				event -> {}, new TaskSearchIndex(dao, properties), new TaskDeadlineIndex(dao, properties), writer);
+		//タスクタイプの読み込みは計測に含めない
+		taskTypeDao.findAll();
+	}
+
+	@TearDown(Level.Iteration)
+	public void removeInserted() {
+		new JdbcTemplate(db).update("DELETE FROM task");
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		writer.destroy();
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public Task insert() {
+		Task task = new Task();
+		task.setUserId(1);
+		task.setTypeId(2);
+		task.setTitle("ベンチマーク");
+		task.setDetail("登録用のタスク");
+		task.setDeadline(BenchmarkDatabase.BASE_DEADLINE);
+		service.insert(task);
+		return task;
+	}
+
+	/**
+	 * SQLの実行（execute*）とコミット・ロールバックのたびに指定時間待つDataSource
+	 */
+	private static class RoundTripDataSource extends DelegatingDataSource {
+
+		private final long roundTripNanos;
+
+		RoundTripDataSource(DataSource target, long roundTripMicros) {
+			super(target);
+			this.roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			Connection connection = super.getConnection();
+			return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+					(proxy, method, args) -> {
+						String name = method.getName();
+						if (name.equals("commit") || name.equals("rollback")) {
+							LockSupport.parkNanos(roundTripNanos);
+						}
+						Object result = invoke(connection, method, args);
+						return result instanceof PreparedStatement ? statement((PreparedStatement) result) : result;
+					});
+		}
+
+		private PreparedStatement statement(PreparedStatement statement) {
+			return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { PreparedStatement.class },
+					(proxy, method, args) -> {
+						if (method.getName().startsWith("execute")) {
+							LockSupport.parkNanos(roundTripNanos);
+						}
+						return invoke(statement, method, args);
+					});
+		}
+
+		private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
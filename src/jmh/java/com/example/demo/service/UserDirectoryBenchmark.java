@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.BenchmarkDatabase;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserDaoImpl;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * UserDirectoryの参照系メソッドの1回あたりの処理時間（UserDaoBenchmarkと同じデータ）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserDirectoryBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	private int users;
+
+	private HikariDataSource db;
+	private UserDirectory directory;
+
+	@Setup
+	public void setup() {
+		db = BenchmarkDatabase.create();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(db);
+		BenchmarkDatabase.loadUsers(jdbcTemplate, users);
+		directory = new UserDirectory(new UserDaoImpl(jdbcTemplate, event -> {}));
+		directory.afterSingletonsInstantiated();
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkDatabase.shutdown(db);
+	}
+
+	@Benchmark
+	public List<User> findAll() {
+		return directory.findAll();
+	}
+
+	@Benchmark
+	public List<User> findActiveUsers() {
+		return directory.findActiveUsers();
+	}
+
+	@Benchmark
+	public Optional<User> findById() {
+		return directory.findById(ThreadLocalRandom.current().nextInt(1, users + 1));
+	}
+
+	@Benchmark
+	public boolean isEnabled() {
+		return directory.isEnabled(ThreadLocalRandom.current().nextInt(1, users + 1));
+	}
+}
@@ -0,0 +1,406 @@
+package com.example.demo.app.task;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskCursor;
+import com.example.demo.service.TaskConflictException;
+import com.example.demo.service.TaskNotFoundException;
+import com.example.demo.service.TaskPage;
+import com.example.demo.service.TaskService;
+import com.example.demo.service.TaskStats;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * タスクのJSON API
+ * レスポンスはJsonGeneratorでレスポンスのストリームへ直接書き出し、本文全体をメモリ上に作らない
+ * fields=id,title のように指定すると、指定した項目のみ出力する
+ */
+@RestController
+@RequestMapping("/api/tasks")
+public class TaskApiController {
+
+    /** 一覧の1ページの件数の上限 */
+    private static final int MAX_LIMIT = 1000;
+
+    private final TaskService taskService;
+
+    private final ObjectMapper objectMapper;
+
+    private final TaskEventStream eventStream;
+
+    private final TaskStats taskStats;
+
+    public TaskApiController(TaskService taskService, ObjectMapper objectMapper, TaskEventStream eventStream,
+            TaskStats taskStats) {
+        this.taskService = taskService;
+        this.objectMapper = objectMapper;
+        this.eventStream = eventStream;
+        this.taskStats = taskStats;
+    }
+
+    /**
+     * タスクの一覧を期限順に1ページ分返す
+     * @param typeId 指定した場合はそのタスクタイプのみ
+     * @param after 次ページ（レスポンスのnext）
+     * @param before 前ページ（レスポンスのprev）
+     * @param limit 1ページの件数
+     * @param fields 出力する項目
+     * @param response {"tasks":[...],"prev":...,"next":...,"total":...} totalは絞り込み無しの場合は概算
+     * @throws IOException
+     */
+    @GetMapping
+    public void list(
+        @RequestParam(name = "typeId", required = false) Integer typeId,
+        @RequestParam(name = "after", required = false) String after,
+        @RequestParam(name = "before", required = false) String before,
+        @RequestParam(name = "limit", defaultValue = "100") int limit,
+        @RequestParam(name = "fields", required = false) String fields,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        TaskCursor cursor = toCursor(after, before);
+        checkLimit(limit);
+        TaskPage page = typeId == null
+                ? taskService.findPage(cursor, limit)
+                : taskService.findPageByType(typeId, cursor, limit);
+
+        try (JsonGenerator generator = createGenerator(response)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("tasks");
+            for (Task task : page.getList()) {
+                writer.write(generator, task);
+            }
+            generator.writeEndArray();
+            generator.writeStringField("prev", page.getPrev() == null ? null : page.getPrev().encode());
+            generator.writeStringField("next", page.getNext() == null ? null : page.getNext().encode());
+            generator.writeNumberField("total", page.getTotal());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * タイトルと詳細を全文検索し、関連度の高い順に返す
+     * @param query 空白区切りの検索語
+     * @param limit 最大件数
+     * @param fields 出力する項目
+     * @param response {"tasks":[...]}
+     * @throws IOException
+     */
+    @GetMapping("/search")
+    public void search(
+        @RequestParam(name = "q") String query,
+        @RequestParam(name = "limit", defaultValue = "100") int limit,
+        @RequestParam(name = "fields", required = false) String fields,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        checkLimit(limit);
+        writeList(response, writer, taskService.search(query, limit));
+    }
+
+    /**
+     * 期限が現在から指定時間以内のタスクを期限の近い順に返す
+     * @param hours 1以上
+     * @param limit 最大件数
+     * @param fields 出力する項目
+     * @param response {"tasks":[...]}
+     * @throws IOException
+     */
+    @GetMapping("/due")
+    public void due(
+        @RequestParam(name = "hours", defaultValue = "24") int hours,
+        @RequestParam(name = "limit", defaultValue = "100") int limit,
+        @RequestParam(name = "fields", required = false) String fields,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        if (hours < 1) {
+            throw badRequest("hoursは1以上で指定してください");
+        }
+        checkLimit(limit);
+        writeList(response, writer, taskService.findDueWithin(Duration.ofHours(hours), limit));
+    }
+
+    /**
+     * 期限を過ぎたタスクを期限の古い順に返す
+     */
+    @GetMapping("/overdue")
+    public void overdue(
+        @RequestParam(name = "limit", defaultValue = "100") int limit,
+        @RequestParam(name = "fields", required = false) String fields,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        checkLimit(limit);
+        writeList(response, writer, taskService.findOverdue(limit));
+    }
+
+    /**
+     * タスクタイプごとに、期限を過ぎていないタスクを期限の近い順にk件ずつ返す
+     * @param response {"タスクタイプのid":[...], ...}
+     */
+    @GetMapping("/urgent")
+    public void urgent(
+        @RequestParam(name = "k", defaultValue = "5") int k,
+        @RequestParam(name = "fields", required = false) String fields,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        checkLimit(k);
+        Map<Integer, List<Task>> tasks = taskService.findMostUrgentByType(k);
+
+        try (JsonGenerator generator = createGenerator(response)) {
+            generator.writeStartObject();
+            for (Map.Entry<Integer, List<Task>> entry : tasks.entrySet()) {
+                generator.writeArrayFieldStart(entry.getKey().toString());
+                for (Task task : entry.getValue()) {
+                    writer.write(generator, task);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * タスクの件数を返す 変更の差分で保持している値のため、DBには問い合わせない
+     * @param response {"total":...,"overdue":...,"types":{"タスクタイプのid":...},"users":{"ユーザーのid":...}}
+     */
+    @GetMapping("/stats")
+    public void stats(HttpServletResponse response) throws IOException {
+        TaskStats.Snapshot stats = taskStats.snapshot();
+
+        try (JsonGenerator generator = createGenerator(response)) {
+            generator.writeStartObject();
+            generator.writeNumberField("total", stats.getTotal());
+            generator.writeNumberField("overdue", stats.getOverdue());
+            writeCounts(generator, "types", stats.getByType());
+            writeCounts(generator, "users", stats.getByUser());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * タスクの登録・更新・削除をServer-Sent Eventsで送る（イベント名はinserted、updated、deleted）
+     * 登録・更新のdataはタスクの全項目、削除のdataは{"id":...}
+     * 再接続時にLast-Event-IDより後のイベントを再送できない場合はresetを送るので、一覧を取得し直す
+     * @param typeId 指定した場合はそのタスクタイプのタスクの変更のみ
+     * @param lastEventId 再接続の場合にブラウザが付ける、最後に受け取ったイベントのid
+     * @return 接続数が上限（task.stream.max-subscribers）を超えた場合は503
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+        @RequestParam(name = "typeId", required = false) Integer typeId,
+        @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+        HttpServletResponse response) {
+
+        SseEmitter emitter = eventStream.subscribe(typeId, lastEventId);
+        if (emitter == null) {
+            //text/event-streamではエラーのJSONを返せないため、ステータスのみ返す
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+        return emitter;
+    }
+
+    /**
+     * タスクを1件返す
+     */
+    @GetMapping("/{id}")
+    public void get(
+        @PathVariable("id") int id,
+        @RequestParam(name = "fields", required = false) String fields,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        write(response, writer, taskService.getTask(id).get());
+    }
+
+    /**
+     * タスクを登録し、201と登録したタスクを返す
+     */
+    @PostMapping
+    public void create(
+        @Valid @RequestBody TaskForm taskForm,
+        @RequestParam(name = "fields", required = false) String fields,
+        UriComponentsBuilder uriBuilder,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        checkType(taskForm.getTypeId());
+        Task task = TaskController.makeTask(taskForm, 0);
+        taskService.insert(task);
+
+        response.setStatus(HttpStatus.CREATED.value());
+        response.setHeader(HttpHeaders.LOCATION,
+                uriBuilder.path("/api/tasks/{id}").buildAndExpand(task.getId()).toUriString());
+        write(response, writer, task);
+    }
+
+    /**
+     * タスクを更新し、更新後のタスクを返す
+     * versionには取得した時点の値を指定し、他で先に更新されていた場合は409を返す
+     */
+    @PutMapping("/{id}")
+    public void update(
+        @PathVariable("id") int id,
+        @Valid @RequestBody TaskForm taskForm,
+        @RequestParam(name = "fields", required = false) String fields,
+        HttpServletResponse response) throws IOException {
+
+        TaskJsonWriter writer = writer(fields);
+        checkType(taskForm.getTypeId());
+        Task task = TaskController.makeTask(taskForm, id);
+        taskService.update(task);
+        write(response, writer, taskService.getTask(id).get());
+    }
+
+    /**
+     * タスクを削除し、204を返す
+     */
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void delete(@PathVariable("id") int id) {
+        taskService.deleteById(id);
+    }
+
+    @ExceptionHandler(TaskNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(TaskNotFoundException e) {
+        return error(HttpStatus.NOT_FOUND, e.getMessage(), null);
+    }
+
+    @ExceptionHandler(TaskConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleConflict(TaskConflictException e) {
+        return error(HttpStatus.CONFLICT, e.getMessage(), null);
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<String, Object>> handleStatus(ResponseStatusException e) {
+        return error(e.getStatus(), e.getReason(), null);
+    }
+
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalid(MethodArgumentNotValidException e) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (FieldError error : e.getBindingResult().getFieldErrors()) {
+            errors.putIfAbsent(error.getField(), error.getDefaultMessage());
+        }
+        return error(HttpStatus.BAD_REQUEST, "入力内容に誤りがあります", errors);
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message, Map<String, String> errors) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", message);
+        if (errors != null) {
+            body.put("errors", errors);
+        }
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private void write(HttpServletResponse response, TaskJsonWriter writer, Task task) throws IOException {
+        try (JsonGenerator generator = createGenerator(response)) {
+            writer.write(generator, task);
+        }
+    }
+
+    /**
+     * {"tasks":[...]}の形で書き出す
+     */
+    private void writeList(HttpServletResponse response, TaskJsonWriter writer, List<Task> tasks) throws IOException {
+        try (JsonGenerator generator = createGenerator(response)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("tasks");
+            for (Task task : tasks) {
+                writer.write(generator, task);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    private void writeCounts(JsonGenerator generator, String name, Map<Integer, Long> counts) throws IOException {
+        generator.writeObjectFieldStart(name);
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            generator.writeNumberField(entry.getKey().toString(), entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private JsonGenerator createGenerator(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+        //出力先のストリームはレスポンスのものなので閉じない
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    private TaskJsonWriter writer(String fields) {
+        try {
+            return TaskJsonWriter.of(fields);
+        } catch (IllegalArgumentException e) {
+            throw badRequest(e.getMessage());
+        }
+    }
+
+    /**
+     * 画面と異なり、不正なカーソルは先頭ページとして扱わずにエラーにする
+     */
+    private TaskCursor toCursor(String after, String before) {
+        if (after != null) {
+            return TaskCursor.parse(after, false).orElseThrow(() -> badRequest("afterの値が不正です"));
+        }
+        if (before != null) {
+            return TaskCursor.parse(before, true).orElseThrow(() -> badRequest("beforeの値が不正です"));
+        }
+        return null;
+    }
+
+    /**
+     * taskテーブルには外部キーが無いため、存在しないタスクタイプはここで弾く
+     */
+    private void checkType(int typeId) {
+        if (taskService.findAllTypes().stream().noneMatch(type -> type.getId() == typeId)) {
+            throw badRequest("存在しないタスクタイプです");
+        }
+    }
+
+    private void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw badRequest("limitは1から" + MAX_LIMIT + "の範囲で指定してください");
+        }
+    }
+
+    private ResponseStatusException badRequest(String message) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
+    }
+}
@@ -1,8 +1,13 @@
 package com.example.demo.app.task;
 
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.springframework.stereotype.Controller;
@@ -14,25 +19,60 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.demo.config.DaoExecutor;
 import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskType;
+import com.example.demo.repository.TaskCursor;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.example.demo.service.TaskCache;
+import com.example.demo.service.TaskConflictException;
+import com.example.demo.service.TaskPage;
 import com.example.demo.service.TaskService;
 
 /**
  * ToDoアプリ
+ * 参照系の画面はCompletableFutureを返し、DBへの問い合わせはDaoExecutorで実行する
  */
 @Controller
 @RequestMapping("/task")
 public class TaskController {
 
+    /** 一覧の1ページあたりの件数 */
+    private static final int PAGE_SIZE = 20;
+
     private final TaskService taskService;
 
-    public TaskController(TaskService taskService) {
+    private final TaskImporter taskImporter;
+
+    private final TaskExporter taskExporter;
+
+    private final TaskCache taskCache;
+
+    private final DaoExecutor daoExecutor;
+
+    public TaskController(TaskService taskService, TaskImporter taskImporter, TaskExporter taskExporter,
+    		TaskCache taskCache, DaoExecutor daoExecutor) {
         this.taskService = taskService;
+        this.taskImporter = taskImporter;
+        this.taskExporter = taskExporter;
+        this.taskCache = taskCache;
+        this.daoExecutor = daoExecutor;
     }
 
 
+    /**
+     * 画面のタスクタイプの選択肢
+     * @return
+     */
+    @ModelAttribute("taskTypes")
+    public List<TaskType> taskTypes() {
+        return taskService.findAllTypes();
+    }
+
     /**
      * タスクの一覧を表示します
      * @param taskForm
@@ -40,18 +80,23 @@ public class TaskController {
      * @return resources/templates下のHTMLファイル名
      */
     @GetMapping
-    public String task(TaskForm taskForm, Model model) {
+    public CompletableFuture<String> task(
+    	TaskForm taskForm,
+    	@RequestParam(name = "after", required = false) String after,
+    	@RequestParam(name = "before", required = false) String before,
+        Model model) {
 
     	//新規登録か更新かを判断する仕掛け
         taskForm.setNewTask(true);
 
-        //Taskのリストを取得する
-        List<Task> list = taskService.findAll();
-
-        model.addAttribute("list", list);
-        model.addAttribute("title", "タスク一覧");
-
-        return "task/index";
+        //Taskの一覧を1ページ分取得する
+        TaskCursor cursor = toCursor(after, before);
+        return daoExecutor.supply(() -> taskService.findPage(cursor, PAGE_SIZE))
+        		.thenApply(page -> {
+        			addPage(model, page);
+        			model.addAttribute("title", "タスク一覧");
+        			return "task/index";
+        		});
     }
 
     /**
@@ -82,13 +127,75 @@ public class TaskController {
         } else {
             taskForm.setNewTask(true);
             model.addAttribute("taskForm", taskForm);
-            List<Task> list = taskService.findAll();
-            model.addAttribute("list", list);
+            addPage(model, taskService.findPage(null, PAGE_SIZE));
             model.addAttribute("title", "タスク一覧（バリデーション）");
             return "task/index";
         }
     }
 
+    /**
+     * CSVまたはJSONのファイルからタスクを一括登録
+     * @param file
+     * @param redirectAttributes
+     * @return
+     * @throws IOException
+     */
+    @PostMapping("/import")
+    public String importTasks(
+    	@RequestParam("file") MultipartFile file,
+    	RedirectAttributes redirectAttributes) throws IOException {
+
+        TaskImportResult result = taskImporter.importFrom(file);
+
+        redirectAttributes.addFlashAttribute("complete",
+        		result.getImported() + "件登録しました（エラー" + result.getErrorCount() + "件）");
+        redirectAttributes.addFlashAttribute("importErrors", result.getErrors());
+        return "redirect:/task";
+    }
+
+    /**
+     * タスクをCSVまたはNDJSONでダウンロード
+     * 1件ずつレスポンスに書き出すため、件数が多くても全件をメモリに載せない
+     * @param format csv または ndjson
+     * @param typeId 指定した場合はそのタスクタイプのみ
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/export")
+    public void export(
+    	@RequestParam(name = "format", defaultValue = "csv") String format,
+    	@RequestParam(name = "typeId", required = false) Integer typeId,
+    	HttpServletResponse response) throws IOException {
+
+        if ("ndjson".equals(format)) {
+            response.setContentType("application/x-ndjson;charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"tasks.ndjson\"");
+            taskExporter.exportNdjson(typeId, response.getOutputStream());
+        } else {
+            response.setContentType("text/csv;charset=UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"tasks.csv\"");
+            taskExporter.exportCsv(typeId, response.getOutputStream());
+        }
+    }
+
+    /**
+     * タスク1件取得のキャッシュの統計をJSONで返す
+     * @return ヒット、ミス、破棄の件数など
+     */
+    @GetMapping("/cache/stats")
+    @ResponseBody
+    public Map<String, Object> cacheStats() {
+        CacheStats stats = taskCache.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", taskCache.size());
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("averageLoadPenaltyNanos", stats.averageLoadPenalty());
+        return map;
+    }
+
     /**
      * 一件タスクデータを取得し、フォーム内に表示
      * @param taskForm
@@ -97,29 +204,25 @@ public class TaskController {
      * @return
      */
     @GetMapping("/{id}")
-    public String showUpdate(
+    public CompletableFuture<String> showUpdate(
     	TaskForm taskForm,
         @PathVariable int id,
         Model model) {
 
     	//Taskを取得(Optionalでラップ)
-        Optional<Task> taskOpt = taskService.getTask(id);
+        return daoExecutor.supply(() -> taskService.getTask(id))
+        		.thenApply(taskOpt -> {
 
-        //TaskFormへの詰め直し
-        Optional<TaskForm> taskFormOpt = taskOpt.map(t -> makeTaskForm(t));
+        			//TaskFormへの詰め直し
+        			Optional<TaskForm> taskFormOpt = taskOpt.map(t -> makeTaskForm(t));
 
-        //TaskFormがnullでなければ中身を取り出し
-        if(taskFormOpt.isPresent()) {
-        	taskForm = taskFormOpt.get();
-        }
-
-        model.addAttribute("taskForm", taskForm);
-        List<Task> list = taskService.findAll();
-        model.addAttribute("list", list);
-        model.addAttribute("taskId", id);
-        model.addAttribute("title", "更新用フォーム");
+        			//更新フォームでは一覧を表示しないため取得しない
+        			model.addAttribute("taskForm", taskFormOpt.orElse(taskForm));
+        			model.addAttribute("taskId", id);
+        			model.addAttribute("title", "更新用フォーム");
 
-        return "task/index";
+        			return "task/index";
+        		});
     }
 
     /**
@@ -143,7 +246,16 @@ public class TaskController {
         	Task task = makeTask(taskForm, taskId);
 
         	//更新処理、フラッシュスコープの使用、リダイレクト（個々の編集ページ）
-        	taskService.update(task);
+        	try {
+        		taskService.update(task);
+        	} catch (TaskConflictException e) {
+        		//他のユーザーの変更を上書きしないよう、最新の内容で更新用フォームを表示し直す
+        		model.addAttribute("taskForm", makeTaskForm(taskService.getTask(taskId).get()));
+        		model.addAttribute("taskId", taskId);
+        		model.addAttribute("title", "更新用フォーム");
+        		model.addAttribute("conflict", e.getMessage() + "。最新の内容を表示しています");
+        		return "task/index";
+        	}
         	redirectAttributes.addFlashAttribute("complete", "変更が完了しました");
             return "redirect:/task/" + taskId;
         } else {
@@ -178,32 +290,31 @@ public class TaskController {
      */
     //1-1　"/duplicate"に対してマッピングを行うアノテーションを記述する
     @GetMapping("/duplicate")
-    public String duplicate(
+    public CompletableFuture<String> duplicate(
     	TaskForm taskForm,
     	//1-2　Requestパラメータから"taskId"の名前でint idを取得するようにする
     	@RequestParam("taskId") int id,
         Model model) {
 
     	//1-3　taskService.getTaskを用いてTaskを取得する
-        Optional<Task> taskOpt = taskService.getTask(id);
+        //タスクと一覧は互いに依存しないため、非同期モードでは並行して取得する
+        CompletableFuture<Optional<Task>> taskFuture = daoExecutor.supply(() -> taskService.getTask(id));
+        CompletableFuture<TaskPage> pageFuture = daoExecutor.supply(() -> taskService.findPage(null, PAGE_SIZE));
 
-        //TaskFormへの詰め直し
-        Optional<TaskForm> taskFormOpt = taskOpt.map(t -> makeTaskForm(t));
+        return taskFuture.thenCombine(pageFuture, (taskOpt, page) -> {
 
-        //TaskFormがnullでなければ中身を取り出し
-        if(taskFormOpt.isPresent()) {
-        	taskForm = taskFormOpt.get();
-        }
+        	//TaskFormへの詰め直し
+        	TaskForm form = taskOpt.map(t -> makeTaskForm(t)).orElse(taskForm);
 
-        //新規登録のためNewTaskにtrueをセット
-        taskForm.setNewTask(true);
+        	//新規登録のためNewTaskにtrueをセット
+        	form.setNewTask(true);
 
-        model.addAttribute("taskForm", taskForm);
-        List<Task> list = taskService.findAll();
-        model.addAttribute("list", list);
-        model.addAttribute("title", "タスク一覧");
+        	model.addAttribute("taskForm", form);
+        	addPage(model, page);
+        	model.addAttribute("title", "タスク一覧");
 
-        return "task/index";
+        	return "task/index";
+        });
     }
 
     /**
@@ -215,22 +326,74 @@ public class TaskController {
      */
     //2-4 "/selectType"に対してマッピングを行うアノテーションを記述する
     @GetMapping("/selectType")
-    public String selectType(
+    public CompletableFuture<String> selectType(
     	TaskForm taskForm,
     	//2-5 Requestパラメータから"typeId"の名前でint idを取得するようにする
     	@RequestParam("typeId") int id,
+    	@RequestParam(name = "after", required = false) String after,
+    	@RequestParam(name = "before", required = false) String before,
         Model model) {
 
     	//新規登録か更新かを判断する仕掛け
         taskForm.setNewTask(true);
 
-        //2-6 taskService.findByTypeを用いてTaskのリストを取得する
-        List<Task> list = taskService.findByType(id);
+        //2-6 taskService.findPageByTypeを用いてTaskの一覧を1ページ分取得する
+        TaskCursor cursor = toCursor(after, before);
+        return daoExecutor.supply(() -> taskService.findPageByType(id, cursor, PAGE_SIZE))
+        		.thenApply(page -> {
+        			addPage(model, page);
+        			model.addAttribute("typeId", id);
+        			model.addAttribute("title", "タスク一覧");
+        			return "task/index";
+        		});
+    }
 
-        model.addAttribute("list", list);
-        model.addAttribute("title", "タスク一覧");
+    /**
+     * タイトルと詳細を全文検索し、関連度の高い順に表示
+     * @param taskForm
+     * @param query 空白区切りの検索語
+     * @param model
+     * @return
+     */
+    @GetMapping("/search")
+    public CompletableFuture<String> search(
+    	TaskForm taskForm,
+    	@RequestParam(name = "q", defaultValue = "") String query,
+        Model model) {
+
+    	//新規登録か更新かを判断する仕掛け
+        taskForm.setNewTask(true);
+
+        return daoExecutor.supply(() -> taskService.search(query, PAGE_SIZE))
+        		.thenApply(list -> {
+        			model.addAttribute("list", list);
+        			model.addAttribute("q", query);
+        			model.addAttribute("title", "検索結果");
+        			return "task/index";
+        		});
+    }
+
+    /**
+     * ページングのリクエストパラメータをカーソルに変換
+     * @param after 次ページ用
+     * @param before 前ページ用
+     * @return 先頭ページの場合はnull
+     */
+    private TaskCursor toCursor(String after, String before) {
+        if (after != null) {
+            return TaskCursor.parse(after, false).orElse(null);
+        }
+        return TaskCursor.parse(before, true).orElse(null);
+    }
 
-        return "task/index";
+    /**
+     * 一覧とページ送り用の情報をModelに格納
+     * @param model
+     * @param page
+     */
+    private void addPage(Model model, TaskPage page) {
+        model.addAttribute("list", page.getList());
+        model.addAttribute("page", page);
     }
 
     /**
@@ -239,7 +402,7 @@ public class TaskController {
      * @param taskId 新規登録の場合は0を指定
      * @return
      */
-    private Task makeTask(TaskForm taskForm, int taskId) {
+    static Task makeTask(TaskForm taskForm, int taskId) {
         Task task = new Task();
         if(taskId != 0) {
         	task.setId(taskId);
@@ -249,6 +412,7 @@ public class TaskController {
         task.setTitle(taskForm.getTitle());
         task.setDetail(taskForm.getDetail());
         task.setDeadline(taskForm.getDeadline());
+        task.setVersion(taskForm.getVersion());
         return task;
     }
 
@@ -265,6 +429,7 @@ public class TaskController {
         taskForm.setTitle(task.getTitle());
         taskForm.setDetail(task.getDetail());
         taskForm.setDeadline(task.getDeadline());
+        taskForm.setVersion(task.getVersion());
         taskForm.setNewTask(false);
 
         return taskForm;
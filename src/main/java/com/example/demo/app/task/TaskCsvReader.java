@@ -0,0 +1,83 @@
+package com.example.demo.app.task;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSV（RFC 4180）を1レコードずつ読み込む
+ * ダブルクォートで囲んだ項目内のカンマ・改行・""に対応し、ファイル全体は保持しない
+ */
+class TaskCsvReader {
+
+	private final Reader reader;
+
+	private int lookahead = -2;
+
+	TaskCsvReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * 次のレコードを読み込む
+	 * @return 項目のリスト ファイルの終わりではnull
+	 * @throws IOException
+	 */
+	List<String> next() throws IOException {
+		int c = read();
+		if (c == -1) {
+			return null;
+		}
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					throw new IOException("ダブルクォートが閉じられていません");
+				}
+				if (c == '"') {
+					if (peek() == '"') {
+						read();
+						field.append('"');
+					} else {
+						quoted = false;
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\r' || c == '\n' || c == -1) {
+				if (c == '\r' && peek() == '\n') {
+					read();
+				}
+				fields.add(field.toString());
+				return fields;
+			} else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+	}
+
+	private int read() throws IOException {
+		if (lookahead != -2) {
+			int c = lookahead;
+			lookahead = -2;
+			return c;
+		}
+		return reader.read();
+	}
+
+	private int peek() throws IOException {
+		if (lookahead == -2) {
+			lookahead = reader.read();
+		}
+		return lookahead;
+	}
+}
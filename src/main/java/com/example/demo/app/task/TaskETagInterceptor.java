@@ -0,0 +1,97 @@
+package com.example.demo.app.task;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import com.example.demo.routing.ReplicaRoute;
+import com.example.demo.service.TaskChangeVersion;
+
+/**
+ * タスク一覧（/task、/task/selectType）の条件付きGET
+ * taskテーブルの変更の版数からETagを作り、If-None-Matchと一致する場合はDBを読まずに304を返す
+ * 版数はDBを読む前に取得するため、読み込み中に他の更新がコミットされても古い一覧に新しいETagが付くことはない
+ * 版数はプライマリのコミットで進むため、ETagを付けた一覧はレプリカ（＠ReadReplica）ではなくプライマリから読む
+ * （遅れているレプリカから読むと、古い一覧に新しいETagが付く）
+ */
+@Component
+public class TaskETagInterceptor implements AsyncHandlerInterceptor {
+
+	/** プライマリから読むように切り替える前のsticky（ReplicaRoute.stickの戻り値）を保持するリクエストの属性 */
+	private static final String PREVIOUS_STICKY = TaskETagInterceptor.class.getName() + ".PREVIOUS_STICKY";
+
+	private final TaskChangeVersion changeVersion;
+
+	public TaskETagInterceptor(TaskChangeVersion changeVersion) {
+		this.changeVersion = changeVersion;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		//非同期処理の再ディスパッチ、完了メッセージ（フラッシュスコープ）付きの画面は対象外
+		if (request.getDispatcherType() != DispatcherType.REQUEST
+				|| !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))
+				|| !CollectionUtils.isEmpty(RequestContextUtils.getInputFlashMap(request))) {
+			return true;
+		}
+		String etag = etag(request);
+		if (etag == null) {
+			return true;
+		}
+		//ブラウザが毎回確認するようにする
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+		if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+			return false;
+		}
+		//DaoExecutorのスレッドにもReplicaRoute.propagateで引き継がれる
+		request.setAttribute(PREVIOUS_STICKY, ReplicaRoute.stick());
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		restore(request);
+	}
+
+	/**
+	 * 非同期処理を開始した場合、afterCompletionは再ディスパッチしたスレッドで呼ばれるため、ここで戻す
+	 */
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+			Object handler) {
+		restore(request);
+	}
+
+	private void restore(HttpServletRequest request) {
+		Object previous = request.getAttribute(PREVIOUS_STICKY);
+		if (previous instanceof Boolean) {
+			request.removeAttribute(PREVIOUS_STICKY);
+			ReplicaRoute.restore((Boolean) previous);
+		}
+	}
+
+	/**
+	 * 絞り込み中はそのタスクタイプの版数、それ以外は全体の版数から作る
+	 * @return typeIdが数値でない場合はnull（画面側のエラー処理に任せる）
+	 */
+	private String etag(HttpServletRequest request) {
+		String typeId = request.getParameter("typeId");
+		if (typeId == null) {
+			return "\"" + changeVersion.getEpoch() + "-" + changeVersion.current() + "\"";
+		}
+		try {
+			int id = Integer.parseInt(typeId);
+			return "\"" + changeVersion.getEpoch() + "-t" + id + "-" + changeVersion.ofType(id) + "\"";
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
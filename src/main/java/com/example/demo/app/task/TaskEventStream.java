@@ -0,0 +1,337 @@
+package com.example.demo.app.task;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskChangedEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * タスクの登録・更新・削除（コミット後）をServer-Sent Eventsで接続中のクライアントに送る
+ * 接続はサーブレットの非同期処理（SseEmitter）で保持し、接続ごとにはスレッドを使わない
+ * イベントは発生時に1回だけJSONに変換して直近task.stream.history件を保持し、接続ごとの送信待ち（task.stream.buffer件まで）に入れる
+ * 送信待ちは少数の送信用のスレッドが接続ごとに順に送り、送信待ちが溢れた接続は遅い受信者として切断する
+ * 再接続時はLast-Event-IDより後のイベントを保持している分から再送し、保持していない場合はresetイベントで一覧の再取得を促す
+ */
+@Component
+public class TaskEventStream implements DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(TaskEventStream.class);
+
+	/** 1回の送信処理で送る件数 他の接続の送信を待たせないよう、超えた分は改めて送る */
+	private static final int DRAIN_LIMIT = 64;
+
+	private static final StreamEvent HEARTBEAT = new StreamEvent(0, null, null, null, null);
+
+	private final ObjectMapper objectMapper;
+
+	private final long timeoutMillis;
+
+	private final int bufferSize;
+
+	private final int maxSubscribers;
+
+	/** 起動ごとに異なる値 イベントのidに含め、再起動前のLast-Event-IDを見分ける */
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+	/** 直近のイベント（リングバッファ） 添字はseq % history.length */
+	private final StreamEvent[] history;
+
+	private final List<Subscriber> subscribers = new ArrayList<>();
+
+	/** 最後に発行したイベントの通番 historyとsubscribersとともにthisで保護する */
+	private long seq;
+
+	private final ScheduledThreadPoolExecutor executor;
+
+	private final Counter evicted;
+
+	public TaskEventStream(TaskProperties properties, ObjectMapper objectMapper, MeterRegistry registry) {
+		TaskProperties.Stream config = properties.getStream();
+		this.objectMapper = objectMapper;
+		this.timeoutMillis = config.getTimeout().toMillis();
+		this.bufferSize = Math.max(1, config.getBuffer());
+		this.maxSubscribers = config.getMaxSubscribers();
+		this.history = new StreamEvent[Math.max(1, config.getHistory())];
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("task-stream-");
+		threadFactory.setDaemon(true);
+		this.executor = new ScheduledThreadPoolExecutor(Math.max(1, config.getSenderThreads()), threadFactory);
+		long heartbeat = config.getHeartbeat().toMillis();
+		if (heartbeat > 0) {
+			executor.scheduleWithFixedDelay(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+		}
+		Gauge.builder("todo.stream.subscribers", this, TaskEventStream::getSubscriberCount)
+				.description("タスクの変更の通知の接続数")
+				.register(registry);
+		this.evicted = Counter.builder("todo.stream.evicted")
+				.description("送信待ちが溢れて切断した接続の数")
+				.register(registry);
+	}
+
+	/**
+	 * 接続を登録し、Last-Event-IDより後のイベントを再送してから以降のイベントを送る
+	 * @param typeId 指定した場合はそのタスクタイプのタスク（変更前を含む）の変更のみ送る
+	 * @param lastEventId 再接続の場合は最後に受け取ったイベントのid
+	 * @return 接続数が上限を超えた場合はnull
+	 */
+	public SseEmitter subscribe(Integer typeId, String lastEventId) {
+		SseEmitter emitter = new SseEmitter(timeoutMillis);
+		return subscribe(emitter, typeId, lastEventId) ? emitter : null;
+	}
+
+	boolean subscribe(SseEmitter emitter, Integer typeId, String lastEventId) {
+		Subscriber subscriber = new Subscriber(emitter, typeId);
+		emitter.onCompletion(() -> remove(subscriber));
+		emitter.onTimeout(() -> {
+			remove(subscriber);
+			emitter.complete();
+		});
+		emitter.onError(e -> remove(subscriber));
+		synchronized (this) {
+			if (subscribers.size() >= maxSubscribers) {
+				return false;
+			}
+			//登録と再送を発行と同じロックの中で行い、取りこぼしと順序の入れ替わりを防ぐ
+			replay(subscriber, lastEventId);
+			subscribers.add(subscriber);
+		}
+		subscriber.schedule();
+		return true;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onChanged(TaskChangedEvent event) {
+		Task task = event.getTask();
+		Task previous = event.getPrevious();
+		String data = toJson(event);
+		List<Subscriber> slow = null;
+		List<Subscriber> ready = new ArrayList<>();
+		synchronized (this) {
+			StreamEvent streamEvent = new StreamEvent(++seq, event.getKind().name().toLowerCase(), data,
+					task == null ? null : task.getTypeId(),
+					previous == null ? null : previous.getTypeId());
+			history[(int) (streamEvent.seq % history.length)] = streamEvent;
+			for (Subscriber subscriber : subscribers) {
+				if (!streamEvent.matches(subscriber.typeId)) {
+					continue;
+				}
+				if (subscriber.queue.offer(streamEvent)) {
+					ready.add(subscriber);
+				} else {
+					if (slow == null) {
+						slow = new ArrayList<>();
+					}
+					slow.add(subscriber);
+				}
+			}
+		}
+		ready.forEach(Subscriber::schedule);
+		if (slow != null) {
+			slow.forEach(this::evict);
+		}
+	}
+
+	public synchronized int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+		List<Subscriber> all;
+		synchronized (this) {
+			all = new ArrayList<>(subscribers);
+			subscribers.clear();
+		}
+		all.forEach(subscriber -> subscriber.emitter.complete());
+	}
+
+	/**
+	 * Last-Event-IDより後のイベントを送信待ちに入れる 保持していない範囲がある場合はresetを送る
+	 */
+	private void replay(Subscriber subscriber, String lastEventId) {
+		if (lastEventId == null || lastEventId.isBlank()) {
+			return;
+		}
+		long last = parseSeq(lastEventId);
+		long oldest = Math.max(1, seq - history.length + 1);
+		if (last < 0 || last > seq || last + 1 < oldest || seq - last > bufferSize) {
+			subscriber.queue.offer(new StreamEvent(seq, "reset", "{}", null, null));
+			return;
+		}
+		for (long s = last + 1; s <= seq; s++) {
+			StreamEvent event = history[(int) (s % history.length)];
+			if (event.matches(subscriber.typeId)) {
+				subscriber.queue.offer(event);
+			}
+		}
+	}
+
+	/**
+	 * @return このプロセスが発行したidでない場合は-1
+	 */
+	private long parseSeq(String lastEventId) {
+		int separator = lastEventId.indexOf('-');
+		if (separator < 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(lastEventId.substring(separator + 1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private void heartbeat() {
+		List<Subscriber> slow = new ArrayList<>();
+		List<Subscriber> ready = new ArrayList<>();
+		synchronized (this) {
+			for (Subscriber subscriber : subscribers) {
+				(subscriber.queue.offer(HEARTBEAT) ? ready : slow).add(subscriber);
+			}
+		}
+		ready.forEach(Subscriber::schedule);
+		slow.forEach(this::evict);
+	}
+
+	/**
+	 * 切断は送信用のスレッドで行う（送信中の接続の完了は送信が終わるまで待つため、発行元のスレッドを止めない）
+	 */
+	private void evict(Subscriber subscriber) {
+		if (remove(subscriber)) {
+			evicted.increment();
+			log.debug("送信待ちが溢れたため切断します typeId={}", subscriber.typeId);
+			executor.execute(subscriber.emitter::complete);
+		}
+	}
+
+	private synchronized boolean remove(Subscriber subscriber) {
+		subscriber.closed = true;
+		return subscribers.remove(subscriber);
+	}
+
+	/**
+	 * 登録・更新はタスクの全項目、削除はidのみ
+	 */
+	private String toJson(TaskChangedEvent event) {
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+			if (event.getTask() == null) {
+				generator.writeStartObject();
+				generator.writeNumberField("id", event.getId());
+				generator.writeEndObject();
+			} else {
+				TaskJsonWriter.ALL.write(generator, event.getTask());
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * 送るイベント JSONは全ての接続で共有する
+	 */
+	private static final class StreamEvent {
+
+		final long seq;
+		final String name;
+		final String data;
+		final Integer typeId;
+		final Integer previousTypeId;
+
+		StreamEvent(long seq, String name, String data, Integer typeId, Integer previousTypeId) {
+			this.seq = seq;
+			this.name = name;
+			this.data = data;
+			this.typeId = typeId;
+			this.previousTypeId = previousTypeId;
+		}
+
+		/**
+		 * 変更前・変更後のどちらかが指定したタスクタイプであれば送る
+		 * 変更前が分からない更新・削除（一括更新など）は全てのタスクタイプに送る
+		 */
+		boolean matches(Integer filter) {
+			if (filter == null) {
+				return true;
+			}
+			if (filter.equals(typeId) || filter.equals(previousTypeId)) {
+				return true;
+			}
+			return previousTypeId == null && !"inserted".equals(name);
+		}
+	}
+
+	private final class Subscriber {
+
+		final SseEmitter emitter;
+		final Integer typeId;
+		final BlockingQueue<StreamEvent> queue = new ArrayBlockingQueue<>(bufferSize);
+
+		/** 送信処理が実行待ち・実行中の場合はtrue（接続ごとに1つまで） */
+		final AtomicBoolean scheduled = new AtomicBoolean();
+
+		volatile boolean closed;
+
+		Subscriber(SseEmitter emitter, Integer typeId) {
+			this.emitter = emitter;
+			this.typeId = typeId;
+		}
+
+		void schedule() {
+			if (!queue.isEmpty() && !closed && scheduled.compareAndSet(false, true)) {
+				executor.execute(this::drain);
+			}
+		}
+
+		private void drain() {
+			try {
+				for (int i = 0; i < DRAIN_LIMIT && !closed; i++) {
+					StreamEvent event = queue.poll();
+					if (event == null) {
+						break;
+					}
+					send(event);
+				}
+			} catch (IOException | IllegalStateException e) {
+				//切断済み、完了済みの接続
+				remove(this);
+				return;
+			} finally {
+				scheduled.set(false);
+			}
+			schedule();
+		}
+
+		private void send(StreamEvent event) throws IOException {
+			if (event == HEARTBEAT) {
+				emitter.send(SseEmitter.event().comment(""));
+			} else {
+				emitter.send(SseEmitter.event().id(epoch + "-" + event.seq).name(event.name).data(event.data));
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.example.demo.app.task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * タスクをCSVまたはNDJSON（1行1オブジェクトのJSON）で出力する
+ * DBから1件読むごとに書き出すため、件数に関わらずメモリ使用量は一定
+ */
+@Component
+public class TaskExporter {
+
+	/** TaskImporterでそのまま取り込めるよう、typeId,title,detail,deadlineの列名を合わせる */
+	static final String CSV_HEADER = "id,userId,typeId,type,title,detail,deadline\r\n";
+
+	private final TaskService taskService;
+	private final ObjectMapper objectMapper;
+
+	public TaskExporter(TaskService taskService, ObjectMapper objectMapper) {
+		this.taskService = taskService;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * CSVで出力する
+	 * @param typeId nullの場合は全件
+	 * @param out
+	 * @throws IOException
+	 */
+	public void exportCsv(Integer typeId, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		writer.write(CSV_HEADER);
+		//ヘッダだけ先に送り、クライアントへすぐに応答を返す
+		writer.flush();
+
+		export(typeId, task -> {
+			try {
+				writer.write(Integer.toString(task.getId()));
+				writer.write(',');
+				writer.write(Integer.toString(task.getUserId()));
+				writer.write(',');
+				writer.write(Integer.toString(task.getTypeId()));
+				writer.write(',');
+				writeCsv(writer, task.getTaskType() == null ? null : task.getTaskType().getType());
+				writer.write(',');
+				writeCsv(writer, task.getTitle());
+				writer.write(',');
+				writeCsv(writer, task.getDetail());
+				writer.write(',');
+				writeCsv(writer, task.getDeadline() == null ? null : task.getDeadline().toString());
+				writer.write("\r\n");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		writer.flush();
+	}
+
+	/**
+	 * NDJSONで出力する
+	 * @param typeId nullの場合は全件
+	 * @param out
+	 * @throws IOException
+	 */
+	public void exportNdjson(Integer typeId, OutputStream out) throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			//出力先のストリームはレスポンスのものなので閉じない
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.flush();
+
+			export(typeId, task -> {
+				try {
+					TaskJsonWriter.ALL.write(generator, task);
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	private void export(Integer typeId, Consumer<Task> action) throws IOException {
+		try {
+			if (typeId == null) {
+				taskService.forEach(action);
+			} else {
+				taskService.forEachByType(typeId, action);
+			}
+		} catch (UncheckedIOException e) {
+			//クライアントの切断などの書き込みエラーはIOExceptionとして返す
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * カンマ、ダブルクォート、改行を含む値はダブルクォートで囲む（RFC 4180）
+	 */
+	static void writeCsv(Writer writer, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+		}
+		if (!quote) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
@@ -28,6 +28,9 @@ public class TaskForm {
 
     // Nakano public to private isNewTask to newTask
     private boolean newTask;
+
+    //更新時に読み込んだ時点の版数（楽観的排他制御） 画面では隠し項目で持ち回る
+    private int version;
     
     public TaskForm() {}
 
@@ -82,4 +85,12 @@ public class TaskForm {
 	public void setNewTask(boolean newTask) {
 		this.newTask = newTask;
 	}
-}
\ No newline at end of file
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.example.demo.app.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一括登録の結果
+ * エラーメッセージは画面に表示する件数までしか保持しない
+ * ファイルの形式の誤りで途中から読めなかった場合は、そこまでの登録件数とその旨のエラーを持つ
+ */
+public class TaskImportResult {
+
+	private static final int MAX_ERRORS = 20;
+
+	private int imported;
+	private int errorCount;
+	private final List<String> errors = new ArrayList<>();
+
+	void addImported(int count) {
+		imported += count;
+	}
+
+	void addError(long row, String message) {
+		errorCount++;
+		if (errors.size() < MAX_ERRORS) {
+			errors.add(row + "件目: " + message);
+		}
+	}
+
+	/**
+	 * ファイルの途中から読めなかった 以降の行は取り込まないため、件数の上限に関わらず保持する
+	 */
+	void addFileError(long row, String message) {
+		errorCount++;
+		errors.add(row + "件目以降を取り込めませんでした: " + message);
+	}
+
+	public int getImported() {
+		return imported;
+	}
+
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	public List<String> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+}
@@ -0,0 +1,215 @@
+package com.example.demo.app.task;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * CSVまたはJSONのファイルからタスクを一括登録する
+ * 1行ずつ読み込んでTaskFormと同じ入力チェックを行い、バッチサイズ分たまるごとに登録する
+ */
+@Component
+public class TaskImporter {
+
+	private final TaskService taskService;
+	private final Validator validator;
+	private final ObjectMapper objectMapper;
+	private final TaskProperties properties;
+
+	public TaskImporter(TaskService taskService, Validator validator, ObjectMapper objectMapper,
+			TaskProperties properties) {
+		this.taskService = taskService;
+		this.validator = validator;
+		this.objectMapper = objectMapper;
+		this.properties = properties;
+	}
+
+	/**
+	 * ファイル名が.jsonの場合はJSON（オブジェクトの配列）、それ以外はヘッダ付きのCSVとして取り込む
+	 * ファイルの形式の誤り（閉じられていないクォート、JSONの構文エラーなど）は例外にせず結果のエラーとして返す
+	 * その場合も、それまでに読み込んだ行は登録する
+	 * @param file
+	 * @return
+	 * @throws IOException ファイルを読み込めない場合
+	 */
+	public TaskImportResult importFrom(MultipartFile file) throws IOException {
+		String name = file.getOriginalFilename();
+		try (InputStream in = file.getInputStream()) {
+			if (name != null && name.toLowerCase().endsWith(".json")) {
+				return importJson(in);
+			}
+			return importCsv(in);
+		}
+	}
+
+	/**
+	 * ヘッダ行（typeId,title,detail,deadline）付きのCSVを取り込む
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public TaskImportResult importCsv(InputStream in) throws IOException {
+		TaskCsvReader reader = new TaskCsvReader(
+				new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+		Batch batch = new Batch();
+
+		List<String> header;
+		try {
+			header = reader.next();
+		} catch (IOException e) {
+			batch.result.addFileError(1, e.getMessage());
+			return batch.finish();
+		}
+		if (header == null) {
+			return batch.finish();
+		}
+		Map<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < header.size(); i++) {
+			//BOM付きのUTF-8にも対応
+			columns.put(header.get(i).replace("\uFEFF", "").trim(), i);
+		}
+
+		long row = 0;
+		List<String> record;
+		while (true) {
+			try {
+				record = reader.next();
+			} catch (IOException e) {
+				batch.result.addFileError(row + 1, e.getMessage());
+				break;
+			}
+			if (record == null) {
+				break;
+			}
+			row++;
+			try {
+				TaskForm taskForm = new TaskForm();
+				String typeId = column(record, columns, "typeId");
+				taskForm.setTypeId(typeId == null ? 0 : Integer.parseInt(typeId.trim()));
+				taskForm.setTitle(column(record, columns, "title"));
+				taskForm.setDetail(column(record, columns, "detail"));
+				String deadline = column(record, columns, "deadline");
+				taskForm.setDeadline(deadline == null ? null : LocalDateTime.parse(deadline.trim()));
+				batch.add(row, taskForm);
+			} catch (NumberFormatException | DateTimeParseException e) {
+				batch.result.addError(row, "値の形式が正しくありません");
+			}
+		}
+		return batch.finish();
+	}
+
+	/**
+	 * TaskFormと同じ項目を持つオブジェクトの配列を取り込む
+	 * オブジェクトでない要素はその行のエラーとし、続く要素を取り込む
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public TaskImportResult importJson(InputStream in) throws IOException {
+		Batch batch = new Batch();
+		//読み終えた要素の数
+		long row = 0;
+		try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				batch.result.addFileError(1, "JSONは配列で指定してください");
+				return batch.finish();
+			}
+			JsonToken token;
+			while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+				if (token == null) {
+					batch.result.addFileError(row + 1, "JSONの配列が閉じられていません");
+					break;
+				}
+				if (token != JsonToken.START_OBJECT) {
+					parser.skipChildren();
+					batch.result.addError(++row, "オブジェクトで指定してください");
+					continue;
+				}
+
+				//1件分だけをツリーとして読み込む
+				JsonNode node = parser.readValueAsTree();
+				row++;
+				try {
+					batch.add(row, objectMapper.treeToValue(node, TaskForm.class));
+				} catch (JsonProcessingException e) {
+					batch.result.addError(row, "値の形式が正しくありません");
+				}
+			}
+		} catch (JsonProcessingException e) {
+			//構文エラー 読み込み中の要素以降は取り込まない
+			batch.result.addFileError(row + 1, "JSONの形式が正しくありません");
+		}
+		return batch.finish();
+	}
+
+	private String column(List<String> record, Map<String, Integer> columns, String name) {
+		Integer index = columns.get(name);
+		if (index == null || index >= record.size() || record.get(index).isEmpty()) {
+			return null;
+		}
+		return record.get(index);
+	}
+
+	/**
+	 * 入力チェックを通ったタスクをバッチサイズまでためて登録する
+	 */
+	private class Batch {
+
+		private final TaskImportResult result = new TaskImportResult();
+		private final int size = Math.max(1, properties.getBatchSize());
+		private final List<Task> tasks = new ArrayList<>(size);
+
+		void add(long row, TaskForm taskForm) {
+			Set<ConstraintViolation<TaskForm>> violations = validator.validate(taskForm);
+			if (!violations.isEmpty()) {
+				result.addError(row, violations.stream()
+						.map(ConstraintViolation::getMessage)
+						.sorted()
+						.collect(Collectors.joining(" ")));
+				return;
+			}
+			tasks.add(TaskController.makeTask(taskForm, 0));
+			if (tasks.size() == size) {
+				flush();
+			}
+		}
+
+		TaskImportResult finish() {
+			flush();
+			return result;
+		}
+
+		private void flush() {
+			if (!tasks.isEmpty()) {
+				taskService.insertAll(tasks);
+				result.addImported(tasks.size());
+				tasks.clear();
+			}
+		}
+	}
+}
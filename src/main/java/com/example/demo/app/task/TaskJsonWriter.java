@@ -0,0 +1,112 @@
+package com.example.demo.app.task;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.example.demo.entity.Task;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * タスク1件をJsonGeneratorで直接書き出す（エンティティをMapやJsonNodeに変換しない）
+ * 書き出す項目を絞り込めるため、detailなどの大きい項目を省略できる
+ */
+final class TaskJsonWriter {
+
+	/**
+	 * JSONの項目 キーはCSVの列名と同じ
+	 */
+	enum Field {
+		ID("id"), USER_ID("userId"), TYPE_ID("typeId"), TYPE("type"), TITLE("title"), DETAIL("detail"), DEADLINE("deadline"),
+		VERSION("version");
+
+		/** キーはエスケープ済みのものを使い回す */
+		private final SerializableString key;
+
+		Field(String key) {
+			this.key = new SerializedString(key);
+		}
+
+		String key() {
+			return key.getValue();
+		}
+	}
+
+	/** 全項目 */
+	static final TaskJsonWriter ALL = new TaskJsonWriter(EnumSet.allOf(Field.class));
+
+	private final Set<Field> fields;
+
+	private TaskJsonWriter(Set<Field> fields) {
+		this.fields = Collections.unmodifiableSet(fields);
+	}
+
+	/**
+	 * fields=パラメータの値（カンマ区切りのキー）から作成する
+	 * @param fields nullまたは空の場合は全項目
+	 * @return
+	 * @throws IllegalArgumentException 存在しない項目を指定した場合
+	 */
+	static TaskJsonWriter of(String fields) {
+		if (fields == null || fields.isBlank()) {
+			return ALL;
+		}
+		EnumSet<Field> set = EnumSet.noneOf(Field.class);
+		for (String name : fields.split(",")) {
+			set.add(field(name.trim()));
+		}
+		return new TaskJsonWriter(set);
+	}
+
+	private static Field field(String name) {
+		for (Field field : Field.values()) {
+			if (field.key().equals(name)) {
+				return field;
+			}
+		}
+		throw new IllegalArgumentException("存在しない項目です: " + name);
+	}
+
+	/**
+	 * 1件をJSONのオブジェクトとして書き出す 項目の順序はFieldの定義順
+	 * @param generator
+	 * @param task
+	 * @throws IOException
+	 */
+	void write(JsonGenerator generator, Task task) throws IOException {
+		generator.writeStartObject();
+		for (Field field : fields) {
+			generator.writeFieldName(field.key);
+			switch (field) {
+			case ID:
+				generator.writeNumber(task.getId());
+				break;
+			case USER_ID:
+				generator.writeNumber(task.getUserId());
+				break;
+			case TYPE_ID:
+				generator.writeNumber(task.getTypeId());
+				break;
+			case TYPE:
+				generator.writeString(task.getTaskType() == null ? null : task.getTaskType().getType());
+				break;
+			case TITLE:
+				generator.writeString(task.getTitle());
+				break;
+			case DETAIL:
+				generator.writeString(task.getDetail());
+				break;
+			case DEADLINE:
+				generator.writeString(task.getDeadline() == null ? null : task.getDeadline().toString());
+				break;
+			case VERSION:
+				generator.writeNumber(task.getVersion());
+				break;
+			}
+		}
+		generator.writeEndObject();
+	}
+}
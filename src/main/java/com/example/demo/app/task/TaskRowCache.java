@@ -0,0 +1,121 @@
+package com.example.demo.app.task;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.servlet.ServletContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * タスク一覧の1行（task/row.html）の描画済みHTMLのキャッシュ
+ * idと、行に表示する値（タイトル、期限、タスクタイプ）を行の版として保持し、版が一致する場合のみ再利用する
+ * 登録・更新・削除のコミット後にそのidを破棄する
+ * 破棄と同時に古い行を描画していた場合も、次の表示で版が一致せず描画し直すため、古いHTMLが表示されることはない
+ */
+@Component
+public class TaskRowCache {
+
+	static final String ROW_TEMPLATE = "task/row";
+
+	private static final Set<String> ROW_FRAGMENT = Set.of("row");
+
+	private final ITemplateEngine templateEngine;
+
+	private final String contextPath;
+
+	private final Cache<Integer, RenderedRow> cache;
+
+	@Autowired
+	public TaskRowCache(ITemplateEngine templateEngine, ServletContext servletContext, TaskProperties properties) {
+		//件数の上限はタスク1件取得のキャッシュと同じ
+		this(templateEngine, servletContext.getContextPath(), properties.getCache().getMaximumSize());
+	}
+
+	TaskRowCache(ITemplateEngine templateEngine, String contextPath, long maximumSize) {
+		this.templateEngine = templateEngine;
+		this.contextPath = contextPath;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * 1行分のHTMLを返す 版が一致するものが無ければ描画して保持する
+	 * @param task
+	 * @return
+	 */
+	public String render(Task task) {
+		RenderedRow row = cache.getIfPresent(task.getId());
+		if (row == null || !row.matches(task)) {
+			row = new RenderedRow(task, renderRow(task));
+			cache.put(task.getId(), row);
+		}
+		return row.html;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onChanged(TaskChangedEvent event) {
+		cache.invalidate(event.getId());
+	}
+
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	private String renderRow(Task task) {
+		Context context = new Context();
+		context.setVariable("obj", task);
+		context.setVariable("contextPath", contextPath);
+		return templateEngine.process(ROW_TEMPLATE, ROW_FRAGMENT, context);
+	}
+
+	/**
+	 * 描画済みのHTMLと、描画に使った値
+	 */
+	private static class RenderedRow {
+
+		private final String title;
+		private final LocalDateTime deadline;
+		private final String type;
+		private final String html;
+
+		RenderedRow(Task task, String html) {
+			this.title = task.getTitle();
+			this.deadline = task.getDeadline();
+			this.type = typeOf(task);
+			this.html = html;
+		}
+
+		boolean matches(Task task) {
+			return Objects.equals(title, task.getTitle())
+					&& Objects.equals(deadline, task.getDeadline())
+					&& Objects.equals(type, typeOf(task));
+		}
+
+		private static String typeOf(Task task) {
+			return task.getTaskType() == null ? null : task.getTaskType().getType();
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.example.demo.aspect;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 1メソッド分のメーター
+ * 処理時間（p50/p90/p99/最大）、例外の件数、一覧を返すメソッドは返した件数を記録する
+ */
+class MethodMeters {
+
+	/** 処理時間 成功・失敗を問わず記録する */
+	static final String TIMER = "todo.method";
+
+	/** 例外で終了した回数 タグexceptionに例外のクラス名を持つ */
+	static final String ERRORS = "todo.method.errors";
+
+	/** 一覧を返すメソッドが返した件数 */
+	static final String ROWS = "todo.method.rows";
+
+	private final MeterRegistry registry;
+	private final Tags tags;
+	private final Timer timer;
+
+	/** Collectionを返さないメソッドはnull */
+	private final DistributionSummary rows;
+
+	MethodMeters(MeterRegistry registry, Class<?> type, Method method) {
+		this.registry = registry;
+		this.tags = Tags.of(
+				"layer", type.getPackageName().endsWith(".repository") ? "repository" : "service",
+				"class", type.getSimpleName(),
+				"method", method.getName());
+		this.timer = Timer.builder(TIMER)
+				.tags(tags)
+				.publishPercentiles(0.5, 0.9, 0.99)
+				.register(registry);
+		this.rows = Collection.class.isAssignableFrom(method.getReturnType())
+				? DistributionSummary.builder(ROWS).tags(tags).register(registry)
+				: null;
+	}
+
+	void success(long nanos, Object result) {
+		timer.record(nanos, TimeUnit.NANOSECONDS);
+		if (rows != null && result != null) {
+			rows.record(((Collection<?>) result).size());
+		}
+	}
+
+	void failure(long nanos, Throwable e) {
+		timer.record(nanos, TimeUnit.NANOSECONDS);
+		//例外は頻繁には起きないため、都度レジストリから取得する
+		Counter.builder(ERRORS)
+				.tags(tags)
+				.tag("exception", e.getClass().getSimpleName())
+				.register(registry)
+				.increment();
+	}
+}
@@ -0,0 +1,42 @@
+package com.example.demo.aspect;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Repository;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * repository、serviceパッケージのDAO・サービス（＠Repository、＠Service）の全メソッドを計測対象にする
+ * 対象はプロキシ生成時にクラスだけで判定し、呼び出しごとの判定は行わない
+ */
+@Configuration(proxyBeanMethods = false)
+public class MethodMetricsConfig {
+
+	private static final String REPOSITORY_PACKAGE = "com.example.demo.repository";
+	private static final String SERVICE_PACKAGE = "com.example.demo.service";
+
+	@Bean
+	public static Advisor methodMetricsAdvisor(ObjectProvider<MeterRegistry> registry) {
+		return advisor(new MethodMetricsInterceptor(registry::getObject));
+	}
+
+	static Advisor advisor(MethodMetricsInterceptor interceptor) {
+		return new DefaultPointcutAdvisor(new ComposablePointcut(MethodMetricsConfig::isTarget), interceptor);
+	}
+
+	static boolean isTarget(Class<?> type) {
+		String packageName = type.getPackageName();
+		return (inPackage(packageName, REPOSITORY_PACKAGE) && type.isAnnotationPresent(Repository.class))
+				|| (inPackage(packageName, SERVICE_PACKAGE) && type.isAnnotationPresent(Service.class));
+	}
+
+	private static boolean inPackage(String packageName, String base) {
+		return packageName.equals(base) || packageName.startsWith(base + ".");
+	}
+}
@@ -0,0 +1,69 @@
+package com.example.demo.aspect;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * /actuator/methods メソッドごとの処理時間の一覧をp99の遅い順に返す
+ * 個々の値は/actuator/metrics/todo.method（todo.method.percentile、todo.method.errors、todo.method.rows）でも参照できる
+ * パーセンタイルは直近の一定期間（既定2分）の値、件数と最大値以外の時間はマイクロ秒
+ */
+@Component
+@Endpoint(id = "methods")
+public class MethodMetricsEndpoint {
+
+	private final MeterRegistry registry;
+
+	public MethodMetricsEndpoint(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@ReadOperation
+	public List<Map<String, Object>> methods() {
+		List<Map<String, Object>> list = new ArrayList<>();
+		for (Timer timer : registry.find(MethodMeters.TIMER).timers()) {
+			String type = timer.getId().getTag("class");
+			String method = timer.getId().getTag("method");
+			HistogramSnapshot snapshot = timer.takeSnapshot();
+
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("layer", timer.getId().getTag("layer"));
+			map.put("class", type);
+			map.put("method", method);
+			map.put("count", snapshot.count());
+			for (ValueAtPercentile value : snapshot.percentileValues()) {
+				map.put("p" + Math.round(value.percentile() * 100), value.value(TimeUnit.MICROSECONDS));
+			}
+			map.put("max", snapshot.max(TimeUnit.MICROSECONDS));
+			map.put("mean", snapshot.mean(TimeUnit.MICROSECONDS));
+			map.put("errors", registry.find(MethodMeters.ERRORS).tag("class", type).tag("method", method)
+					.counters().stream().mapToDouble(Counter::count).sum());
+
+			DistributionSummary rows = registry.find(MethodMeters.ROWS).tag("class", type).tag("method", method)
+					.summary();
+			if (rows != null) {
+				map.put("rowsMean", rows.mean());
+				map.put("rowsMax", rows.max());
+			}
+			list.add(map);
+		}
+		list.sort(Comparator.comparingDouble((Map<String, Object> map) -> (double) map.getOrDefault("p99", 0.0))
+				.reversed());
+		return list;
+	}
+}
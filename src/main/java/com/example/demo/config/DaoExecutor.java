@@ -0,0 +1,74 @@
+package com.example.demo.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.jdbc.SqlRequestStats;
+import com.example.demo.routing.ReplicaRoute;
+
+/**
+ * 画面の参照系の処理（DBへの問い合わせ）を実行する
+ * task.async.enabledがtrueの場合は専用のスレッドプールで実行し、リクエストのスレッド（Tomcat）を占有しない
+ * falseの場合は呼び出し元のスレッドでそのまま実行する
+ * 実行待ちが上限を超えた場合はRejectedExecutionException、時間切れの場合はTimeoutExceptionで完了する
+ * （時間切れでも実行中のSQLは中断しない）
+ * リクエストごとのSQLの集計（SqlRequestStats）と読み先（ReplicaRoute）は専用のスレッドに引き継ぐ
+ */
+@Component
+public class DaoExecutor implements DisposableBean {
+
+	/** 非同期モードでない場合はnull */
+	private final ThreadPoolExecutor executor;
+
+	private final long timeoutMillis;
+
+	public DaoExecutor(TaskProperties properties) {
+		TaskProperties.Async async = properties.getAsync();
+		this.timeoutMillis = async.getTimeout().toMillis();
+		if (async.isEnabled()) {
+			this.executor = new ThreadPoolExecutor(async.getPoolSize(), async.getPoolSize(),
+					60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(Math.max(1, async.getQueueCapacity())),
+					new CustomizableThreadFactory("dao-"),
+					new ThreadPoolExecutor.AbortPolicy());
+		} else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * supplierを実行し、結果をCompletableFutureで返す
+	 * @param <T>
+	 * @param supplier
+	 * @return 同期モードの場合は完了済み
+	 */
+	public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+		if (executor == null) {
+			try {
+				return CompletableFuture.completedFuture(supplier.get());
+			} catch (RuntimeException e) {
+				return CompletableFuture.failedFuture(e);
+			}
+		}
+		return CompletableFuture.supplyAsync(ReplicaRoute.propagate(SqlRequestStats.propagate(supplier)), executor)
+				.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public boolean isAsync() {
+		return executor != null;
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+}
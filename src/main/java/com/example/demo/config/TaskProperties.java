@@ -0,0 +1,655 @@
+package com.example.demo.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * application.ymlのtask以下の設定
+ */
+@ConfigurationProperties(prefix = "task")
+public class TaskProperties {
+
+	/** 一括登録・一括更新で1回のバッチ（1トランザクション）にまとめる件数 */
+	private int batchSize = 500;
+
+	/** エクスポートで1回の通信で取得する行数の目安 */
+	private int fetchSize = 1000;
+
+	/** タスク1件取得のキャッシュ */
+	private final Cache cache = new Cache();
+
+	/** 画面の参照系の処理を専用のスレッドで実行する設定 */
+	private final Async async = new Async();
+
+	/** 1件登録の書き込みをまとめる設定 */
+	private final WriteBehind writeBehind = new WriteBehind();
+
+	/** 期限が近づいたタスクの通知 */
+	private final Reminder reminder = new Reminder();
+
+	/** SQLの計測 */
+	private final Sql sql = new Sql();
+
+	/** 参照のみのメソッドをレプリカから読む設定 */
+	private final Replica replica = new Replica();
+
+	/** タスクの変更の通知（Server-Sent Events） */
+	private final Stream stream = new Stream();
+
+	/** タスクの件数の統計 */
+	private final Stats stats = new Stats();
+
+	/** 永続化したストア（application-persistent.yml） */
+	private final Store store = new Store();
+
+	/** 起動時間 */
+	private final Startup startup = new Startup();
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	public Cache getCache() {
+		return cache;
+	}
+
+	public Async getAsync() {
+		return async;
+	}
+
+	public WriteBehind getWriteBehind() {
+		return writeBehind;
+	}
+
+	public Reminder getReminder() {
+		return reminder;
+	}
+
+	public Sql getSql() {
+		return sql;
+	}
+
+	public Replica getReplica() {
+		return replica;
+	}
+
+	public Stream getStream() {
+		return stream;
+	}
+
+	public Stats getStats() {
+		return stats;
+	}
+
+	public Store getStore() {
+		return store;
+	}
+
+	public Startup getStartup() {
+		return startup;
+	}
+
+	public static class Cache {
+
+		/** 保持する最大件数 超えた分は使用頻度の低いものから破棄する */
+		private long maximumSize = 10_000;
+
+		/** 取得したタスクの有効期間 */
+		private Duration ttl = Duration.ofMinutes(10);
+
+		/** 存在しなかったidの有効期間 */
+		private Duration negativeTtl = Duration.ofSeconds(30);
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public Duration getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl) {
+			this.ttl = ttl;
+		}
+
+		public Duration getNegativeTtl() {
+			return negativeTtl;
+		}
+
+		public void setNegativeTtl(Duration negativeTtl) {
+			this.negativeTtl = negativeTtl;
+		}
+	}
+
+	public static class Async {
+
+		/** trueの場合、DBへの問い合わせをリクエストのスレッドではなく専用のスレッドで実行する */
+		private boolean enabled = false;
+
+		/** 専用スレッドの数 コネクションプールの最大数を超えないようにする */
+		private int poolSize = 10;
+
+		/** 実行待ちの上限 超えた場合は503を返す */
+		private int queueCapacity = 100;
+
+		/** 実行待ちを含めた処理時間の上限 超えた場合は503を返す */
+		private Duration timeout = Duration.ofSeconds(10);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+	}
+
+	public static class WriteBehind {
+
+		/** trueの場合、1件登録を待ち行列に入れ、専用のスレッドでまとめて1トランザクションで登録する */
+		private boolean enabled = false;
+
+		/** 1回にまとめる最大件数 */
+		private int batchSize = 100;
+
+		/**
+		 * 最初の1件を受け取ってから、後続を待つ最大時間
+		 * 0の場合は待たずに、前回の書き込み中に溜まった分をまとめて書き込む
+		 */
+		private Duration linger = Duration.ZERO;
+
+		/** 待ち行列の上限 超えた場合は呼び出し元のスレッドでそのまま登録する */
+		private int queueCapacity = 1000;
+
+		/** コミット後にFutureを完了させ、続く登録後の処理を実行するスレッドの数（書き込み用のスレッドとは分ける） */
+		private int callbackThreads = 2;
+
+		/** 1件登録（insert）がコミットを待つ最大時間 */
+		private Duration timeout = Duration.ofSeconds(10);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public void setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+		}
+
+		public Duration getLinger() {
+			return linger;
+		}
+
+		public void setLinger(Duration linger) {
+			this.linger = linger;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getCallbackThreads() {
+			return callbackThreads;
+		}
+
+		public void setCallbackThreads(int callbackThreads) {
+			this.callbackThreads = callbackThreads;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+	}
+
+	public static class Reminder {
+
+		/** falseの場合は通知しない */
+		private boolean enabled = true;
+
+		/** 期限のどれだけ前に通知するか */
+		private Duration leadTime = Duration.ofHours(1);
+
+		/** タイマーの刻み 通知はこの間隔の単位で遅れることがある */
+		private Duration tick = Duration.ofSeconds(1);
+
+		/** タイマーの枠の数（2のべき乗に切り上げる） 刻み × 枠の数 で1周する */
+		private int wheelSize = 512;
+
+		/** 通知時刻がこの期間内のタスクのみタイマーに載せ、残りは期間が進むごとに読み込む */
+		private Duration horizon = Duration.ofDays(1);
+
+		/** タイマーの最大件数 超えた分は通知しない */
+		private int maxPending = 1_000_000;
+
+		/** 通知先を呼び出すスレッドの数 */
+		private int poolSize = 2;
+
+		/** 通知の実行待ちの上限 超えた場合はタイマーのスレッドで実行する */
+		private int queueCapacity = 10_000;
+
+		/** 通知先（log、event、mail） */
+		private List<String> sinks = List.of("log", "event");
+
+		/** mailの送信済みメールを保持する件数 */
+		private int outboxSize = 1000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getLeadTime() {
+			return leadTime;
+		}
+
+		public void setLeadTime(Duration leadTime) {
+			this.leadTime = leadTime;
+		}
+
+		public Duration getTick() {
+			return tick;
+		}
+
+		public void setTick(Duration tick) {
+			this.tick = tick;
+		}
+
+		public int getWheelSize() {
+			return wheelSize;
+		}
+
+		public void setWheelSize(int wheelSize) {
+			this.wheelSize = wheelSize;
+		}
+
+		public Duration getHorizon() {
+			return horizon;
+		}
+
+		public void setHorizon(Duration horizon) {
+			this.horizon = horizon;
+		}
+
+		public int getMaxPending() {
+			return maxPending;
+		}
+
+		public void setMaxPending(int maxPending) {
+			this.maxPending = maxPending;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public List<String> getSinks() {
+			return sinks;
+		}
+
+		public void setSinks(List<String> sinks) {
+			this.sinks = sinks;
+		}
+
+		public int getOutboxSize() {
+			return outboxSize;
+		}
+
+		public void setOutboxSize(int outboxSize) {
+			this.outboxSize = outboxSize;
+		}
+	}
+
+	public static class Sql {
+
+		/** trueの場合、SQLごとの処理時間・取得行数と、リクエストごとのSQLの実行回数・取得行数を記録する */
+		private boolean enabled = true;
+
+		/** これ以上かかったSQLをログに出力し、実行計画（EXPLAIN ANALYZE）を取得する */
+		private Duration slowThreshold = Duration.ofMillis(200);
+
+		/** 同じSQLの実行計画を取得する間隔 */
+		private Duration explainInterval = Duration.ofMinutes(1);
+
+		/** SQLごとに記録する種類の上限 超えた分は記録しない */
+		private int maxStatements = 500;
+
+		/** 1リクエストでこの回数を超えてSQLを実行した場合はログに出力する（N+1の検出） */
+		private int requestStatementsWarn = 20;
+
+		/** trueの場合、遅いSQLの実行時のパラメータをDEBUGで出力する（パスワードなども含まれるため、既定では出力しない） */
+		private boolean logParameters = false;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getSlowThreshold() {
+			return slowThreshold;
+		}
+
+		public void setSlowThreshold(Duration slowThreshold) {
+			this.slowThreshold = slowThreshold;
+		}
+
+		public Duration getExplainInterval() {
+			return explainInterval;
+		}
+
+		public void setExplainInterval(Duration explainInterval) {
+			this.explainInterval = explainInterval;
+		}
+
+		public int getMaxStatements() {
+			return maxStatements;
+		}
+
+		public void setMaxStatements(int maxStatements) {
+			this.maxStatements = maxStatements;
+		}
+
+		public int getRequestStatementsWarn() {
+			return requestStatementsWarn;
+		}
+
+		public void setRequestStatementsWarn(int requestStatementsWarn) {
+			this.requestStatementsWarn = requestStatementsWarn;
+		}
+
+		public boolean isLogParameters() {
+			return logParameters;
+		}
+
+		public void setLogParameters(boolean logParameters) {
+			this.logParameters = logParameters;
+		}
+	}
+
+	public static class Replica {
+
+		/** trueの場合、＠ReadReplicaのメソッドをレプリカから読み、それ以外はプライマリ（spring.datasource）を使う */
+		private boolean enabled = false;
+
+		private String url = "jdbc:h2:mem:replica";
+
+		private String username = "sa";
+
+		private String password = "";
+
+		/** trueの場合、レプリケーションの代わり（LocalReplicator）で起動時にプライマリを複製し、以降の変更を反映する */
+		private boolean sync = true;
+
+		/** LocalReplicatorが変更を反映するまでの遅れ（レプリケーションの遅延の再現用） 0の場合はコミット直後に反映する */
+		private Duration lag = Duration.ZERO;
+
+		/** 書き込んだセッションは、この間プライマリから読む（自分の書き込みが見えるようにする） */
+		private Duration sticky = Duration.ofSeconds(5);
+
+		/** レプリカに接続できなかった場合に、プライマリから読む期間 */
+		private Duration retryInterval = Duration.ofSeconds(30);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public void setUrl(String url) {
+			this.url = url;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		public String getPassword() {
+			return password;
+		}
+
+		public void setPassword(String password) {
+			this.password = password;
+		}
+
+		public boolean isSync() {
+			return sync;
+		}
+
+		public void setSync(boolean sync) {
+			this.sync = sync;
+		}
+
+		public Duration getLag() {
+			return lag;
+		}
+
+		public void setLag(Duration lag) {
+			this.lag = lag;
+		}
+
+		public Duration getSticky() {
+			return sticky;
+		}
+
+		public void setSticky(Duration sticky) {
+			this.sticky = sticky;
+		}
+
+		public Duration getRetryInterval() {
+			return retryInterval;
+		}
+
+		public void setRetryInterval(Duration retryInterval) {
+			this.retryInterval = retryInterval;
+		}
+	}
+
+	public static class Stream {
+
+		/** 再接続時（Last-Event-ID）に再送できるよう保持する直近のイベントの件数 */
+		private int history = 1000;
+
+		/** 接続ごとの送信待ちの上限 超えた接続は遅い受信者として切断する（再接続後に続きから再送する） */
+		private int buffer = 256;
+
+		/** 無通信の接続を維持し、切断を検出するためのコメントの送信間隔 */
+		private Duration heartbeat = Duration.ofSeconds(30);
+
+		/** 1回の接続の最長時間 超えた場合は切断し、クライアントの再接続に任せる */
+		private Duration timeout = Duration.ofMinutes(30);
+
+		/** 送信するスレッドの数 接続ごとにはスレッドを使わない */
+		private int senderThreads = 2;
+
+		/** 同時接続数の上限 超えた場合は503を返す */
+		private int maxSubscribers = 10000;
+
+		public int getHistory() {
+			return history;
+		}
+
+		public void setHistory(int history) {
+			this.history = history;
+		}
+
+		public int getBuffer() {
+			return buffer;
+		}
+
+		public void setBuffer(int buffer) {
+			this.buffer = buffer;
+		}
+
+		public Duration getHeartbeat() {
+			return heartbeat;
+		}
+
+		public void setHeartbeat(Duration heartbeat) {
+			this.heartbeat = heartbeat;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+		public int getSenderThreads() {
+			return senderThreads;
+		}
+
+		public void setSenderThreads(int senderThreads) {
+			this.senderThreads = senderThreads;
+		}
+
+		public int getMaxSubscribers() {
+			return maxSubscribers;
+		}
+
+		public void setMaxSubscribers(int maxSubscribers) {
+			this.maxSubscribers = maxSubscribers;
+		}
+	}
+
+	public static class Stats {
+
+		/** 変更の差分で増減した件数をGROUP BYの結果と突き合わせる間隔 0の場合は突き合わせない */
+		private Duration reconcileInterval = Duration.ofMinutes(10);
+
+		public Duration getReconcileInterval() {
+			return reconcileInterval;
+		}
+
+		public void setReconcileInterval(Duration reconcileInterval) {
+			this.reconcileInterval = reconcileInterval;
+		}
+	}
+
+	public static class Store {
+
+		/**
+		 * trueの場合、schema.sql・data.sqlは適用済みの版（schema_version）が無いか古い場合のみ流す
+		 * spring.datasource.initialization-modeはneverにする
+		 */
+		private boolean enabled = false;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+	}
+
+	public static class Startup {
+
+		/** 起動の完了（ready）前に、タスクのDAOの参照系のSQLと一覧画面（task/index）を1回ずつ実行しておく */
+		private boolean warmUp = true;
+
+		/** SpringApplication.runの開始から起動の完了までの時間の目安 超えた場合は警告をログに出す */
+		private Duration budget = Duration.ofSeconds(30);
+
+		public boolean isWarmUp() {
+			return warmUp;
+		}
+
+		public void setWarmUp(boolean warmUp) {
+			this.warmUp = warmUp;
+		}
+
+		public Duration getBudget() {
+			return budget;
+		}
+
+		public void setBudget(Duration budget) {
+			this.budget = budget;
+		}
+	}
+}
@@ -1,9 +1,22 @@
 package com.example.demo.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.example.demo.app.task.TaskETagInterceptor;
+
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
-	
-}
\ No newline at end of file
+
+	private final TaskETagInterceptor taskETagInterceptor;
+
+	public WebMvcConfig(TaskETagInterceptor taskETagInterceptor) {
+		this.taskETagInterceptor = taskETagInterceptor;
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(taskETagInterceptor).addPathPatterns("/task", "/task/selectType");
+	}
+}
@@ -1,11 +1,16 @@
 package com.example.demo.config;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
 import org.springframework.beans.propertyeditors.StringTrimmerEditor;
+import org.springframework.http.HttpStatus;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
 import com.example.demo.service.TaskNotFoundException;
 
@@ -24,5 +29,13 @@ public class WebMvcControllerAdvice {
 		model.addAttribute("message", e);
 		return "error/CustomPage";
 	}
+
+	//DaoExecutorの実行待ちの上限超え、時間切れ
+	@ExceptionHandler({ RejectedExecutionException.class, TimeoutException.class })
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public String handleBusy(Exception e, Model model) {
+		model.addAttribute("message", "混み合っています。しばらくしてから再度お試しください");
+		return "error/CustomPage";
+	}
     
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -11,6 +11,8 @@ public class Task {
     private String title;
     private String detail;
     private LocalDateTime deadline;
+    //楽観的排他制御の版数 更新時に読み込んだ時点の値を指定する
+    private int version;
 
 	public int getId() {
 		return id;
@@ -54,5 +56,11 @@ public class Task {
 	public void setDeadline(LocalDateTime deadline) {
 		this.deadline = deadline;
 	}
+	public int getVersion() {
+		return version;
+	}
+	public void setVersion(int version) {
+		this.version = version;
+	}
 
 }
@@ -0,0 +1,316 @@
+package com.example.demo.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * SQLの実行を計測するDataSource（task.sql.enabled）
+ * コネクション・ステートメント・結果セットを動的プロキシで包み、SQLごとの処理時間と取得行数をSqlMetricsに、
+ * リクエストごとの実行回数・取得行数・通信回数をSqlRequestStatsに記録する
+ * 処理時間は実行（executeXxx）と結果の読み出し（next）にかかった時間の合計で、行ごとの変換（RowMapper）の時間は含まない
+ * 通信回数はSQLの実行とcommit、rollbackの回数とする（組み込みのH2では通信は無いが、サーバー型のDBでの往復の回数に相当する）
+ */
+public class InstrumentedDataSource extends DelegatingDataSource implements Closeable {
+
+	private static final Object[] NO_PARAMETERS = {};
+
+	private final Supplier<SqlMetrics> metricsSupplier;
+
+	private volatile SqlMetrics metrics;
+
+	/**
+	 * @param target
+	 * @param metrics 初回の接続時に取得する
+	 */
+	public InstrumentedDataSource(DataSource target, Supplier<SqlMetrics> metrics) {
+		super(target);
+		this.metricsSupplier = metrics;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(obtainTargetDataSource().getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(obtainTargetDataSource().getConnection(username, password));
+	}
+
+	/**
+	 * 包んだDataSource（HikariDataSourceなどCloseableのコネクションプール）を閉じる Beanの破棄時に呼ばれる
+	 */
+	@Override
+	public void close() throws IOException {
+		if (getTargetDataSource() instanceof Closeable) {
+			((Closeable) getTargetDataSource()).close();
+		}
+	}
+
+	private Connection wrap(Connection connection) {
+		if (metrics == null) {
+			metrics = metricsSupplier.get();
+		}
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new ConnectionHandler(connection));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * equals、hashCodeはプロキシ自身で判定する（Springのトランザクション管理がコネクションを比較するため）
+	 */
+	private static Object identity(Object proxy, Method method, Object[] args) {
+		if (method.getName().equals("equals")) {
+			return proxy == args[0];
+		}
+		return System.identityHashCode(proxy);
+	}
+
+	private static boolean isIdentity(Method method) {
+		return (method.getName().equals("equals") && method.getParameterCount() == 1)
+				|| (method.getName().equals("hashCode") && method.getParameterCount() == 0);
+	}
+
+	private final class ConnectionHandler implements InvocationHandler {
+
+		private final Connection target;
+
+		ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (isIdentity(method)) {
+				return identity(proxy, method, args);
+			}
+			Object result = InstrumentedDataSource.invoke(target, method, args);
+			switch (method.getName()) {
+			case "createStatement":
+			case "prepareStatement":
+			case "prepareCall":
+				String sql = args != null && args.length > 0 ? (String) args[0] : null;
+				return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+						new Class<?>[] { method.getReturnType() }, new StatementHandler(target, (Statement) result, sql));
+			case "commit":
+			case "rollback":
+				SqlRequestStats stats = SqlRequestStats.current();
+				if (stats != null) {
+					stats.roundTrip();
+				}
+				return result;
+			default:
+				return result;
+			}
+		}
+	}
+
+	private final class StatementHandler implements InvocationHandler {
+
+		private final Connection connection;
+
+		private final Statement target;
+
+		/** prepareStatementのSQL createStatementの場合はnull（executeの引数のSQL） */
+		private final String sql;
+
+		private Object[] parameters = NO_PARAMETERS;
+
+		/** 結果セットを読み終えていない実行 */
+		private Execution open;
+
+		StatementHandler(Connection connection, Statement target, String sql) {
+			this.connection = connection;
+			this.target = target;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (isIdentity(method)) {
+				return identity(proxy, method, args);
+			}
+			String name = method.getName();
+			if (name.startsWith("execute")) {
+				return execute(method, args);
+			}
+			if (name.startsWith("set") && isParameter(method, args)) {
+				parameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+			} else if (name.equals("clearParameters")) {
+				parameters = NO_PARAMETERS;
+			} else if (name.equals("close")) {
+				finish();
+			}
+			Object result = InstrumentedDataSource.invoke(target, method, args);
+			if (name.equals("getResultSet") && result != null && open != null) {
+				return wrap((ResultSet) result, open);
+			}
+			return result;
+		}
+
+		private Object execute(Method method, Object[] args) throws Throwable {
+			finish();
+			String statementSql = args != null && args.length > 0 && args[0] instanceof String
+					? (String) args[0]
+					: sql;
+			Execution execution = new Execution(statementSql == null ? "(batch)" : statementSql, parameters.clone());
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = InstrumentedDataSource.invoke(target, method, args);
+			} catch (Throwable e) {
+				execution.elapsed(System.nanoTime() - start);
+				execution.finish();
+				throw e;
+			}
+			execution.elapsed(System.nanoTime() - start);
+			if (result instanceof ResultSet) {
+				open = execution;
+				return wrap((ResultSet) result, execution);
+			}
+			if (Boolean.TRUE.equals(result)) {
+				//結果セットはgetResultSetで取得される
+				open = execution;
+			} else {
+				execution.finish();
+			}
+			return result;
+		}
+
+		/**
+		 * 読み終えていない結果セットの分を記録する（結果セットを閉じずにステートメントを閉じた、再実行した場合）
+		 */
+		private void finish() {
+			if (open != null) {
+				open.finish();
+				open = null;
+			}
+		}
+
+		private Object wrap(ResultSet resultSet, Execution execution) {
+			return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+					new Class<?>[] { ResultSet.class }, new ResultSetHandler(resultSet, execution));
+		}
+
+		private boolean isParameter(Method method, Object[] args) {
+			Class<?> type = method.getDeclaringClass();
+			return (type == PreparedStatement.class || type == CallableStatement.class)
+					&& args != null && args.length >= 2 && args[0] instanceof Integer;
+		}
+
+		private void parameter(int index, Object value) {
+			if (index > parameters.length) {
+				parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+			}
+			parameters[index - 1] = value;
+		}
+
+		/**
+		 * 1回の実行 結果セットを読み終えた（閉じた）時点で記録する
+		 */
+		private final class Execution {
+
+			private final String sql;
+			private final Object[] parameters;
+			private final SqlRequestStats stats;
+			private long nanos;
+			private long rows;
+			private boolean finished;
+
+			Execution(String sql, Object[] parameters) {
+				this.sql = sql;
+				this.parameters = parameters;
+				this.stats = SqlRequestStats.current();
+				if (stats != null) {
+					stats.executed();
+				}
+			}
+
+			void elapsed(long elapsedNanos) {
+				nanos += elapsedNanos;
+			}
+
+			void row() {
+				rows++;
+			}
+
+			void finish() {
+				if (finished) {
+					return;
+				}
+				finished = true;
+				if (open == this) {
+					open = null;
+				}
+				if (stats != null) {
+					stats.completed(nanos, rows);
+				}
+				metrics.record(connection, sql, parameters, nanos, rows);
+			}
+		}
+
+		private final class ResultSetHandler implements InvocationHandler {
+
+			private final ResultSet target;
+
+			private final Execution execution;
+
+			ResultSetHandler(ResultSet target, Execution execution) {
+				this.target = target;
+				this.execution = execution;
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (isIdentity(method)) {
+					return identity(proxy, method, args);
+				}
+				switch (method.getName()) {
+				case "next":
+					long start = System.nanoTime();
+					boolean next;
+					try {
+						next = target.next();
+					} finally {
+						execution.elapsed(System.nanoTime() - start);
+					}
+					if (next) {
+						execution.row();
+					}
+					return next;
+				case "close":
+					try {
+						return InstrumentedDataSource.invoke(target, method, args);
+					} finally {
+						execution.finish();
+					}
+				default:
+					return InstrumentedDataSource.invoke(target, method, args);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 1つのSQL文のメーター
+ * 処理時間（p50/p90/p99/最大）、取得行数、遅かった回数と、最後に取得した実行計画を持つ
+ */
+class SqlMeters {
+
+	/** 処理時間（実行と結果の読み出し） タグsqlにSQL文を持つ */
+	static final String TIMER = "todo.sql";
+
+	/** 取得行数 */
+	static final String ROWS = "todo.sql.rows";
+
+	private final String sql;
+	private final Timer timer;
+	private final DistributionSummary rows;
+	private final LongAdder slow = new LongAdder();
+
+	/** 次に実行計画を取得してよい時刻（System.nanoTime） */
+	private final AtomicLong nextExplain;
+
+	private volatile String plan;
+
+	SqlMeters(MeterRegistry registry, String sql) {
+		this.sql = sql;
+		this.timer = Timer.builder(TIMER)
+				.tag("sql", sql)
+				.publishPercentiles(0.5, 0.9, 0.99)
+				.register(registry);
+		this.rows = DistributionSummary.builder(ROWS).tag("sql", sql).register(registry);
+		this.nextExplain = new AtomicLong(System.nanoTime());
+	}
+
+	void record(long nanos, long fetchedRows) {
+		timer.record(nanos, TimeUnit.NANOSECONDS);
+		rows.record(fetchedRows);
+	}
+
+	void slow() {
+		slow.increment();
+	}
+
+	/**
+	 * 前回の取得からintervalNanos経っていれば、実行計画を取得する権利を得る（同時に1スレッドのみ）
+	 */
+	boolean tryExplain(long intervalNanos) {
+		long now = System.nanoTime();
+		long next = nextExplain.get();
+		return now - next >= 0 && nextExplain.compareAndSet(next, now + intervalNanos);
+	}
+
+	void plan(String plan) {
+		this.plan = plan;
+	}
+
+	String getSql() {
+		return sql;
+	}
+
+	Timer getTimer() {
+		return timer;
+	}
+
+	DistributionSummary getRows() {
+		return rows;
+	}
+
+	long getSlow() {
+		return slow.sum();
+	}
+
+	String getPlan() {
+		return plan;
+	}
+}
@@ -0,0 +1,231 @@
+package com.example.demo.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.demo.config.TaskProperties;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * SQLの計測結果の記録先（InstrumentedDataSource、SqlRequestFilterから呼ばれる）
+ * SQL文ごとの処理時間・取得行数と、リクエスト（メソッドとURLのパターン）ごとのSQLの実行回数・取得行数・通信回数を記録する
+ * task.sql.slow-thresholdを超えたSQLはログに出力し、同じコネクションでEXPLAIN（SELECTはEXPLAIN ANALYZE）を実行して実行計画を添える
+ * （EXPLAIN ANALYZEはSQLをもう一度実行するため、同じSQLではtask.sql.explain-intervalに1回までとする）
+ * 実行時のパラメータはユーザーのパスワードなどを含むため、task.sql.log-parametersがtrueの場合のみDEBUGで出力する
+ */
+public class SqlMetrics {
+
+	private static final Logger log = LoggerFactory.getLogger(SqlMetrics.class);
+
+	/** 1リクエストで実行したSQLの回数 タグmethod、uriを持つ */
+	static final String REQUEST_STATEMENTS = "todo.sql.request.statements";
+
+	/** 1リクエストで取得した行数 */
+	static final String REQUEST_ROWS = "todo.sql.request.rows";
+
+	/** 1リクエストでのDBとの往復の回数（SQLの実行、commit、rollback） */
+	static final String REQUEST_ROUND_TRIPS = "todo.sql.request.round-trips";
+
+	private final Supplier<MeterRegistry> registry;
+
+	private final long slowNanos;
+
+	private final long explainIntervalNanos;
+
+	private final int maxStatements;
+
+	private final int requestStatementsWarn;
+
+	private final boolean logParameters;
+
+	private final ConcurrentMap<String, SqlMeters> statements = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, RequestMeters> requests = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean overflowLogged = new AtomicBoolean();
+
+	/**
+	 * @param registry 初回の記録時に取得する（DataSourceの生成時点ではレジストリの設定が終わっていないため）
+	 */
+	public SqlMetrics(Supplier<MeterRegistry> registry, TaskProperties.Sql config) {
+		this.registry = registry;
+		this.slowNanos = config.getSlowThreshold().toNanos();
+		this.explainIntervalNanos = config.getExplainInterval().toNanos();
+		this.maxStatements = config.getMaxStatements();
+		this.requestStatementsWarn = config.getRequestStatementsWarn();
+		this.logParameters = config.isLogParameters();
+	}
+
+	/**
+	 * 1回の実行を記録する 遅い場合は実行計画を取得してログに出力する
+	 * @param connection 実行したコネクション（計測しない側） 実行計画の取得に使う
+	 * @param sql
+	 * @param parameters 実行時のパラメータ（1番目のパラメータが添字0） 実行計画の取得に使う
+	 * @param nanos 実行と結果の読み出しにかかった時間
+	 * @param rows 取得行数
+	 */
+	void record(Connection connection, String sql, Object[] parameters, long nanos, long rows) {
+		SqlMeters meters = meters(sql);
+		if (meters != null) {
+			meters.record(nanos, rows);
+		}
+		if (nanos < slowNanos) {
+			return;
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		if (meters == null) {
+			log.warn("遅いSQLです（{}ms、{}行）: {}", millis, rows, sql);
+			return;
+		}
+		meters.slow();
+		if (!meters.tryExplain(explainIntervalNanos)) {
+			log.warn("遅いSQLです（{}ms、{}行）: {}", millis, rows, sql);
+			return;
+		}
+		String plan = explain(connection, sql, parameters);
+		meters.plan(plan);
+		log.warn("遅いSQLです（{}ms、{}行）: {}\n{}", millis, rows, sql, plan);
+		if (logParameters) {
+			log.debug("遅いSQLのパラメータ: {} {}", sql, Arrays.toString(parameters));
+		}
+	}
+
+	/**
+	 * 1リクエスト分の集計を記録する
+	 * @param method HTTPメソッド
+	 * @param uri URLのパターン（/task/{id}など）
+	 * @param stats
+	 */
+	void recordRequest(String method, String uri, SqlRequestStats stats) {
+		RequestMeters meters = requests.computeIfAbsent(method + " " + uri,
+				key -> new RequestMeters(registry.get(), method, uri));
+		long count = stats.getStatements();
+		meters.statements.record(count);
+		meters.rows.record(stats.getRows());
+		meters.roundTrips.record(stats.getRoundTrips());
+		if (count > requestStatementsWarn) {
+			log.warn("1リクエストで{}回SQLを実行しました（{}行、{}往復）: {} {}",
+					count, stats.getRows(), stats.getRoundTrips(), method, uri);
+		}
+	}
+
+	/**
+	 * SQL文ごとのメーター
+	 */
+	Collection<SqlMeters> statements() {
+		return new ArrayList<>(statements.values());
+	}
+
+	/**
+	 * リクエストごとのメーター
+	 */
+	Collection<RequestMeters> requests() {
+		return new ArrayList<>(requests.values());
+	}
+
+	/**
+	 * @return 種類の上限を超えた場合はnull
+	 */
+	private SqlMeters meters(String sql) {
+		SqlMeters meters = statements.get(sql);
+		if (meters != null) {
+			return meters;
+		}
+		if (statements.size() >= maxStatements) {
+			if (overflowLogged.compareAndSet(false, true)) {
+				log.warn("SQLの種類が上限（{}件）に達したため、以降のSQLは個別に記録しません", maxStatements);
+			}
+			return null;
+		}
+		return statements.computeIfAbsent(sql, key -> new SqlMeters(registry.get(), key));
+	}
+
+	/**
+	 * 実行時と同じパラメータで実行計画を取得する
+	 * SELECTはEXPLAIN ANALYZE（実際に実行し、読んだ行数を含む）、更新系はEXPLAIN（実行しない）
+	 */
+	private String explain(Connection connection, String sql, Object[] parameters) {
+		String statement = sql.strip();
+		String keyword = statement.length() < 6 ? "" : statement.substring(0, 6).toUpperCase(Locale.ROOT);
+		String prefix;
+		if (keyword.equals("SELECT")) {
+			prefix = "EXPLAIN ANALYZE ";
+		} else if (keyword.equals("INSERT") || keyword.equals("UPDATE") || keyword.equals("DELETE")) {
+			prefix = "EXPLAIN ";
+		} else {
+			return "（実行計画を取得できないSQLです）";
+		}
+		try (PreparedStatement ps = connection.prepareStatement(prefix + statement)) {
+			for (int i = 0; i < parameters.length; i++) {
+				ps.setObject(i + 1, parameters[i]);
+			}
+			StringBuilder plan = new StringBuilder();
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					plan.append(rs.getString(1)).append('\n');
+				}
+			}
+			return plan.toString();
+		} catch (SQLException e) {
+			return "（実行計画を取得できませんでした: " + e.getMessage() + "）";
+		}
+	}
+
+	/**
+	 * 1つのリクエスト（メソッドとURLのパターン）のメーター
+	 */
+	static final class RequestMeters {
+
+		private final String method;
+		private final String uri;
+		private final DistributionSummary statements;
+		private final DistributionSummary rows;
+		private final DistributionSummary roundTrips;
+
+		RequestMeters(MeterRegistry registry, String method, String uri) {
+			Tags tags = Tags.of("method", method, "uri", uri);
+			this.method = method;
+			this.uri = uri;
+			this.statements = DistributionSummary.builder(REQUEST_STATEMENTS).tags(tags).register(registry);
+			this.rows = DistributionSummary.builder(REQUEST_ROWS).tags(tags).register(registry);
+			this.roundTrips = DistributionSummary.builder(REQUEST_ROUND_TRIPS).tags(tags).register(registry);
+		}
+
+		String getMethod() {
+			return method;
+		}
+
+		String getUri() {
+			return uri;
+		}
+
+		DistributionSummary getStatements() {
+			return statements;
+		}
+
+		DistributionSummary getRows() {
+			return rows;
+		}
+
+		DistributionSummary getRoundTrips() {
+			return roundTrips;
+		}
+	}
+}
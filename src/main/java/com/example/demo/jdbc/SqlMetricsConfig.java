@@ -0,0 +1,50 @@
+package com.example.demo.jdbc;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.config.TaskProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * DataSourceをInstrumentedDataSourceで包み、SQLを計測する（task.sql.enabledがfalseの場合は何もしない）
+ * JdbcTemplate、トランザクション管理とも包んだDataSourceを使うため、DAO側の変更は不要
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "task.sql", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlMetricsConfig {
+
+	@Bean
+	public static BeanPostProcessor instrumentedDataSourcePostProcessor(ObjectProvider<SqlMetrics> metrics) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource && !(bean instanceof InstrumentedDataSource)) {
+					return new InstrumentedDataSource((DataSource) bean, metrics::getObject);
+				}
+				return bean;
+			}
+		};
+	}
+
+	@Bean
+	public SqlMetrics sqlMetrics(ObjectProvider<MeterRegistry> registry, TaskProperties properties) {
+		return new SqlMetrics(registry::getObject, properties.getSql());
+	}
+
+	@Bean
+	public SqlRequestFilter sqlRequestFilter(SqlMetrics metrics) {
+		return new SqlRequestFilter(metrics);
+	}
+
+	@Bean
+	public SqlMetricsEndpoint sqlMetricsEndpoint(SqlMetrics metrics) {
+		return new SqlMetricsEndpoint(metrics);
+	}
+}
@@ -0,0 +1,80 @@
+package com.example.demo.jdbc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * /actuator/sql 処理時間のp99の遅い順のSQL（top件、既定10件）と、
+ * 1リクエストあたりのSQLの実行回数の多い順のリクエスト（N+1の候補）を返す
+ * パーセンタイルは直近の一定期間（既定2分）の値、件数と行数以外の時間はマイクロ秒
+ */
+@Endpoint(id = "sql")
+public class SqlMetricsEndpoint {
+
+	private static final int DEFAULT_TOP = 10;
+
+	private final SqlMetrics metrics;
+
+	public SqlMetricsEndpoint(SqlMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@ReadOperation
+	public Map<String, Object> sql(@Nullable Integer top) {
+		int limit = top == null ? DEFAULT_TOP : Math.max(0, top);
+
+		List<Map<String, Object>> statements = new ArrayList<>();
+		for (SqlMeters meters : metrics.statements()) {
+			HistogramSnapshot snapshot = meters.getTimer().takeSnapshot();
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("sql", meters.getSql());
+			map.put("count", snapshot.count());
+			for (ValueAtPercentile value : snapshot.percentileValues()) {
+				map.put("p" + Math.round(value.percentile() * 100), value.value(TimeUnit.MICROSECONDS));
+			}
+			map.put("max", snapshot.max(TimeUnit.MICROSECONDS));
+			map.put("mean", snapshot.mean(TimeUnit.MICROSECONDS));
+			map.put("rowsMean", meters.getRows().mean());
+			map.put("rowsMax", meters.getRows().max());
+			map.put("slow", meters.getSlow());
+			map.put("plan", meters.getPlan());
+			statements.add(map);
+		}
+		statements.sort(Comparator.comparingDouble((Map<String, Object> map) -> (double) map.getOrDefault("p99", 0.0))
+				.reversed());
+
+		List<Map<String, Object>> requests = new ArrayList<>();
+		for (SqlMetrics.RequestMeters meters : metrics.requests()) {
+			DistributionSummary count = meters.getStatements();
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("method", meters.getMethod());
+			map.put("uri", meters.getUri());
+			map.put("count", count.count());
+			map.put("statementsMean", count.mean());
+			map.put("statementsMax", count.max());
+			map.put("rowsMean", meters.getRows().mean());
+			map.put("rowsMax", meters.getRows().max());
+			map.put("roundTripsMean", meters.getRoundTrips().mean());
+			requests.add(map);
+		}
+		requests.sort(Comparator.comparingDouble((Map<String, Object> map) -> (double) map.get("statementsMax"))
+				.reversed());
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("statements", statements.subList(0, Math.min(limit, statements.size())));
+		result.put("requests", requests.subList(0, Math.min(limit, requests.size())));
+		return result;
+	}
+}
@@ -0,0 +1,76 @@
+package com.example.demo.jdbc;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * リクエストごとにSQLの実行回数・取得行数・通信回数を集計し、SqlMetricsに記録する
+ * 非同期のリクエスト（CompletableFutureを返す画面）は非同期処理の完了時に記録する（DaoExecutorのスレッドで実行したSQLも含む）
+ */
+public class SqlRequestFilter extends OncePerRequestFilter {
+
+	private final SqlMetrics metrics;
+
+	public SqlRequestFilter(SqlMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		SqlRequestStats stats = new SqlRequestStats();
+		SqlRequestStats previous = SqlRequestStats.bind(stats);
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			SqlRequestStats.bind(previous);
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(new Completion(request, stats));
+			} else {
+				record(request, stats);
+			}
+		}
+	}
+
+	private void record(HttpServletRequest request, SqlRequestStats stats) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		metrics.recordRequest(request.getMethod(), pattern == null ? "UNKNOWN" : pattern.toString(), stats);
+	}
+
+	private final class Completion implements AsyncListener {
+
+		private final HttpServletRequest request;
+		private final SqlRequestStats stats;
+
+		Completion(HttpServletRequest request, SqlRequestStats stats) {
+			this.request = request;
+			this.stats = stats;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			record(request, stats);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+		}
+	}
+}
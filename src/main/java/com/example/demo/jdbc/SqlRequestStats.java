@@ -0,0 +1,105 @@
+package com.example.demo.jdbc;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 1リクエストで実行したSQLの回数・取得行数・通信回数・処理時間
+ * リクエストのスレッドに結び付け（SqlRequestFilter）、DaoExecutorなど別のスレッドで実行する処理にはpropagateで引き継ぐ
+ * 複数のスレッドから加算されるためLongAdderで数える
+ */
+public final class SqlRequestStats {
+
+	private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+	private final LongAdder statements = new LongAdder();
+
+	private final LongAdder rows = new LongAdder();
+
+	private final LongAdder roundTrips = new LongAdder();
+
+	private final LongAdder nanos = new LongAdder();
+
+	/**
+	 * 現在のスレッドに結び付いた集計
+	 * @return リクエストの外（起動時の読み込み、タイマーのスレッドなど）ではnull
+	 */
+	public static SqlRequestStats current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * 現在のスレッドに結び付ける
+	 * @param stats nullの場合は結び付きを外す
+	 * @return それまで結び付いていた集計（戻す場合に渡す）
+	 */
+	static SqlRequestStats bind(SqlRequestStats stats) {
+		SqlRequestStats previous = CURRENT.get();
+		if (stats == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(stats);
+		}
+		return previous;
+	}
+
+	/**
+	 * 呼び出し元のスレッドの集計を、supplierを実行するスレッドに引き継ぐ
+	 * @param <T>
+	 * @param supplier
+	 * @return 集計が無い場合はsupplierそのもの
+	 */
+	public static <T> Supplier<T> propagate(Supplier<T> supplier) {
+		SqlRequestStats stats = CURRENT.get();
+		if (stats == null) {
+			return supplier;
+		}
+		return () -> {
+			SqlRequestStats previous = bind(stats);
+			try {
+				return supplier.get();
+			} finally {
+				bind(previous);
+			}
+		};
+	}
+
+	/**
+	 * SQLを1回実行した（1往復）
+	 */
+	void executed() {
+		statements.increment();
+		roundTrips.increment();
+	}
+
+	/**
+	 * SQLの実行以外の往復（commit、rollback）
+	 */
+	void roundTrip() {
+		roundTrips.increment();
+	}
+
+	/**
+	 * 実行したSQLの処理時間と取得行数
+	 */
+	void completed(long elapsedNanos, long fetchedRows) {
+		nanos.add(elapsedNanos);
+		rows.add(fetchedRows);
+	}
+
+	public long getStatements() {
+		return statements.sum();
+	}
+
+	public long getRows() {
+		return rows.sum();
+	}
+
+	public long getRoundTrips() {
+		return roundTrips.sum();
+	}
+
+	public long getNanos() {
+		return nanos.sum();
+	}
+}
@@ -0,0 +1,28 @@
+package com.example.demo.reminder;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * TaskReminderをアプリケーションイベントとして発行し、同じプロセス内のリスナーに渡す
+ * リスナーは通知用のスレッドで呼ばれる
+ */
+@Component
+public class EventReminderSink implements ReminderSink {
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	public EventReminderSink(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	@Override
+	public String name() {
+		return "event";
+	}
+
+	@Override
+	public void send(TaskReminder reminder) {
+		eventPublisher.publishEvent(reminder);
+	}
+}
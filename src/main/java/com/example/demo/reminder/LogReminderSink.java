@@ -0,0 +1,28 @@
+package com.example.demo.reminder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entity.Task;
+
+/**
+ * ログに出力する
+ */
+@Component
+public class LogReminderSink implements ReminderSink {
+
+	private static final Logger log = LoggerFactory.getLogger(LogReminderSink.class);
+
+	@Override
+	public String name() {
+		return "log";
+	}
+
+	@Override
+	public void send(TaskReminder reminder) {
+		Task task = reminder.getTask();
+		log.info("期限が近づいています: id={}, userId={}, title={}, deadline={}",
+				task.getId(), task.getUserId(), task.getTitle(), task.getDeadline());
+	}
+}
@@ -0,0 +1,89 @@
+package com.example.demo.reminder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.entity.User;
+import com.example.demo.service.UserDirectory;
+
+/**
+ * タスクのユーザーのメールアドレス宛てにメールを送る
+ * SMTPサーバーの代わりに、作成したメールを送信箱（メモリ上、直近のtask.reminder.outbox-size件）に保持する
+ * ユーザーが存在しない場合と、無効なユーザーには送らない
+ */
+@Component
+public class MailReminderSink implements ReminderSink {
+
+	private final UserDirectory userDirectory;
+
+	private final int outboxSize;
+
+	private final Deque<Mail> outbox = new ArrayDeque<>();
+
+	public MailReminderSink(UserDirectory userDirectory, TaskProperties properties) {
+		this.userDirectory = userDirectory;
+		this.outboxSize = properties.getReminder().getOutboxSize();
+	}
+
+	@Override
+	public String name() {
+		return "mail";
+	}
+
+	@Override
+	public void send(TaskReminder reminder) {
+		Task task = reminder.getTask();
+		User user = userDirectory.findById(task.getUserId()).orElse(null);
+		if (user == null || !user.isEnabled()) {
+			return;
+		}
+		Mail mail = new Mail(user.getEmail(), "【期限間近】" + task.getTitle(),
+				"タスク「" + task.getTitle() + "」の期限は " + task.getDeadline() + " です。");
+		synchronized (outbox) {
+			outbox.addLast(mail);
+			if (outbox.size() > outboxSize) {
+				outbox.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * 送信箱のメールを古い順に返す
+	 */
+	public List<Mail> outbox() {
+		synchronized (outbox) {
+			return new ArrayList<>(outbox);
+		}
+	}
+
+	public static final class Mail {
+
+		private final String to;
+		private final String subject;
+		private final String body;
+
+		Mail(String to, String subject, String body) {
+			this.to = to;
+			this.subject = subject;
+			this.body = body;
+		}
+
+		public String getTo() {
+			return to;
+		}
+
+		public String getSubject() {
+			return subject;
+		}
+
+		public String getBody() {
+			return body;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.example.demo.reminder;
+
+/**
+ * 通知先
+ * ＠Componentとして登録し、task.reminder.sinksにnameを指定すると使われる
+ * 通知用のスレッドから並行して呼ばれるため、スレッドセーフにすること
+ */
+public interface ReminderSink {
+
+	/**
+	 * task.reminder.sinksで指定する名前
+	 */
+	String name();
+
+	void send(TaskReminder reminder);
+}
@@ -0,0 +1,23 @@
+package com.example.demo.reminder;
+
+import com.example.demo.entity.Task;
+
+/**
+ * 期限が近づいたタスクの通知
+ * eventの通知先はこのインスタンスをそのままアプリケーションイベントとして発行する（＠EventListenerで受け取れる）
+ */
+public class TaskReminder {
+
+	private final Task task;
+
+	public TaskReminder(Task task) {
+		this.task = task;
+	}
+
+	/**
+	 * 通知時点のタスク 1件取得のキャッシュと共有しているため変更しないこと
+	 */
+	public Task getTask() {
+		return task;
+	}
+}
@@ -0,0 +1,291 @@
+package com.example.demo.reminder;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskChangedEvent;
+import com.example.demo.service.TaskDeadlineIndex;
+import com.example.demo.service.TaskNotFoundException;
+import com.example.demo.service.TaskService;
+
+/**
+ * 期限のtask.reminder.lead-time前にタスクを通知先（ReminderSink）へ通知する
+ * 通知時刻がtask.reminder.horizon以内のタスクのみをTimingWheelに載せ、期間が進むごとにTaskDeadlineIndexから読み足す
+ * 登録・更新はコミット後のTaskChangedEventでタイマーを置き換え、削除で取り消す
+ * 通知時にタスクを取得し直し、期限がタイマーに載せたときと異なる場合は通知しない（変更後のタイマーで通知する）
+ */
+@Component
+public class TaskReminderScheduler implements SmartLifecycle, DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(TaskReminderScheduler.class);
+
+	private final TaskService taskService;
+
+	private final TaskDeadlineIndex deadlineIndex;
+
+	private final TaskProperties.Reminder config;
+
+	private final List<ReminderSink> sinks;
+
+	private final Clock clock;
+
+	private final Executor dispatcher;
+
+	private final long leadMillis;
+
+	private final long horizonMillis;
+
+	private final TimingWheel wheel;
+
+	/** 読み足し中は変更の反映を待たせる（読み足した古い期限で上書きしないため） */
+	private final ReadWriteLock loading = new ReentrantReadWriteLock();
+
+	/** 通知時刻がこれより前のタスクまでタイマーに載せている */
+	private volatile long loadedUntil;
+
+	private volatile boolean loaded;
+
+	private volatile ScheduledExecutorService ticker;
+
+	private final AtomicLong sent = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	@Autowired
+	public TaskReminderScheduler(TaskService taskService, TaskDeadlineIndex deadlineIndex,
+			TaskProperties properties, List<ReminderSink> sinks) {
+		this(taskService, deadlineIndex, properties, sinks, Clock.systemDefaultZone(), null);
+	}
+
+	/**
+	 * @param dispatcher 通知先を呼び出すExecutor nullの場合はtask.reminder.pool-sizeのスレッドプール
+	 */
+	TaskReminderScheduler(TaskService taskService, TaskDeadlineIndex deadlineIndex, TaskProperties properties,
+			List<ReminderSink> sinks, Clock clock, Executor dispatcher) {
+		this.taskService = taskService;
+		this.deadlineIndex = deadlineIndex;
+		this.config = properties.getReminder();
+		this.sinks = select(sinks, config.getSinks());
+		this.clock = clock;
+		this.dispatcher = dispatcher != null ? dispatcher : new ThreadPoolExecutor(
+				config.getPoolSize(), config.getPoolSize(),
+				60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+				new CustomizableThreadFactory("reminder-"),
+				//実行待ちが溢れた場合はタイマーのスレッドで実行し、通知を捨てない（その間は刻みが遅れる）
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		this.leadMillis = config.getLeadTime().toMillis();
+		this.horizonMillis = config.getHorizon().toMillis();
+		this.wheel = new TimingWheel(config.getTick().toMillis(), config.getWheelSize(), config.getMaxPending(),
+				clock.millis());
+	}
+
+	/**
+	 * TaskDeadlineIndexの読み込み（SmartInitializingSingleton）の後に呼ばれる
+	 */
+	@Override
+	public void start() {
+		if (!config.isEnabled()) {
+			return;
+		}
+		load();
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("reminder-tick-");
+		threadFactory.setDaemon(true);
+		long tick = config.getTick().toMillis();
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		executor.scheduleAtFixedRate(this::tickQuietly, tick, tick, TimeUnit.MILLISECONDS);
+		ticker = executor;
+	}
+
+	@Override
+	public void stop() {
+		ScheduledExecutorService executor = ticker;
+		if (executor != null) {
+			executor.shutdownNow();
+			ticker = null;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (dispatcher instanceof ThreadPoolExecutor) {
+			((ThreadPoolExecutor) dispatcher).shutdown();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return ticker != null;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onChanged(TaskChangedEvent event) {
+		loading.readLock().lock();
+		try {
+			if (!loaded) {
+				//読み込み前の変更はTaskDeadlineIndexに反映済みのため、読み込み時にまとめて載せる
+				return;
+			}
+			Task task = event.getTask();
+			if (task == null || task.getDeadline() == null) {
+				wheel.cancel(event.getId());
+				return;
+			}
+			long deadline = toMillis(task.getDeadline());
+			if (deadline <= clock.millis() || deadline - leadMillis >= loadedUntil) {
+				//期限切れは通知しない 期間外のものは読み足しで載せる
+				wheel.cancel(task.getId());
+			} else {
+				schedule(task.getId(), deadline);
+			}
+		} finally {
+			loading.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 期限が現在以降で、通知時刻がhorizon以内のタスクを載せる
+	 */
+	void load() {
+		loading.writeLock().lock();
+		try {
+			long now = clock.millis();
+			loadedUntil = now - leadMillis;
+			refill(now);
+			loaded = true;
+		} finally {
+			loading.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 1刻み分の処理 horizonの半分を過ぎていれば読み足し、発火したタイマーの通知を通知用のスレッドに渡す
+	 */
+	void tick() {
+		long now = clock.millis();
+		if (now + horizonMillis / 2 >= loadedUntil) {
+			loading.writeLock().lock();
+			try {
+				refill(now);
+			} finally {
+				loading.writeLock().unlock();
+			}
+		}
+		for (TimingWheel.Expired expired : wheel.advance(now)) {
+			dispatcher.execute(() -> fire(expired));
+		}
+	}
+
+	/**
+	 * タイマーに載っている件数
+	 */
+	public int pending() {
+		return wheel.size();
+	}
+
+	/**
+	 * 通知した件数
+	 */
+	public long sent() {
+		return sent.get();
+	}
+
+	/**
+	 * タイマーの上限を超えたため載せなかった件数
+	 */
+	public long dropped() {
+		return dropped.get();
+	}
+
+	private void tickQuietly() {
+		try {
+			tick();
+		} catch (RuntimeException e) {
+			//例外で終了すると以降の刻みが実行されないため、ログに出力して続ける
+			log.warn("通知のタイマーの処理に失敗しました", e);
+		}
+	}
+
+	private void refill(long now) {
+		long until = now + horizonMillis;
+		if (until <= loadedUntil) {
+			return;
+		}
+		deadlineIndex.forEachBetween(toDateTime(loadedUntil + leadMillis), toDateTime(until + leadMillis),
+				(deadline, id) -> schedule(id, toMillis(deadline)));
+		loadedUntil = until;
+	}
+
+	private void schedule(int id, long deadline) {
+		if (!wheel.schedule(id, deadline - leadMillis, deadline) && dropped.getAndIncrement() == 0) {
+			log.warn("通知のタイマーが上限（{}件）に達したため、以降の一部のタスクは通知しません", config.getMaxPending());
+		}
+	}
+
+	private void fire(TimingWheel.Expired expired) {
+		Task task;
+		try {
+			task = taskService.getTask(expired.getId()).get();
+		} catch (TaskNotFoundException e) {
+			return;
+		}
+		if (task.getDeadline() == null || toMillis(task.getDeadline()) != expired.getDeadline()) {
+			return;
+		}
+		TaskReminder reminder = new TaskReminder(task);
+		for (ReminderSink sink : sinks) {
+			try {
+				sink.send(reminder);
+			} catch (RuntimeException e) {
+				log.warn("通知に失敗しました: sink={}, id={}", sink.name(), task.getId(), e);
+			}
+		}
+		sent.incrementAndGet();
+	}
+
+	private long toMillis(LocalDateTime dateTime) {
+		return dateTime.atZone(clock.getZone()).toInstant().toEpochMilli();
+	}
+
+	private LocalDateTime toDateTime(long millis) {
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), clock.getZone());
+	}
+
+	/**
+	 * task.reminder.sinksに指定した順に通知先を並べる
+	 */
+	private static List<ReminderSink> select(List<ReminderSink> sinks, List<String> names) {
+		List<ReminderSink> selected = new ArrayList<>(names.size());
+		for (String name : names) {
+			ReminderSink sink = sinks.stream()
+					.filter(candidate -> candidate.name().equals(name))
+					.findFirst()
+					.orElseThrow(() -> new IllegalArgumentException("存在しない通知先です: " + name));
+			selected.add(sink);
+		}
+		return selected;
+	}
+}
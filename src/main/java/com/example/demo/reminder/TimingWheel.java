@@ -0,0 +1,180 @@
+package com.example.demo.reminder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * idごとに1つのタイマーを持つハッシュ化タイミングホイール
+ * 刻み（tick）ごとの枠を環状に並べ、タイマーは発火する刻みの番号を枠の数で割った余りの枠に連結リストでつなぐ
+ * 登録・取り消しは枠への連結と切り離しのみで、件数によらず一定の時間で終わる
+ * 1刻み進めるごとに1つの枠のみを調べ、発火する刻みが来たタイマーを取り出す（1周以上先のものは残す）
+ * 時刻はミリ秒（エポックからの経過）で扱う スレッドセーフ（各操作はこのインスタンスのロックで直列化する）
+ */
+public class TimingWheel {
+
+	private final long tickMillis;
+
+	private final int mask;
+
+	/** 枠ごとの連結リストの先頭 */
+	private final Timer[] buckets;
+
+	private final Map<Integer, Timer> timers = new HashMap<>();
+
+	private final int maxPending;
+
+	/** 処理済みの刻みの番号 */
+	private long currentTick;
+
+	/**
+	 * @param tickMillis 刻み
+	 * @param wheelSize 枠の数 2のべき乗に切り上げる
+	 * @param maxPending タイマーの最大件数
+	 * @param startMillis 開始時刻 これより前の刻みは処理済みとする
+	 */
+	public TimingWheel(long tickMillis, int wheelSize, int maxPending, long startMillis) {
+		if (tickMillis <= 0 || wheelSize <= 0) {
+			throw new IllegalArgumentException("刻みと枠の数は1以上で指定してください");
+		}
+		int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+		this.tickMillis = tickMillis;
+		this.mask = size - 1;
+		this.buckets = new Timer[size];
+		this.maxPending = maxPending;
+		this.currentTick = startMillis / tickMillis;
+	}
+
+	/**
+	 * タイマーを登録する 同じidのタイマーがある場合は置き換える
+	 * 発火時刻が過ぎている場合は次の刻みで発火する
+	 * @param id
+	 * @param fireAtMillis 発火時刻
+	 * @param deadlineMillis 発火時に呼び出し側へ返す値（タスクの期限）
+	 * @return 件数の上限に達していて登録できなかった場合はfalse
+	 */
+	public synchronized boolean schedule(int id, long fireAtMillis, long deadlineMillis) {
+		Timer timer = timers.get(id);
+		if (timer != null) {
+			unlink(timer);
+		} else if (timers.size() >= maxPending) {
+			return false;
+		} else {
+			timer = new Timer(id);
+			timers.put(id, timer);
+		}
+		//発火時刻以降の最初の刻みで発火する（早まることは無く、遅れは1刻み未満）
+		timer.tick = Math.max(-Math.floorDiv(-fireAtMillis, tickMillis), currentTick + 1);
+		timer.deadline = deadlineMillis;
+		link(timer);
+		return true;
+	}
+
+	/**
+	 * タイマーを取り消す
+	 * @param id
+	 * @return 登録されていた場合はtrue
+	 */
+	public synchronized boolean cancel(int id) {
+		Timer timer = timers.remove(id);
+		if (timer == null) {
+			return false;
+		}
+		unlink(timer);
+		return true;
+	}
+
+	/**
+	 * nowMillisまでの刻みを処理し、発火したタイマーを取り除いて返す
+	 * 1周分以上遅れていた場合は全ての枠を1回ずつ調べる
+	 * @param nowMillis
+	 * @return 発火したタイマー 順序は発火時刻順とは限らない
+	 */
+	public synchronized List<Expired> advance(long nowMillis) {
+		long nowTick = Math.floorDiv(nowMillis, tickMillis);
+		List<Expired> expired = new ArrayList<>();
+		long last = Math.min(nowTick, currentTick + buckets.length);
+		for (long tick = currentTick + 1; tick <= last; tick++) {
+			int index = (int) (tick & mask);
+			Timer timer = buckets[index];
+			while (timer != null) {
+				Timer next = timer.next;
+				if (timer.tick <= nowTick) {
+					unlink(timer);
+					timers.remove(timer.id);
+					expired.add(new Expired(timer.id, timer.deadline));
+				}
+				timer = next;
+			}
+		}
+		currentTick = Math.max(currentTick, nowTick);
+		return expired;
+	}
+
+	public synchronized int size() {
+		return timers.size();
+	}
+
+	private void link(Timer timer) {
+		int index = (int) (timer.tick & mask);
+		Timer head = buckets[index];
+		timer.prev = null;
+		timer.next = head;
+		if (head != null) {
+			head.prev = timer;
+		}
+		buckets[index] = timer;
+	}
+
+	private void unlink(Timer timer) {
+		if (timer.prev != null) {
+			timer.prev.next = timer.next;
+		} else {
+			buckets[(int) (timer.tick & mask)] = timer.next;
+		}
+		if (timer.next != null) {
+			timer.next.prev = timer.prev;
+		}
+		timer.prev = null;
+		timer.next = null;
+	}
+
+	/**
+	 * 発火したタイマー
+	 */
+	public static final class Expired {
+
+		private final int id;
+		private final long deadline;
+
+		Expired(int id, long deadline) {
+			this.id = id;
+			this.deadline = deadline;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public long getDeadline() {
+			return deadline;
+		}
+	}
+
+	/**
+	 * 枠の連結リストの要素
+	 */
+	private static final class Timer {
+
+		private final int id;
+		private long tick;
+		private long deadline;
+		private Timer prev;
+		private Timer next;
+
+		Timer(int id) {
+			this.id = id;
+		}
+	}
+}
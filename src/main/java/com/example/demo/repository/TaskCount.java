@@ -0,0 +1,40 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * タスクの件数の集計結果の1行（タスクタイプ・ユーザー・期限ごと）
+ */
+public final class TaskCount {
+
+	private final int typeId;
+	private final int userId;
+	private final LocalDateTime deadline;
+	private final long count;
+
+	public TaskCount(int typeId, int userId, LocalDateTime deadline, long count) {
+		this.typeId = typeId;
+		this.userId = userId;
+		this.deadline = deadline;
+		this.count = count;
+	}
+
+	public int getTypeId() {
+		return typeId;
+	}
+
+	public int getUserId() {
+		return userId;
+	}
+
+	/**
+	 * @return 期限を過ぎたタスクの場合はnull
+	 */
+	public LocalDateTime getDeadline() {
+		return deadline;
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.repository;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+import com.example.demo.entity.Task;
+
+/**
+ * キーセットページングの位置（deadline, id）を表す
+ * after/beforeでどちら向きに読むかを持つ
+ */
+public final class TaskCursor {
+
+	private static final char SEPARATOR = '_';
+
+	private final LocalDateTime deadline;
+	private final int id;
+	private final boolean backward;
+
+	private TaskCursor(LocalDateTime deadline, int id, boolean backward) {
+		this.deadline = deadline;
+		this.id = id;
+		this.backward = backward;
+	}
+
+	/**
+	 * 指定したタスクより後ろのページを読むカーソル
+	 * @param task
+	 * @return
+	 */
+	public static TaskCursor after(Task task) {
+		return new TaskCursor(task.getDeadline(), task.getId(), false);
+	}
+
+	/**
+	 * 指定したタスクより前のページを読むカーソル
+	 * @param task
+	 * @return
+	 */
+	public static TaskCursor before(Task task) {
+		return new TaskCursor(task.getDeadline(), task.getId(), true);
+	}
+
+	/**
+	 * リクエストパラメータからカーソルを復元 不正な値の場合は空
+	 * @param value encode()で作成した文字列
+	 * @param backward beforeパラメータの場合はtrue
+	 * @return
+	 */
+	public static Optional<TaskCursor> parse(String value, boolean backward) {
+		if (value == null) {
+			return Optional.empty();
+		}
+		int pos = value.lastIndexOf(SEPARATOR);
+		if (pos <= 0) {
+			return Optional.empty();
+		}
+		try {
+			LocalDateTime deadline = LocalDateTime.parse(value.substring(0, pos));
+			int id = Integer.parseInt(value.substring(pos + 1));
+			return Optional.of(new TaskCursor(deadline, id, backward));
+		} catch (DateTimeParseException | NumberFormatException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * URLに載せるための文字列（例: 2020-07-07T15:00_1）
+	 * @return
+	 */
+	public String encode() {
+		return deadline.toString() + SEPARATOR + id;
+	}
+
+	public LocalDateTime getDeadline() {
+		return deadline;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public boolean isBackward() {
+		return backward;
+	}
+}
@@ -1,7 +1,9 @@
 package com.example.demo.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.example.demo.entity.Task;
 
@@ -11,12 +13,76 @@ public interface TaskDao{
 
 	Optional<Task> findById(int id);
 
+	/**
+	 * 指定したidのタスクを1回のSQLで取得する 並び順は不定、存在しないidは含まない
+	 */
+	List<Task> findAllById(List<Integer> ids);
+
+	/**
+	 * 1件登録し、採番されたidをtaskに設定する
+	 */
 	void insert(Task task);
 
+	/**
+	 * idとversionが一致する行を更新し、成功した場合はtaskのversionを1増やす
+	 * @return 更新件数 行が無い場合と、他で更新されてversionが進んでいる場合は0
+	 */
 	int update(Task task);
 
+	/**
+	 * JDBCのバッチで一括登録し、採番されたidを各taskに設定する
+	 * @return 各行の登録件数
+	 */
+	int[] insertAll(List<Task> tasks);
+
+	/**
+	 * JDBCのバッチで一括更新 1件更新と同じくidとversionが一致する行のみ更新し、成功した行のversionを1増やす
+	 * ロック待ちの時間切れなどで失敗した行は更新件数0とし、残りの行は実行する
+	 * @return 各行の更新件数
+	 */
+	int[] updateAll(List<Task> tasks);
+
 	int deleteById(int id);
 
 	List<Task> findByType(int typeId);
 
-}
\ No newline at end of file
+	/**
+	 * 全件を(deadline, id)順に1件ずつ読み込んでactionに渡す
+	 * 結果をリストに保持しないため、件数が多くてもメモリ使用量は一定
+	 * @param fetchSize 1回の通信で取得する行数の目安
+	 * @param action
+	 */
+	void forEach(int fetchSize, Consumer<Task> action);
+
+	/**
+	 * 指定したtype_idのタスクを(deadline, id)順に1件ずつ読み込んでactionに渡す
+	 * @param typeId
+	 * @param fetchSize
+	 * @param action
+	 */
+	void forEachByType(int typeId, int fetchSize, Consumer<Task> action);
+
+	/**
+	 * (deadline, id)順のキーセットページング
+	 * cursorがnullの場合は先頭から、limit件まで昇順で返す
+	 */
+	List<Task> findPage(TaskCursor cursor, int limit);
+
+	List<Task> findPageByType(int typeId, TaskCursor cursor, int limit);
+
+	/**
+	 * taskテーブルの件数の概算（統計情報から取得するため全件走査しない）
+	 */
+	long countEstimate();
+
+	int countByType(int typeId);
+
+	/**
+	 * (type_id, user_id, deadline)ごとの件数を1回のGROUP BYで集計し、1行ずつactionに渡す
+	 * 期限がnowより前のタスクは期限をnullとして(type_id, user_id)ごとにまとめる
+	 * @param now 期限を過ぎたかどうかの基準
+	 * @param action
+	 */
+	void forEachCount(LocalDateTime now, Consumer<TaskCount> action);
+
+}
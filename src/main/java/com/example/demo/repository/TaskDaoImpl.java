@@ -1,138 +1,300 @@
 package com.example.demo.repository;
 
-import java.sql.Timestamp;
-import java.util.ArrayList;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import com.example.demo.entity.Task;
-import com.example.demo.entity.TaskType;
 
 @Repository
 public class TaskDaoImpl implements TaskDao {
 
-	private final JdbcTemplate jdbcTemplate;
+	//taskRowMapperは列番号で読み出すため、列の並びを変える場合は合わせて修正すること
+	//タスクタイプはTaskTypeDaoが保持しているものを使うため結合しない
+	private static final String SELECT_SQL = "SELECT id, user_id, type_id, title, detail, deadline, version FROM task ";
 
-	public TaskDaoImpl(JdbcTemplate jdbcTemplate) {
-		this.jdbcTemplate = jdbcTemplate;
-	}
+	private static final String FIND_ALL_SQL = SELECT_SQL;
+	private static final String FIND_BY_ID_SQL = SELECT_SQL + "WHERE id = ?";
+	private static final String SELECT_BY_IDS_SQL = SELECT_SQL + "WHERE id IN ";
+	private static final String FIND_BY_TYPE_SQL = SELECT_SQL + "WHERE type_id = ?";
 
-	@Override
-	public List<Task> findAll() {
+	//(deadline, id)より後ろ/前 deadline単独の範囲条件を先に置き、インデックスの範囲検索を効かせる
+	private static final String AFTER_SQL = "deadline >= ? AND (deadline > ? OR id > ?) ";
+	private static final String BEFORE_SQL = "deadline <= ? AND (deadline < ? OR id < ?) ";
+	private static final String ASC_LIMIT_SQL = "ORDER BY deadline, id LIMIT ?";
+	private static final String DESC_LIMIT_SQL = "ORDER BY deadline DESC, id DESC LIMIT ?";
+	//type_idは一定だが、並び順に含めないとH2がインデックスの順序をそのまま使えず全件を並び替える
+	private static final String TYPE_ASC_LIMIT_SQL = "ORDER BY type_id, deadline, id LIMIT ?";
+	private static final String TYPE_DESC_LIMIT_SQL = "ORDER BY type_id DESC, deadline DESC, id DESC LIMIT ?";
+
+	private static final String FIND_FIRST_PAGE_SQL = SELECT_SQL + ASC_LIMIT_SQL;
+	private static final String FIND_PAGE_AFTER_SQL = SELECT_SQL + "WHERE " + AFTER_SQL + ASC_LIMIT_SQL;
+	private static final String FIND_PAGE_BEFORE_SQL = SELECT_SQL + "WHERE " + BEFORE_SQL + DESC_LIMIT_SQL;
+	private static final String FIND_FIRST_PAGE_BY_TYPE_SQL = SELECT_SQL + "WHERE type_id = ? " + TYPE_ASC_LIMIT_SQL;
+	private static final String FIND_PAGE_BY_TYPE_AFTER_SQL = SELECT_SQL
+			+ "WHERE type_id = ? AND " + AFTER_SQL + TYPE_ASC_LIMIT_SQL;
+	private static final String FIND_PAGE_BY_TYPE_BEFORE_SQL = SELECT_SQL
+			+ "WHERE type_id = ? AND " + BEFORE_SQL + TYPE_DESC_LIMIT_SQL;
 
-		String sql = "SELECT task.id, user_id, type_id, title, detail, deadline, "
-				+ "type, comment FROM task "
-				+ "INNER JOIN task_type ON task.type_id = task_type.id";
+	private static final String FOR_EACH_SQL = SELECT_SQL + "ORDER BY deadline, id";
+	private static final String FOR_EACH_BY_TYPE_SQL = SELECT_SQL + "WHERE type_id = ? ORDER BY type_id, deadline, id";
 
-		//タスク一覧をMapのListで取得
-		List<Map<String, Object>> resultList = jdbcTemplate.queryForList(sql);
+	private static final String COUNT_ESTIMATE_SQL = "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES "
+			+ "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'TASK'";
+	private static final String COUNT_BY_TYPE_SQL = "SELECT COUNT(*) FROM task WHERE type_id = ?";
+	//期限を過ぎたタスクは期限をNULLにして1行にまとめ、期限が先のタスクのみ期限ごとの行にする
+	private static final String COUNT_GROUPED_SQL = "SELECT type_id, user_id, due, COUNT(*) FROM "
+			+ "(SELECT type_id, user_id, CASE WHEN deadline < ? THEN NULL ELSE deadline END AS due FROM task) "
+			+ "GROUP BY type_id, user_id, due";
 
-		//return用の空のListを用意
-		List<Task> list = new ArrayList<>();
+	private static final String INSERT_SQL = "INSERT INTO task(user_id, type_id, title, detail, deadline) VALUES(?, ?, ?, ?,?)";
+	//読み込んだ時点の版数と一致する場合のみ更新する（compare-and-set） 行ロックを取って読む必要が無い
+	private static final String UPDATE_SQL = "UPDATE task SET type_id = ?, title = ?, detail = ?, deadline = ?, "
+			+ "version = version + 1 WHERE id = ? AND version = ?";
+	private static final String DELETE_BY_ID_SQL = "DELETE FROM task WHERE id = ?";
 
-		//二つのテーブルのデータをTaskにまとめる
-		for(Map<String, Object> result : resultList) {
+	private static final String[] GENERATED_KEY_COLUMNS = { "id" };
+
+	private final JdbcTemplate jdbcTemplate;
 
+	private final TaskTypeDao taskTypeDao;
+
+	//列名の検索とMapの生成を避けるため列番号で取得し、タスクタイプは共有インスタンスを割り当てる
+	private final RowMapper<Task> taskRowMapper;
+
+	public TaskDaoImpl(JdbcTemplate jdbcTemplate, TaskTypeDao taskTypeDao) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.taskTypeDao = taskTypeDao;
+		this.taskRowMapper = (rs, rowNum) -> {
 			Task task = new Task();
-			task.setId((int)result.get("id"));
-			task.setUserId((int)result.get("user_id"));
-			task.setTypeId((int)result.get("type_id"));
-			task.setTitle((String)result.get("title"));
-			task.setDetail((String)result.get("detail"));
-			task.setDeadline(((Timestamp) result.get("deadline")).toLocalDateTime());
-
-			TaskType type = new TaskType();
-			type.setId((int)result.get("type_id"));
-			type.setType((String)result.get("type"));
-			type.setComment((String)result.get("comment"));
-			task.setTaskType(type);
-
-			list.add(task);
-		}
-		return list;
+			int typeId = rs.getInt(3);
+			task.setId(rs.getInt(1));
+			task.setUserId(rs.getInt(2));
+			task.setTypeId(typeId);
+			task.setTitle(rs.getString(4));
+			task.setDetail(rs.getString(5));
+			task.setDeadline(rs.getObject(6, LocalDateTime.class));
+			task.setVersion(rs.getInt(7));
+			task.setTaskType(this.taskTypeDao.findById(typeId).orElse(null));
+			return task;
+		};
+	}
+
+	@Override
+	public List<Task> findAll() {
+		return jdbcTemplate.query(FIND_ALL_SQL, taskRowMapper);
 	}
 
 	@Override
 	public Optional<Task> findById(int id) {
-		String sql = "SELECT task.id, user_id, type_id, title, detail, deadline, "
-				+ "type, comment FROM task "
-				+ "INNER JOIN task_type ON task.type_id = task_type.id "
-				+ "WHERE task.id = ?";
-		Map<String, Object> result = jdbcTemplate.queryForMap(sql, id);
-
-		Task task = new Task();
-		task.setId((int)result.get("id"));
-		task.setUserId((int)result.get("user_id"));
-		task.setTypeId((int)result.get("type_id"));
-		task.setTitle((String)result.get("title"));
-		task.setDetail((String)result.get("detail"));
-		task.setDeadline(((Timestamp) result.get("deadline")).toLocalDateTime());
-
-		TaskType type = new TaskType();
-		type.setId((int)result.get("type_id"));
-		type.setType((String)result.get("type"));
-		type.setComment((String)result.get("comment"));
-		task.setTaskType(type);
+		//該当なしの場合はEmptyResultDataAccessExceptionが発生する
+		Task task = jdbcTemplate.queryForObject(FIND_BY_ID_SQL, taskRowMapper, id);
 
 		//taskをOptionalでラップする
-		Optional<Task> taskOpt = Optional.ofNullable(task);
+		return Optional.ofNullable(task);
+	}
 
-		return taskOpt;
+	@Override
+	public List<Task> findAllById(List<Integer> ids) {
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		//件数分のプレースホルダを並べる（一括更新のバッチサイズごとに呼ばれるため、文の種類は限られる）
+		String sql = SELECT_BY_IDS_SQL + "(" + "?, ".repeat(ids.size() - 1) + "?)";
+		return jdbcTemplate.query(sql, taskRowMapper, ids.toArray());
 	}
 
 	@Override
 	public void insert(Task task) {
-		jdbcTemplate.update("INSERT INTO task(user_id, type_id, title, detail, deadline) VALUES(?, ?, ?, ?,?)",
-				 task.getUserId(), task.getTypeId(), task.getTitle(), task.getDetail(), task.getDeadline() );
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbcTemplate.update(con -> {
+			PreparedStatement ps = con.prepareStatement(INSERT_SQL, GENERATED_KEY_COLUMNS);
+			setInsertParameters(ps, task);
+			return ps;
+		}, keyHolder);
+		task.setId(keyHolder.getKey().intValue());
 	}
 
 	@Override
 	public int update(Task task) {
-		return jdbcTemplate.update("UPDATE task SET type_id = ?, title = ?, detail = ?,deadline = ? WHERE id = ?",
-				task.getTypeId(), task.getTitle(), task.getDetail(), task.getDeadline(), task.getId() );
+		int count = jdbcTemplate.update(UPDATE_SQL,
+				task.getTypeId(), task.getTitle(), task.getDetail(), task.getDeadline(), task.getId(), task.getVersion());
+		if (count > 0) {
+			task.setVersion(task.getVersion() + 1);
+		}
+		return count;
+	}
+
+	@Override
+	public int[] insertAll(List<Task> tasks) {
+		if (tasks.isEmpty()) {
+			return new int[0];
+		}
+		return jdbcTemplate.execute(
+				(Connection con) -> con.prepareStatement(INSERT_SQL, GENERATED_KEY_COLUMNS),
+				(PreparedStatement ps) -> {
+					for (Task task : tasks) {
+						setInsertParameters(ps, task);
+						ps.addBatch();
+					}
+					int[] counts = ps.executeBatch();
+
+					//採番されたidを登録順に詰め直す
+					try (ResultSet keys = ps.getGeneratedKeys()) {
+						for (int i = 0; i < tasks.size() && keys.next(); i++) {
+							tasks.get(i).setId(keys.getInt(1));
+						}
+					}
+					return counts;
+				});
+	}
+
+	@Override
+	public int[] updateAll(List<Task> tasks) {
+		if (tasks.isEmpty()) {
+			return new int[0];
+		}
+		int[] counts;
+		try {
+			counts = jdbcTemplate.batchUpdate(UPDATE_SQL, new BatchPreparedStatementSetter() {
+
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					Task task = tasks.get(i);
+					ps.setInt(1, task.getTypeId());
+					ps.setString(2, task.getTitle());
+					ps.setString(3, task.getDetail());
+					ps.setObject(4, task.getDeadline());
+					ps.setInt(5, task.getId());
+					ps.setInt(6, task.getVersion());
+				}
+
+				@Override
+				public int getBatchSize() {
+					return tasks.size();
+				}
+			});
+		} catch (ConcurrencyFailureException e) {
+			//H2は失敗した行の後も実行を続け、行ごとの結果を返す（失敗した行はEXECUTE_FAILED）
+			if (!(e.getCause() instanceof BatchUpdateException)) {
+				throw e;
+			}
+			counts = ((BatchUpdateException) e.getCause()).getUpdateCounts();
+		}
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = Math.max(0, counts[i]);
+			if (counts[i] > 0) {
+				tasks.get(i).setVersion(tasks.get(i).getVersion() + 1);
+			}
+		}
+		return counts;
 	}
 
 	@Override
 	public int deleteById(int id) {
-		return jdbcTemplate.update("DELETE FROM task WHERE id = ?", id);
+		return jdbcTemplate.update(DELETE_BY_ID_SQL, id);
 	}
 
 	@Override
 	public List<Task> findByType(int typeId) {
-		//2-1 指定したtype_idと一致するタスクのリストを取得するためのSQLを記述する
-		String sql = "SELECT task.id, user_id, type_id, title, detail, deadline, "
-				+ "type, comment FROM task "
-				+ "INNER JOIN task_type ON task.type_id = task_type.id "
-				+ "WHERE task.type_id = ?";
+		//2-1 指定したtype_idと一致するタスクのリストを取得する
+		return jdbcTemplate.query(FIND_BY_TYPE_SQL, taskRowMapper, typeId);
+	}
 
-		//2-2 SQLとtypeIdを渡し、タスク一覧をMapのListで取得する
-		List<Map<String, Object>> resultList = jdbcTemplate.queryForList(sql,typeId);
+	@Override
+	public void forEach(int fetchSize, Consumer<Task> action) {
+		stream(FOR_EACH_SQL, fetchSize, action);
+	}
 
-		//return用の空のListを用意
-		List<Task> list = new ArrayList<>();
+	@Override
+	public void forEachByType(int typeId, int fetchSize, Consumer<Task> action) {
+		stream(FOR_EACH_BY_TYPE_SQL, fetchSize, action, typeId);
+	}
 
-		//二つのテーブルのデータをTaskにまとめる
-		for(Map<String, Object> result : resultList) {
+	@Override
+	public List<Task> findPage(TaskCursor cursor, int limit) {
+		if (cursor == null) {
+			return jdbcTemplate.query(FIND_FIRST_PAGE_SQL, taskRowMapper, limit);
+		}
+		String sql = cursor.isBackward() ? FIND_PAGE_BEFORE_SQL : FIND_PAGE_AFTER_SQL;
+		List<Task> list = jdbcTemplate.query(sql, taskRowMapper,
+				cursor.getDeadline(), cursor.getDeadline(), cursor.getId(), limit);
+		return ascending(list, cursor);
+	}
 
-			Task task = new Task();
-			task.setId((int)result.get("id"));
-			task.setUserId((int)result.get("user_id"));
-			task.setTypeId((int)result.get("type_id"));
-			task.setTitle((String)result.get("title"));
-			task.setDetail((String)result.get("detail"));
-			task.setDeadline(((Timestamp) result.get("deadline")).toLocalDateTime());
-
-			TaskType type = new TaskType();
-			type.setId((int)result.get("type_id"));
-			type.setType((String)result.get("type"));
-			type.setComment((String)result.get("comment"));
-			task.setTaskType(type);
-
-			list.add(task);
+	@Override
+	public List<Task> findPageByType(int typeId, TaskCursor cursor, int limit) {
+		if (cursor == null) {
+			return jdbcTemplate.query(FIND_FIRST_PAGE_BY_TYPE_SQL, taskRowMapper, typeId, limit);
+		}
+		String sql = cursor.isBackward() ? FIND_PAGE_BY_TYPE_BEFORE_SQL : FIND_PAGE_BY_TYPE_AFTER_SQL;
+		List<Task> list = jdbcTemplate.query(sql, taskRowMapper,
+				typeId, cursor.getDeadline(), cursor.getDeadline(), cursor.getId(), limit);
+		return ascending(list, cursor);
+	}
+
+	@Override
+	public long countEstimate() {
+		Long count = jdbcTemplate.queryForObject(COUNT_ESTIMATE_SQL, Long.class);
+		return count == null ? 0 : count;
+	}
+
+	@Override
+	public int countByType(int typeId) {
+		Integer count = jdbcTemplate.queryForObject(COUNT_BY_TYPE_SQL, Integer.class, typeId);
+		return count == null ? 0 : count;
+	}
+
+	@Override
+	public void forEachCount(LocalDateTime now, Consumer<TaskCount> action) {
+		jdbcTemplate.query(COUNT_GROUPED_SQL, (RowCallbackHandler) rs -> action.accept(new TaskCount(
+				rs.getInt(1), rs.getInt(2), rs.getObject(3, LocalDateTime.class), rs.getLong(4))), now);
+	}
+
+	private void setInsertParameters(PreparedStatement ps, Task task) throws SQLException {
+		ps.setInt(1, task.getUserId());
+		ps.setInt(2, task.getTypeId());
+		ps.setString(3, task.getTitle());
+		ps.setString(4, task.getDetail());
+		ps.setObject(5, task.getDeadline());
+	}
+
+	/**
+	 * 前方向専用のカーソルで読み込み、1行ずつTaskに変換してactionに渡す
+	 */
+	private void stream(String sql, int fetchSize, Consumer<Task> action, Object... args) {
+		jdbcTemplate.query(con -> {
+			PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			for (int i = 0; i < args.length; i++) {
+				ps.setObject(i + 1, args[i]);
+			}
+			return ps;
+		}, (RowCallbackHandler) rs -> action.accept(taskRowMapper.mapRow(rs, rs.getRow())));
+	}
+
+	/**
+	 * 前ページは降順で取得しているため、昇順に並べ直す
+	 */
+	private List<Task> ascending(List<Task> list, TaskCursor cursor) {
+		if (cursor.isBackward()) {
+			Collections.reverse(list);
 		}
 		return list;
 	}
@@ -0,0 +1,23 @@
+package com.example.demo.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.example.demo.entity.TaskType;
+
+/**
+ * task_typeテーブルの参照
+ * 件数が少なくほぼ更新されないため、メモリ上に保持したものを返す
+ */
+public interface TaskTypeDao {
+
+	List<TaskType> findAll();
+
+	Optional<TaskType> findById(int id);
+
+	/**
+	 * task_typeテーブルを読み直す
+	 */
+	void refresh();
+
+}
@@ -0,0 +1,99 @@
+package com.example.demo.repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.entity.TaskType;
+
+@Repository
+public class TaskTypeDaoImpl implements TaskTypeDao {
+
+	private static final String FIND_ALL_SQL = "SELECT id, type, comment FROM task_type ORDER BY id";
+
+	private static final RowMapper<TaskType> TASK_TYPE_ROW_MAPPER = (rs, rowNum) -> {
+		TaskType type = new TaskType();
+		type.setId(rs.getInt(1));
+		type.setType(rs.getString(2));
+		type.setComment(rs.getString(3));
+		return type;
+	};
+
+	private final JdbcTemplate jdbcTemplate;
+
+	//初回アクセス時に読み込む refresh()で丸ごと差し替える
+	private volatile Snapshot snapshot;
+
+	public TaskTypeDaoImpl(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	@Override
+	public List<TaskType> findAll() {
+		return snapshot().all;
+	}
+
+	/**
+	 * 返すTaskTypeは全タスクで共有するインスタンスのため、変更しないこと
+	 */
+	@Override
+	public Optional<TaskType> findById(int id) {
+		TaskType[] byId = snapshot().byId;
+		if (id < 0 || id >= byId.length) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(byId[id]);
+	}
+
+	@Override
+	public synchronized void refresh() {
+		snapshot = load();
+	}
+
+	private Snapshot snapshot() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			synchronized (this) {
+				current = snapshot;
+				if (current == null) {
+					current = load();
+					snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	private Snapshot load() {
+		List<TaskType> list = jdbcTemplate.query(FIND_ALL_SQL, TASK_TYPE_ROW_MAPPER);
+
+		//idをそのまま添字にした配列を作る
+		int maxId = 0;
+		for (TaskType type : list) {
+			maxId = Math.max(maxId, type.getId());
+		}
+		TaskType[] byId = new TaskType[maxId + 1];
+		for (TaskType type : list) {
+			byId[type.getId()] = type;
+		}
+		return new Snapshot(byId, Collections.unmodifiableList(list));
+	}
+
+	/**
+	 * 読み込んだ内容 一式をまとめて差し替えるため不変にしている
+	 */
+	private static final class Snapshot {
+
+		private final TaskType[] byId;
+		private final List<TaskType> all;
+
+		private Snapshot(TaskType[] byId, List<TaskType> all) {
+			this.byId = byId;
+			this.all = all;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.User;
+
+/**
+ * ユーザーの登録・更新・削除の後にUserDaoImplが発行するイベント
+ * トランザクション内で発行された場合、＠TransactionalEventListenerのリスナーはコミット後に呼ばれる
+ */
+public class UserChangedEvent {
+
+	private final int id;
+	private final User user;
+
+	private UserChangedEvent(int id, User user) {
+		this.id = id;
+		this.user = user;
+	}
+
+	/**
+	 * 登録・更新
+	 * @param user 登録・更新後
+	 */
+	public static UserChangedEvent saved(User user) {
+		return new UserChangedEvent(user.getId(), user);
+	}
+
+	public static UserChangedEvent deleted(int id) {
+		return new UserChangedEvent(id, null);
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * 登録・更新後のユーザー 削除の場合はnull
+	 */
+	public User getUser() {
+		return user;
+	}
+}
@@ -2,18 +2,30 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Task;
 import com.example.demo.entity.User;
+import com.example.demo.routing.ReadReplica;
 
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * ＠ReadReplicaのメソッドは、レプリカが有効な場合（task.replica.enabled）レプリカから読む
+ * 登録・更新・削除は、反映した件数が1件以上の場合にUserChangedEventを発行する
+ */
 public interface UserDao {
 
+	@ReadReplica
 	List<User> findAll();
 
+	@ReadReplica
 	List<User> findActiveUsers();
 
+	@ReadReplica
 	User findById(int id);
 
+	/**
+	 * 1件登録し、採番されたidをuserに設定する
+	 * @return 登録件数
+	 */
 	int insert(User user);
 
 	int update(User user);
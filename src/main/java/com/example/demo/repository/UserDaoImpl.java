@@ -1,13 +1,21 @@
 package com.example.demo.repository;
 
+import java.sql.PreparedStatement;
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import com.example.demo.entity.User;
 
+/**
+ * 登録・更新・削除の後にUserChangedEventを発行する（UserDirectoryはコミット後にこれを反映する）
+ * トランザクション内で呼んだ場合、ロールバックされた変更は反映されない
+ */
 @Repository
 public class UserDaoImpl implements UserDao {
 
@@ -18,7 +26,7 @@ public class UserDaoImpl implements UserDao {
     private static final String ORDER_BY_SQL = "ORDER BY id";
 
     private static final String FIND_ALL_SQL = SELECT_SQL + FROM_SQL + ORDER_BY_SQL;
-    private static final String FIND_ACTIVE_USERS_SQL = SELECT_SQL + FROM_SQL + "WHERE enabled = 1 " + ORDER_BY_SQL;
+    private static final String FIND_ACTIVE_USERS_SQL = SELECT_SQL + FROM_SQL + "WHERE enabled = 1 ORDER BY enabled, id";
     private static final String FIND_BY_ID_SQL = SELECT_SQL + FROM_SQL + PRIMARY_KEY_WHERE_SQL;
 
     private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME +
@@ -31,6 +39,8 @@ public class UserDaoImpl implements UserDao {
 
     private static final String DELETE_BY_ID_SQL = "DELETE FROM " + TABLE_NAME + PRIMARY_KEY_WHERE_SQL;
 
+    private static final String[] GENERATED_KEY_COLUMNS = { "id" };
+
     private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> {
         var user = new User();
         user.setId(rs.getInt("id"));
@@ -45,8 +55,11 @@ public class UserDaoImpl implements UserDao {
 
     private final JdbcTemplate jdbcTemplate;
 
-    public UserDaoImpl(JdbcTemplate jdbcTemplate) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserDaoImpl(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
         this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -66,19 +79,26 @@ public class UserDaoImpl implements UserDao {
 
     @Override
     public int insert(User user) {
-        return jdbcTemplate.update(
-                INSERT_SQL,
-                user.getUsername(),
-                user.getEmail(),
-                user.getPassword(),
-                user.isEnabled(),
-                user.getAuthorityId(),
-                user.getTempkey());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int count = jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_SQL, GENERATED_KEY_COLUMNS);
+            ps.setString(1, user.getUsername());
+            ps.setString(2, user.getEmail());
+            ps.setString(3, user.getPassword());
+            ps.setBoolean(4, user.isEnabled());
+            ps.setString(5, user.getAuthorityId());
+            ps.setString(6, user.getTempkey());
+            return ps;
+        }, keyHolder);
+        //採番されたidを設定する
+        user.setId(keyHolder.getKey().intValue());
+        eventPublisher.publishEvent(UserChangedEvent.saved(copy(user)));
+        return count;
     }
 
     @Override
     public int update(User user) {
-        return jdbcTemplate.update(
+        int count = jdbcTemplate.update(
                 UPDATE_SQL,
                 user.getUsername(),
                 user.getEmail(),
@@ -87,10 +107,33 @@ public class UserDaoImpl implements UserDao {
                 user.getAuthorityId(),
                 user.getTempkey(),
                 user.getId());
+        if (count > 0) {
+            eventPublisher.publishEvent(UserChangedEvent.saved(copy(user)));
+        }
+        return count;
     }
 
     @Override
     public int deleteById(int id) {
-        return jdbcTemplate.update(DELETE_BY_ID_SQL, id);
+        int count = jdbcTemplate.update(DELETE_BY_ID_SQL, id);
+        if (count > 0) {
+            eventPublisher.publishEvent(UserChangedEvent.deleted(id));
+        }
+        return count;
+    }
+
+    /**
+     * イベントで渡すコピー 呼び出し元が後からuserを変更しても影響しないように
+     */
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setEmail(user.getEmail());
+        copy.setPassword(user.getPassword());
+        copy.setEnabled(user.isEnabled());
+        copy.setAuthorityId(user.getAuthorityId());
+        copy.setTempkey(user.getTempkey());
+        return copy;
     }
 }
@@ -0,0 +1,177 @@
+package com.example.demo.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.entity.Task;
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserChangedEvent;
+import com.example.demo.service.TaskCache;
+import com.example.demo.service.TaskChangedEvent;
+
+/**
+ * レプリケーションの代わり（task.replica.sync） ローカルで2つのH2をプライマリとレプリカとして使う場合に同期する
+ * 起動時にレプリカへschema.sqlを流してプライマリの全行を複製し、終わってからレプリカを使える状態にする
+ * 以降はタスク・ユーザーの変更イベント（コミット後）の行をレプリカに反映する
+ * task.replica.lagが0の場合は他のコミット後の処理より先に反映し、0より大きい場合はその時間だけ遅らせて専用のスレッドで反映する
+ * （遅らせた場合、その間に他のセッションがレプリカから読んだ一覧・キャッシュは古い値になる 実際の非同期レプリケーションと同じ）
+ * 反映後はタスク1件取得のキャッシュを破棄し、反映前にレプリカから読んだ古い値が残らないようにする
+ */
+public class LocalReplicator implements SmartInitializingSingleton, DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(LocalReplicator.class);
+
+	/** 複製するテーブル（外部キーは無いが、マスタから順に複製する） */
+	private static final List<String> TABLES = List.of("task_type", "authority", "user", "task");
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final String MERGE_TASK_SQL = "MERGE INTO task(id, user_id, type_id, title, detail, deadline, version) "
+			+ "KEY(id) VALUES(?, ?, ?, ?, ?, ?, ?)";
+	private static final String DELETE_TASK_SQL = "DELETE FROM task WHERE id = ?";
+	private static final String MERGE_USER_SQL = "MERGE INTO user(id, username, email, password, enabled, authority_id, tempkey) "
+			+ "KEY(id) VALUES(?, ?, ?, ?, ?, ?, ?)";
+	private static final String DELETE_USER_SQL = "DELETE FROM user WHERE id = ?";
+
+	private final ReplicaRoutingDataSource routing;
+
+	private final JdbcTemplate primary;
+
+	private final JdbcTemplate replica;
+
+	private final TaskCache taskCache;
+
+	private final long lagMillis;
+
+	/** 遅らせない場合はnull */
+	private final ScheduledExecutorService executor;
+
+	public LocalReplicator(ReplicaRoutingDataSource routing, TaskCache taskCache, long lagMillis) {
+		this.routing = routing;
+		this.primary = new JdbcTemplate(routing.getPrimary());
+		this.replica = new JdbcTemplate(routing.getReplica());
+		this.taskCache = taskCache;
+		this.lagMillis = lagMillis;
+		if (lagMillis > 0) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("replicator-");
+			threadFactory.setDaemon(true);
+			this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		} else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * schema.sql、data.sqlの実行後（DataSourceの初期化後）に呼ばれる
+	 */
+	@Override
+	public void afterSingletonsInstantiated() {
+		long start = System.nanoTime();
+		DataSource target = routing.getReplica();
+		new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(target);
+		long rows = 0;
+		for (String table : TABLES) {
+			rows += copy(table);
+		}
+		routing.ready();
+		log.info("レプリカに{}行を複製しました（{}ms）", rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onTaskChanged(TaskChangedEvent event) {
+		Task task = event.getTask();
+		int id = event.getId();
+		apply(() -> {
+			if (task == null) {
+				replica.update(DELETE_TASK_SQL, id);
+			} else {
+				replica.update(MERGE_TASK_SQL, task.getId(), task.getUserId(), task.getTypeId(), task.getTitle(),
+						task.getDetail(), task.getDeadline(), task.getVersion());
+			}
+			taskCache.invalidate(id);
+		});
+	}
+
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onUserChanged(UserChangedEvent event) {
+		User user = event.getUser();
+		int id = event.getId();
+		apply(() -> {
+			if (user == null) {
+				replica.update(DELETE_USER_SQL, id);
+			} else {
+				replica.update(MERGE_USER_SQL, user.getId(), user.getUsername(), user.getEmail(), user.getPassword(),
+						user.isEnabled(), user.getAuthorityId(), user.getTempkey());
+			}
+		});
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	private void apply(Runnable change) {
+		if (executor == null) {
+			change.run();
+			return;
+		}
+		executor.schedule(() -> {
+			try {
+				change.run();
+			} catch (RuntimeException e) {
+				log.warn("レプリカへの反映に失敗しました", e);
+			}
+		}, lagMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 1テーブル分の全行を、列の並びのまま複製する
+	 */
+	private long copy(String table) {
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		String[] insert = new String[1];
+		long[] count = new long[1];
+		primary.query("SELECT * FROM " + table, rs -> {
+			int columns = rs.getMetaData().getColumnCount();
+			if (insert[0] == null) {
+				insert[0] = "INSERT INTO " + table + " VALUES(" + "?, ".repeat(columns - 1) + "?)";
+			}
+			Object[] row = new Object[columns];
+			for (int i = 0; i < columns; i++) {
+				row[i] = rs.getObject(i + 1);
+			}
+			batch.add(row);
+			count[0]++;
+			if (batch.size() == BATCH_SIZE) {
+				replica.batchUpdate(insert[0], batch);
+				batch.clear();
+			}
+		});
+		if (!batch.isEmpty()) {
+			replica.batchUpdate(insert[0], batch);
+		}
+		return count[0];
+	}
+}
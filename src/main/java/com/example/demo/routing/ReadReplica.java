@@ -0,0 +1,18 @@
+package com.example.demo.routing;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 参照のみのメソッド task.replica.enabledがtrueの場合はレプリカから読む
+ * トランザクション内の呼び出しと、書き込んだ直後のセッション（ReadYourWritesFilter）はプライマリから読む
+ * レプリカはプライマリより遅れることがあるため、読んだ値を元に更新するメソッドには付けないこと
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ReadReplica {
+}
@@ -0,0 +1,76 @@
+package com.example.demo.routing;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.demo.repository.UserChangedEvent;
+import com.example.demo.service.TaskChangedEvent;
+
+/**
+ * 自分の書き込みが見えるように、書き込んだセッションはtask.replica.stickyの間プライマリから読む（read-your-writes）
+ * タスク・ユーザーの変更イベントを受けたリクエストは、以降の処理もプライマリから読み、セッションに期限を記録する
+ * 期限内のセッションのリクエストは、リクエスト全体をプライマリから読む
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	/** プライマリから読む期限（System.currentTimeMillis）を保持するセッションの属性 */
+	static final String PRIMARY_UNTIL = ReadYourWritesFilter.class.getName() + ".PRIMARY_UNTIL";
+
+	private final long stickyMillis;
+
+	public ReadYourWritesFilter(long stickyMillis) {
+		this.stickyMillis = stickyMillis;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		HttpSession session = request.getSession(false);
+		Object until = session == null ? null : session.getAttribute(PRIMARY_UNTIL);
+		ReplicaRoute.sticky(until instanceof Long && (Long) until > System.currentTimeMillis());
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			//リクエストのスレッドは使い回されるため、必ず外す
+			ReplicaRoute.sticky(false);
+		}
+	}
+
+	@EventListener
+	public void onTaskChanged(TaskChangedEvent event) {
+		written();
+	}
+
+	@EventListener
+	public void onUserChanged(UserChangedEvent event) {
+		written();
+	}
+
+	/**
+	 * リクエストの外（タイマーのスレッドなど）の書き込みは対象外
+	 * まとめ書き（TaskWriteBehind）の登録は、登録を受け付けたリクエストの情報を引き継いだスレッドで呼ばれる
+	 */
+	private void written() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return;
+		}
+		ReplicaRoute.sticky(true);
+		try {
+			attributes.setAttribute(PRIMARY_UNTIL, System.currentTimeMillis() + stickyMillis,
+					RequestAttributes.SCOPE_SESSION);
+		} catch (IllegalStateException e) {
+			//登録の完了より先にリクエストが終わっていた場合（insertAsync）
+		}
+	}
+}
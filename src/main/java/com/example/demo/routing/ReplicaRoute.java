@@ -0,0 +1,102 @@
+package com.example.demo.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * 現在のスレッドの読み先
+ * ＠ReadReplicaのメソッドの実行中はレプリカ、ただし書き込んだセッションのリクエスト（sticky）は常にプライマリ
+ * stickyはDaoExecutorなど別のスレッドで実行する処理にもpropagateで引き継ぐ
+ */
+public final class ReplicaRoute {
+
+	private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+
+	private static final ThreadLocal<Boolean> STICKY = new ThreadLocal<>();
+
+	private ReplicaRoute() {
+	}
+
+	/**
+	 * @return レプリカから読む場合はtrue（レプリカに接続できずにプライマリから読む場合も含む）
+	 */
+	public static boolean isReplica() {
+		return READ_ONLY.get() != null && STICKY.get() == null;
+	}
+
+	static boolean isReadOnly() {
+		return READ_ONLY.get() != null;
+	}
+
+	static void readOnly(boolean readOnly) {
+		if (readOnly) {
+			READ_ONLY.set(Boolean.TRUE);
+		} else {
+			READ_ONLY.remove();
+		}
+	}
+
+	static boolean isSticky() {
+		return STICKY.get() != null;
+	}
+
+	static void sticky(boolean sticky) {
+		if (sticky) {
+			STICKY.set(Boolean.TRUE);
+		} else {
+			STICKY.remove();
+		}
+	}
+
+	/**
+	 * このスレッドを、restoreで戻すまでstickyにする（＠ReadReplicaのメソッドもプライマリから読む）
+	 * @return 設定前のsticky restoreに渡す
+	 */
+	public static boolean stick() {
+		boolean previous = isSticky();
+		sticky(true);
+		return previous;
+	}
+
+	/**
+	 * stickで設定する前のstickyに戻す
+	 * @param previous stickの戻り値
+	 */
+	public static void restore(boolean previous) {
+		sticky(previous);
+	}
+
+	/**
+	 * runnableを実行し、このスレッドのstickyを実行前に戻す
+	 * プールのスレッドで書き込みのイベントを処理した場合に、stickyを後の処理に残さないために使う
+	 * @param runnable
+	 */
+	public static void restoring(Runnable runnable) {
+		boolean previous = isSticky();
+		try {
+			runnable.run();
+		} finally {
+			restore(previous);
+		}
+	}
+
+	/**
+	 * 呼び出し元のスレッドのstickyを、supplierを実行するスレッドに引き継ぐ
+	 * @param <T>
+	 * @param supplier
+	 * @return stickyでない場合はsupplierそのもの
+	 */
+	public static <T> Supplier<T> propagate(Supplier<T> supplier) {
+		if (!isSticky()) {
+			return supplier;
+		}
+		return () -> {
+			boolean previous = isSticky();
+			sticky(true);
+			try {
+				return supplier.get();
+			} finally {
+				sticky(previous);
+			}
+		};
+	}
+}
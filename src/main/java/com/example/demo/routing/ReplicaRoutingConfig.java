@@ -0,0 +1,87 @@
+package com.example.demo.routing;
+
+import javax.sql.DataSource;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.service.TaskCache;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * 参照のみのメソッド（＠ReadReplica）をレプリカから読む（task.replica.enabledがtrueの場合のみ）
+ * spring.datasourceのDataSourceをプライマリとしてReplicaRoutingDataSourceで包み、レプリカはtask.replicaの接続先に作る
+ * SQLの計測（SqlMetricsConfig）より先に包むため、計測はプライマリ・レプリカの両方が対象になる
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "task.replica", name = "enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+	@Bean
+	public static BeanPostProcessor replicaRoutingPostProcessor(ObjectProvider<TaskProperties> properties) {
+		return new RoutingPostProcessor(properties);
+	}
+
+	@Bean
+	public static Advisor replicaRoutingAdvisor() {
+		return new DefaultPointcutAdvisor(new AnnotationMatchingPointcut(null, ReadReplica.class, true),
+				new ReplicaRoutingInterceptor());
+	}
+
+	@Bean
+	public ReadYourWritesFilter readYourWritesFilter(TaskProperties properties) {
+		return new ReadYourWritesFilter(properties.getReplica().getSticky().toMillis());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "task.replica", name = "sync", havingValue = "true", matchIfMissing = true)
+	public LocalReplicator localReplicator(DataSource dataSource, TaskCache taskCache, TaskProperties properties)
+			throws Exception {
+		return new LocalReplicator(dataSource.unwrap(ReplicaRoutingDataSource.class), taskCache,
+				properties.getReplica().getLag().toMillis());
+	}
+
+	/**
+	 * Orderedを実装し、順序の無いBeanPostProcessor（SQLの計測）より先に適用する
+	 */
+	private static final class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+
+		private final ObjectProvider<TaskProperties> properties;
+
+		RoutingPostProcessor(ObjectProvider<TaskProperties> properties) {
+			this.properties = properties;
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (!(bean instanceof DataSource) || bean instanceof ReplicaRoutingDataSource) {
+				return bean;
+			}
+			TaskProperties.Replica config = properties.getObject().getReplica();
+			HikariDataSource replica = DataSourceBuilder.create()
+					.type(HikariDataSource.class)
+					.url(config.getUrl())
+					.username(config.getUsername())
+					.password(config.getPassword())
+					.build();
+			replica.setPoolName("replica");
+			//レプリケーションの代わりを使う場合は、複製が終わるまでプライマリから読む
+			return new ReplicaRoutingDataSource((DataSource) bean, replica, config.getRetryInterval().toNanos(),
+					!config.isSync());
+		}
+
+		@Override
+		public int getOrder() {
+			return Ordered.LOWEST_PRECEDENCE;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.example.demo.routing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * 読み先（ReplicaRoute）に応じてプライマリとレプリカのコネクションを返すDataSource
+ * レプリカに接続できなかった場合はプライマリから読み、task.replica.retry-intervalの間はレプリカに接続しない
+ * レプリカが使える状態になる（ready）まではプライマリから読む
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+	private final DataSource primary;
+
+	private final DataSource replica;
+
+	private final long retryNanos;
+
+	private volatile boolean ready;
+
+	/** レプリカに接続しない期限（System.nanoTime） 接続できている間は0 */
+	private volatile long downUntil;
+
+	/**
+	 * @param primary
+	 * @param replica
+	 * @param retryNanos
+	 * @param ready falseの場合はreadyが呼ばれるまでプライマリから読む（起動時に複製する場合）
+	 */
+	public ReplicaRoutingDataSource(DataSource primary, DataSource replica, long retryNanos, boolean ready) {
+		this.primary = primary;
+		this.replica = replica;
+		this.retryNanos = retryNanos;
+		this.ready = ready;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (!useReplica()) {
+			return primary.getConnection();
+		}
+		try {
+			return up(replica.getConnection());
+		} catch (SQLException e) {
+			down(e);
+			return primary.getConnection();
+		}
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (!useReplica()) {
+			return primary.getConnection(username, password);
+		}
+		try {
+			return up(replica.getConnection(username, password));
+		} catch (SQLException e) {
+			down(e);
+			return primary.getConnection(username, password);
+		}
+	}
+
+	/**
+	 * レプリカを使える状態にする
+	 */
+	public void ready() {
+		ready = true;
+	}
+
+	/**
+	 * @return レプリカを使える状態で、接続できなかった期間中でない場合はtrue
+	 */
+	public boolean isReplicaAvailable() {
+		long until = downUntil;
+		return ready && (until == 0 || System.nanoTime() - until >= 0);
+	}
+
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	public DataSource getReplica() {
+		return replica;
+	}
+
+	/**
+	 * プライマリ・レプリカのコネクションプール（HikariDataSourceなどCloseableのもの）を閉じる Beanの破棄時に呼ばれる
+	 */
+	@Override
+	public void close() throws IOException {
+		for (DataSource target : new DataSource[] { replica, primary }) {
+			if (target instanceof Closeable) {
+				((Closeable) target).close();
+			}
+		}
+	}
+
+	/**
+	 * コネクションプールのメトリクスなどはプライマリを対象にする
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return (T) this;
+		}
+		return primary.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || primary.isWrapperFor(iface);
+	}
+
+	private boolean useReplica() {
+		return ReplicaRoute.isReplica() && isReplicaAvailable();
+	}
+
+	private Connection up(Connection connection) {
+		if (downUntil != 0) {
+			downUntil = 0;
+			log.info("レプリカへの接続が回復しました");
+		}
+		return connection;
+	}
+
+	private void down(SQLException e) {
+		boolean wasUp = downUntil == 0;
+		downUntil = System.nanoTime() + retryNanos;
+		if (wasUp) {
+			log.warn("レプリカに接続できないため、{}秒間プライマリから読みます", TimeUnit.NANOSECONDS.toSeconds(retryNanos), e);
+		}
+	}
+}
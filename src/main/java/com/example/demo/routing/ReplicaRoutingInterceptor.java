@@ -0,0 +1,26 @@
+package com.example.demo.routing;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * ＠ReadReplicaのメソッドの実行中、読み先をレプリカにする（対象はReplicaRoutingConfig）
+ * トランザクション内ではコネクションがプライマリに確定しているため何もしない
+ * 入れ子の呼び出しでは外側のメソッドが終わるまでレプリカのままにする
+ */
+public class ReplicaRoutingInterceptor implements MethodInterceptor {
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		if (ReplicaRoute.isReadOnly() || TransactionSynchronizationManager.isActualTransactionActive()) {
+			return invocation.proceed();
+		}
+		ReplicaRoute.readOnly(true);
+		try {
+			return invocation.proceed();
+		} finally {
+			ReplicaRoute.readOnly(false);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.demo.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * タスク1件取得のキャッシュ
+ * 件数の上限と有効期間で破棄し、存在しなかったidも短い期間だけ保持する
+ * 読み込み中のidを無効化した場合は読み込みの完了を待ってから破棄するため、更新前の値が残ることはない
+ * （ロックはidごとで、キャッシュ全体のロックは取らない）
+ * 保持しているTaskは呼び出し元で共有されるため、変更しないこと
+ */
+@Component
+public class TaskCache {
+
+	private final Cache<Integer, Optional<Task>> cache;
+
+	public TaskCache(TaskProperties properties) {
+		TaskProperties.Cache config = properties.getCache();
+		long ttl = config.getTtl().toNanos();
+		long negativeTtl = config.getNegativeTtl().toNanos();
+
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(config.getMaximumSize())
+				.expireAfter(new Expiry<Integer, Optional<Task>>() {
+
+					@Override
+					public long expireAfterCreate(Integer key, Optional<Task> value, long currentTime) {
+						return value.isPresent() ? ttl : negativeTtl;
+					}
+
+					@Override
+					public long expireAfterUpdate(Integer key, Optional<Task> value, long currentTime, long currentDuration) {
+						return expireAfterCreate(key, value, currentTime);
+					}
+
+					@Override
+					public long expireAfterRead(Integer key, Optional<Task> value, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * キャッシュから取得し、無い場合はloaderで読み込んで保持する
+	 * @param id
+	 * @param loader 存在しない場合はOptional.empty()を返す
+	 * @return
+	 */
+	public Optional<Task> get(int id, IntFunction<Optional<Task>> loader) {
+		return cache.get(id, key -> loader.apply(key));
+	}
+
+	/**
+	 * キャッシュから取得する 無い場合も読み込まない
+	 * @param id
+	 * @return キャッシュに無い場合はnull
+	 */
+	public Optional<Task> getIfPresent(int id) {
+		return cache.getIfPresent(id);
+	}
+
+	/**
+	 * 登録したタスクを保持する 呼び出し元のインスタンスとは別のコピーを保持する
+	 * @param task
+	 */
+	public void put(Task task) {
+		cache.put(task.getId(), Optional.of(copy(task)));
+	}
+
+	public void invalidate(int id) {
+		cache.invalidate(id);
+	}
+
+	public void invalidateAll(List<Task> tasks) {
+		for (Task task : tasks) {
+			cache.invalidate(task.getId());
+		}
+	}
+
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * ヒット、ミス、破棄（件数超過と期限切れ）の件数
+	 * @return
+	 */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	private Task copy(Task task) {
+		Task copy = new Task();
+		copy.setId(task.getId());
+		copy.setUserId(task.getUserId());
+		copy.setTypeId(task.getTypeId());
+		copy.setTaskType(task.getTaskType());
+		copy.setTitle(task.getTitle());
+		copy.setDetail(task.getDetail());
+		copy.setDeadline(task.getDeadline());
+		return copy;
+	}
+}
@@ -0,0 +1,60 @@
+package com.example.demo.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * taskテーブルの変更の版数
+ * 登録・更新・削除のコミット後に全体の版数を1つ進め、関係するタスクタイプの版数をその値にする
+ * 読み込む側は版数を先に取得してからDBを読むこと（コミット後に版数を進めるため、
+ * 取得した版数に対応する変更は必ずDBから読める）
+ */
+@Component
+public class TaskChangeVersion {
+
+	/** 起動ごとに異なる値 再起動後に以前の版数と一致しないようにする */
+	private final long epoch = System.currentTimeMillis();
+
+	private final AtomicLong version = new AtomicLong();
+
+	/** タスクタイプごとの版数 */
+	private final ConcurrentMap<Integer, Long> typeVersions = new ConcurrentHashMap<>();
+
+	/** 変更前のタスクタイプが分からない変更の版数 全タスクタイプに適用する */
+	private volatile long allTypesVersion;
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onChanged(TaskChangedEvent event) {
+		long next = version.incrementAndGet();
+		if (event.getTask() != null) {
+			typeVersions.merge(event.getTask().getTypeId(), next, Math::max);
+		}
+		if (event.getPrevious() != null) {
+			typeVersions.merge(event.getPrevious().getTypeId(), next, Math::max);
+		} else if (event.getKind() != TaskChangedEvent.Kind.INSERTED) {
+			allTypesVersion = next;
+		}
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * 全体の版数
+	 */
+	public long current() {
+		return version.get();
+	}
+
+	/**
+	 * 指定したタスクタイプのタスクに影響した最後の変更の版数
+	 */
+	public long ofType(int typeId) {
+		return Math.max(typeVersions.getOrDefault(typeId, 0L), allTypesVersion);
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Task;
+
+/**
+ * タスクの登録・更新・削除の後にTaskServiceImplが発行するイベント
+ * トランザクション内で発行された場合、＠TransactionalEventListenerのリスナーはコミット後に呼ばれる
+ */
+public class TaskChangedEvent {
+
+	public enum Kind {
+		INSERTED, UPDATED, DELETED
+	}
+
+	private final Kind kind;
+	private final int id;
+	private final Task task;
+	private final Task previous;
+
+	private TaskChangedEvent(Kind kind, int id, Task task, Task previous) {
+		this.kind = kind;
+		this.id = id;
+		this.task = task;
+		this.previous = previous;
+	}
+
+	public static TaskChangedEvent inserted(Task task) {
+		return new TaskChangedEvent(Kind.INSERTED, task.getId(), task, null);
+	}
+
+	/**
+	 * @param task 更新後
+	 * @param previous 更新前 一括更新などで取得していない場合はnull
+	 */
+	public static TaskChangedEvent updated(Task task, Task previous) {
+		return new TaskChangedEvent(Kind.UPDATED, task.getId(), task, previous);
+	}
+
+	/**
+	 * @param id
+	 * @param previous 削除前 取得していない場合はnull
+	 */
+	public static TaskChangedEvent deleted(int id, Task previous) {
+		return new TaskChangedEvent(Kind.DELETED, id, null, previous);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * 登録・更新後のタスク 削除の場合はnull
+	 */
+	public Task getTask() {
+		return task;
+	}
+
+	/**
+	 * 更新・削除前のタスク 登録の場合と、取得していない場合はnull
+	 */
+	public Task getPrevious() {
+		return previous;
+	}
+}
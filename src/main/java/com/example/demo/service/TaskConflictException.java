@@ -0,0 +1,13 @@
+package com.example.demo.service;
+
+/**
+ * 更新するタスクが、読み込んだ後に他で更新されていた場合（versionが一致しない場合）の例外
+ */
+public class TaskConflictException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public TaskConflictException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,277 @@
+package com.example.demo.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDao;
+
+/**
+ * タスクのidを期限順に並べたインデックス（メモリ上）
+ * 全体とタスクタイプごとに(deadline, id)順のスキップリストを持ち、期限の範囲と先頭からの件数で取り出す
+ * 起動時に全件を読み込み、以降は登録・更新・削除のコミット後のTaskChangedEventで反映する
+ * 更新は行ロックを取らずにコミットするため、同じタスクのイベントが前後して届くことがある
+ * idごとに反映した版数を持ち、それより古い版のイベントと、削除したタスクのイベントは反映しない
+ * 削除したタスクの印は、前後して届くイベントが無くなるまで（DELETED_RETENTION）残してから捨てる
+ * 検索はロックを取らない
+ */
+@Component
+public class TaskDeadlineIndex implements SmartInitializingSingleton {
+
+	private static final Comparator<Entry> ORDER = Comparator
+			.comparing((Entry entry) -> entry.deadline)
+			.thenComparingInt(entry -> entry.id);
+
+	/**
+	 * 削除したタスクの印を残す期間
+	 * 前後して届くのはコミットとほぼ同時に発行されたイベントのため、十分に長く取る
+	 */
+	private static final long DELETED_RETENTION = TimeUnit.MINUTES.toNanos(1);
+
+	private final TaskDao dao;
+
+	private final TaskProperties properties;
+
+	private final NavigableSet<Entry> all = new ConcurrentSkipListSet<>(ORDER);
+
+	private final ConcurrentMap<Integer, NavigableSet<Entry>> byType = new ConcurrentHashMap<>();
+
+	/**
+	 * idごとの現在の位置と版数 更新・削除で古い位置を取り除くために使う
+	 * 期限の無いタスクと削除したタスク（遅れて届いた変更で戻さないため）は位置を持たないEntryで残す
+	 */
+	private final ConcurrentMap<Integer, Entry> byId = new ConcurrentHashMap<>();
+
+	/** 削除したタスクの印 削除した順 */
+	private final Queue<Entry> deleted = new ConcurrentLinkedQueue<>();
+
+	/** 位置を持つ（期限のある）タスクの件数 */
+	private final AtomicInteger size = new AtomicInteger();
+
+	/** 起動時の読み込み中は変更の反映を待たせる（読み込んだ古い行で上書きしないため） */
+	private final ReadWriteLock loading = new ReentrantReadWriteLock();
+
+	public TaskDeadlineIndex(TaskDao dao, TaskProperties properties) {
+		this.dao = dao;
+		this.properties = properties;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		loading.writeLock().lock();
+		try {
+			dao.forEach(properties.getFetchSize(), this::put);
+		} finally {
+			loading.writeLock().unlock();
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onChanged(TaskChangedEvent event) {
+		loading.readLock().lock();
+		try {
+			if (event.getTask() != null) {
+				put(event.getTask());
+			} else {
+				remove(event.getId());
+			}
+		} finally {
+			loading.readLock().unlock();
+		}
+	}
+
+	/**
+	 * タスクを登録する 同じidが登録済みの場合は置き換える
+	 * 登録済みの版数より古い版のタスクと、削除したタスクは無視する
+	 * @param task
+	 */
+	public void put(Task task) {
+		Entry entry = new Entry(task.getDeadline(), task.getId(), task.getTypeId(), task.getVersion(), 0);
+		//同じidの変更が同時に来ても、取り除く位置と追加する位置が食い違わないようidごとに直列化する
+		byId.compute(task.getId(), (id, old) -> {
+			if (old != null && (old.isDeleted() || entry.version < old.version)) {
+				return old;
+			}
+			unlink(old);
+			link(entry);
+			return entry;
+		});
+	}
+
+	/**
+	 * タスクを取り除く 以降、削除の印を捨てるまでは同じidのタスクは登録しない
+	 * 期間を過ぎた削除の印はここで捨てる
+	 * @param id
+	 */
+	public void remove(int id) {
+		long now = System.nanoTime();
+		byId.compute(id, (key, old) -> {
+			unlink(old);
+			Entry tombstone = Entry.deleted(id, now);
+			deleted.add(tombstone);
+			return tombstone;
+		});
+		purgeDeleted(now);
+	}
+
+	/**
+	 * 削除してからDELETED_RETENTIONを過ぎた印を捨てる
+	 * @param now System.nanoTime()
+	 */
+	void purgeDeleted(long now) {
+		for (Entry head = deleted.peek(); head != null && now - head.deletedAt >= DELETED_RETENTION; head = deleted.peek()) {
+			//同時に捨てている場合は取り出せた方だけが捨てる 削除し直したidは新しい印が残る
+			if (deleted.remove(head)) {
+				byId.remove(head.id, head);
+			}
+		}
+	}
+
+	/**
+	 * 期限がfrom以上to未満のタスクのidを期限順に返す
+	 * @param from
+	 * @param to
+	 * @param limit 最大件数
+	 * @return
+	 */
+	public List<Integer> findBetween(LocalDateTime from, LocalDateTime to, int limit) {
+		return first(all.subSet(lowest(from), true, lowest(to), false), limit);
+	}
+
+	/**
+	 * 期限がfrom以上to未満のタスクの期限とidを期限順に全てactionに渡す
+	 * @param from
+	 * @param to
+	 * @param action
+	 */
+	public void forEachBetween(LocalDateTime from, LocalDateTime to, ObjIntConsumer<LocalDateTime> action) {
+		for (Entry entry : all.subSet(lowest(from), true, lowest(to), false)) {
+			action.accept(entry.deadline, entry.id);
+		}
+	}
+
+	/**
+	 * 期限がnowより前のタスクのidを期限の古い順に返す
+	 * @param now
+	 * @param limit 最大件数
+	 * @return
+	 */
+	public List<Integer> findBefore(LocalDateTime now, int limit) {
+		return first(all.headSet(lowest(now), false), limit);
+	}
+
+	/**
+	 * タスクタイプごとに、期限がnow以降のタスクのidを期限の近い順にk件ずつ返す
+	 * @param now
+	 * @param k
+	 * @return タスクタイプのidごとのタスクのid タスクが無いタスクタイプは含まない
+	 */
+	public Map<Integer, List<Integer>> findFirstByType(LocalDateTime now, int k) {
+		Map<Integer, List<Integer>> result = new TreeMap<>();
+		byType.forEach((typeId, entries) -> {
+			List<Integer> ids = first(entries.tailSet(lowest(now), true), k);
+			if (!ids.isEmpty()) {
+				result.put(typeId, ids);
+			}
+		});
+		return result;
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * 版数を持っているidの数（期限の無いタスクと削除の印を含む）
+	 */
+	int tracked() {
+		return byId.size();
+	}
+
+	private void link(Entry entry) {
+		if (entry.deadline != null) {
+			all.add(entry);
+			byType.computeIfAbsent(entry.typeId, type -> new ConcurrentSkipListSet<>(ORDER)).add(entry);
+			size.incrementAndGet();
+		}
+	}
+
+	private void unlink(Entry old) {
+		if (old != null && old.deadline != null) {
+			all.remove(old);
+			NavigableSet<Entry> entries = byType.get(old.typeId);
+			if (entries != null) {
+				entries.remove(old);
+			}
+			size.decrementAndGet();
+		}
+	}
+
+	private static List<Integer> first(NavigableSet<Entry> entries, int limit) {
+		List<Integer> ids = new ArrayList<>(Math.min(limit, 64));
+		for (Entry entry : entries) {
+			if (ids.size() >= limit) {
+				break;
+			}
+			ids.add(entry.id);
+		}
+		return ids;
+	}
+
+	/**
+	 * 指定した日時の最小の位置（範囲の境界に使う）
+	 */
+	private static Entry lowest(LocalDateTime deadline) {
+		return new Entry(deadline, Integer.MIN_VALUE, 0, 0, 0);
+	}
+
+	private static final class Entry {
+
+		/** 期限が無い場合と削除した場合はnull（位置を持たない） */
+		private final LocalDateTime deadline;
+		private final int id;
+		private final int typeId;
+		private final int version;
+		/** 削除した時刻（System.nanoTime()） 削除の印でない場合は0 */
+		private final long deletedAt;
+
+		Entry(LocalDateTime deadline, int id, int typeId, int version, long deletedAt) {
+			this.deadline = deadline;
+			this.id = id;
+			this.typeId = typeId;
+			this.version = version;
+			this.deletedAt = deletedAt;
+		}
+
+		/**
+		 * 削除の印 どの版よりも新しい
+		 */
+		static Entry deleted(int id, long deletedAt) {
+			return new Entry(null, id, 0, Integer.MAX_VALUE, deletedAt);
+		}
+
+		boolean isDeleted() {
+			return version == Integer.MAX_VALUE;
+		}
+	}
+}
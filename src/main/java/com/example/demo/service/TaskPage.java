@@ -0,0 +1,45 @@
+package com.example.demo.service;
+
+import java.util.List;
+
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskCursor;
+
+/**
+ * タスク一覧の1ページ分
+ * 前後のページが無い場合、カーソルはnull
+ */
+public class TaskPage {
+
+	private final List<Task> list;
+	private final TaskCursor prev;
+	private final TaskCursor next;
+	private final long total;
+
+	public TaskPage(List<Task> list, TaskCursor prev, TaskCursor next, long total) {
+		this.list = list;
+		this.prev = prev;
+		this.next = next;
+		this.total = total;
+	}
+
+	public List<Task> getList() {
+		return list;
+	}
+
+	public TaskCursor getPrev() {
+		return prev;
+	}
+
+	public TaskCursor getNext() {
+		return next;
+	}
+
+	/**
+	 * 件数（概算） 取得していない場合は-1
+	 * @return
+	 */
+	public long getTotal() {
+		return total;
+	}
+}
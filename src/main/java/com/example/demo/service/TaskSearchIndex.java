@@ -0,0 +1,396 @@
+package com.example.demo.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDao;
+
+/**
+ * タスクのタイトルと詳細の全文検索用の転置インデックス（メモリ上）
+ * 日本語は単語の区切りが無いため、正規化（NFKC、小文字化）した文字列の隣り合う2文字（bi-gram）を索引語にする
+ * 索引語ごとにタスクのidの昇順の配列（int[]）と出現回数（byte[]）を持つ
+ * 起動時に全件を読み込み、以降は登録・更新・削除のコミット後のTaskChangedEventで差分を反映する
+ * 更新は行ロックを取らずにコミットするため、同じタスクのイベントが前後して届くことがある
+ * idごとに反映した版数を持ち、それより古い版のイベントと、削除したタスクのイベントは反映しない
+ * 2文字が連続して現れることまでは確認しないため、検索結果は呼び出し側で本文と照合すること
+ */
+@Component
+public class TaskSearchIndex implements SmartInitializingSingleton {
+
+	/** タイトルに現れた索引語は詳細の3倍の重みにする */
+	private static final int TITLE_WEIGHT = 3;
+
+	private static final int MAX_FREQUENCY = 0xFF;
+
+	private static final int DELETED = -1;
+
+	private final TaskDao dao;
+
+	private final TaskProperties properties;
+
+	/** 索引語（2文字を1つのintにしたもの）ごとの出現リスト */
+	private final Map<Integer, Postings> index = new HashMap<>();
+
+	private int documentCount;
+
+	/**
+	 * idごとに反映した版数+1（0は未登録、DELETEDは削除済み） idは採番順に増えるため、idを添字にした配列で持つ
+	 */
+	private int[] versions = new int[1024];
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public TaskSearchIndex(TaskDao dao, TaskProperties properties) {
+		this.dao = dao;
+		this.properties = properties;
+	}
+
+	/**
+	 * 起動時に全件を読み込む 読み込み中の更新は読み込み完了まで待たせる
+	 */
+	@Override
+	public void afterSingletonsInstantiated() {
+		lock.writeLock().lock();
+		try {
+			dao.forEach(properties.getFetchSize(), task -> apply(task.getId(), task, null, true));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 更新前の索引語を取り除いてから更新後の索引語を登録する
+	 * 登録は上書きのため、起動時の読み込みで更新後の内容を既に読んでいた場合も結果は同じになる
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onChanged(TaskChangedEvent event) {
+		lock.writeLock().lock();
+		try {
+			apply(event.getId(), event.getTask(), event.getPrevious(),
+					event.getKind() == TaskChangedEvent.Kind.INSERTED);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * タスクを1件登録する
+	 * @param task
+	 */
+	public void add(Task task) {
+		lock.writeLock().lock();
+		try {
+			apply(task.getId(), task, null, true);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 検索語を空白で区切り、全ての語の索引語を含むタスクを点数の高い順に返す
+	 * 点数は索引語ごとの 出現回数 × log(1 + 全件数 / 含むタスクの件数) の合計
+	 * 1文字の語は索引語が無いため絞り込みに使わない（呼び出し側で照合する）
+	 * @param query
+	 * @param limit 最大件数
+	 * @return タスクのid 2文字以上の語が無い場合は空
+	 */
+	public int[] search(String query, int limit) {
+		int[] keys = queryGrams(query);
+		if (keys.length == 0 || limit <= 0) {
+			return new int[0];
+		}
+		lock.readLock().lock();
+		try {
+			Postings[] lists = new Postings[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				lists[i] = index.get(keys[i]);
+				if (lists[i] == null) {
+					return new int[0];
+				}
+			}
+			//件数の少ない出現リストから順に絞り込む
+			Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+			return rank(lists, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 登録されているタスクの件数
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documentCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 検索と照合で使う正規化 全角英数を半角に、英字を小文字にそろえる
+	 * @param text
+	 * @return
+	 */
+	public static String normalize(String text) {
+		return text == null ? "" : Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+	}
+
+	private int[] rank(Postings[] lists, int limit) {
+		double[] idf = new double[lists.length];
+		for (int i = 0; i < lists.length; i++) {
+			idf[i] = Math.log(1 + (double) documentCount / lists[i].size);
+		}
+
+		//最も短いリストの各idが他の全てのリストに含まれるかを確かめ、上位limit件をヒープで残す
+		PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1,
+				(a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+		Postings first = lists[0];
+		int[] from = new int[lists.length];
+		for (int p = 0; p < first.size; p++) {
+			int id = first.ids[p];
+			double score = idf[0] * (first.frequencies[p] & MAX_FREQUENCY);
+			boolean all = true;
+			for (int i = 1; i < lists.length && all; i++) {
+				int pos = gallop(lists[i], from[i], id);
+				if (pos < 0) {
+					from[i] = -pos - 1;
+					all = false;
+				} else {
+					from[i] = pos + 1;
+					score += idf[i] * (lists[i].frequencies[pos] & MAX_FREQUENCY);
+				}
+			}
+			//idの昇順に見ているため、点数が同じ場合は先に見たidの小さい方を残す
+			if (all && (top.size() < limit || score > Double.longBitsToDouble(top.peek()[0]))) {
+				top.add(new long[] { Double.doubleToLongBits(score), id });
+				if (top.size() > limit) {
+					top.poll();
+				}
+			}
+		}
+		int[] ids = new int[top.size()];
+		for (int i = ids.length - 1; i >= 0; i--) {
+			ids[i] = (int) top.poll()[1];
+		}
+		return ids;
+	}
+
+	/**
+	 * 前回の位置から1, 2, 4...と範囲を広げてから二分探索する
+	 * 同じ語を含むタスクはidが近いことが多く、全体を二分探索するより比較が少ない
+	 * @return Arrays.binarySearchと同じ（見つからない場合は -(挿入位置) - 1）
+	 */
+	private static int gallop(Postings postings, int from, int id) {
+		int step = 1;
+		int low = from;
+		while (from + step < postings.size && postings.ids[from + step] < id) {
+			low = from + step;
+			step <<= 1;
+		}
+		return Arrays.binarySearch(postings.ids, low, Math.min(from + step + 1, postings.size), id);
+	}
+
+	/**
+	 * @param task 登録・更新後 削除の場合はnull
+	 * @param previous 更新・削除前 分からない場合はnull
+	 * @param inserted 登録（起動時の読み込みを含む）の場合はtrue 同じ版が登録済みであれば同じ内容のため上書きする
+	 */
+	private void apply(int id, Task task, Task previous, boolean inserted) {
+		int stored = stored(id);
+		if (stored == DELETED || (task != null && stored != 0 && task.getVersion() + 1 < stored)) {
+			//削除したタスク、反映済みより古い版（前後して届いたイベント）は反映しない
+			return;
+		}
+		if (stored != 0) {
+			if (previous != null && previous.getVersion() + 1 == stored) {
+				remove(id, grams(previous));
+			} else if (!inserted || task.getVersion() + 1 != stored) {
+				//登録されている版の内容が分からない場合は全索引語から取り除く
+				//（間の版のイベントが届いていない場合 後から届いても古い版として無視する）
+				removeEverywhere(id);
+			}
+		}
+		if (task != null) {
+			put(task);
+			setStored(id, task.getVersion() + 1);
+		} else {
+			setStored(id, DELETED);
+		}
+	}
+
+	private int stored(int id) {
+		return id >= 0 && id < versions.length ? versions[id] : 0;
+	}
+
+	private void setStored(int id, int value) {
+		if (id < 0) {
+			return;
+		}
+		if (id >= versions.length) {
+			versions = Arrays.copyOf(versions, Math.max(id + 1, versions.length + (versions.length >> 1)));
+		}
+		versions[id] = value;
+	}
+
+	private void put(Task task) {
+		int[] grams = grams(task);
+		boolean added = false;
+		for (int i = 0; i < grams.length;) {
+			int key = grams[i];
+			int count = 0;
+			while (i < grams.length && grams[i] == key) {
+				count++;
+				i++;
+			}
+			added |= index.computeIfAbsent(key, k -> new Postings()).put(task.getId(), Math.min(count, MAX_FREQUENCY));
+		}
+		if (added) {
+			documentCount++;
+		}
+	}
+
+	private void remove(int id, int[] grams) {
+		boolean removed = false;
+		int previous = 0;
+		for (int i = 0; i < grams.length; i++) {
+			if (i > 0 && grams[i] == previous) {
+				continue;
+			}
+			previous = grams[i];
+			removed |= removeFrom(grams[i], id);
+		}
+		if (removed) {
+			documentCount--;
+		}
+	}
+
+	private void removeEverywhere(int id) {
+		boolean removed = false;
+		for (Integer key : new ArrayList<>(index.keySet())) {
+			removed |= removeFrom(key, id);
+		}
+		if (removed) {
+			documentCount--;
+		}
+	}
+
+	private boolean removeFrom(int key, int id) {
+		Postings postings = index.get(key);
+		if (postings == null || !postings.remove(id)) {
+			return false;
+		}
+		if (postings.size == 0) {
+			index.remove(key);
+		}
+		return true;
+	}
+
+	/**
+	 * タイトルと詳細の索引語 タイトルの索引語は重みの回数だけ繰り返し、昇順に並べる
+	 */
+	private static int[] grams(Task task) {
+		String title = normalize(task.getTitle());
+		String detail = normalize(task.getDetail());
+		int[] buffer = new int[Math.max(0, title.length() - 1) * TITLE_WEIGHT + Math.max(0, detail.length() - 1)];
+		int size = 0;
+		for (int w = 0; w < TITLE_WEIGHT; w++) {
+			size = addGrams(title, buffer, size);
+		}
+		size = addGrams(detail, buffer, size);
+		int[] grams = Arrays.copyOf(buffer, size);
+		Arrays.sort(grams);
+		return grams;
+	}
+
+	/**
+	 * 検索語の索引語 重複を除いて返す
+	 */
+	private static int[] queryGrams(String query) {
+		List<String> terms = new ArrayList<>();
+		for (String term : normalize(query).split("\\s+")) {
+			if (term.length() >= 2) {
+				terms.add(term);
+			}
+		}
+		int[] buffer = new int[terms.stream().mapToInt(String::length).sum()];
+		int size = 0;
+		for (String term : terms) {
+			size = addGrams(term, buffer, size);
+		}
+		return Arrays.stream(buffer, 0, size).sorted().distinct().toArray();
+	}
+
+	private static int addGrams(String text, int[] buffer, int size) {
+		for (int i = 0; i + 1 < text.length(); i++) {
+			char c1 = text.charAt(i);
+			char c2 = text.charAt(i + 1);
+			//空白をまたぐ索引語は作らない
+			if (!Character.isWhitespace(c1) && !Character.isWhitespace(c2)) {
+				buffer[size++] = c1 << 16 | c2;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * 1つの索引語の出現リスト idの昇順
+	 */
+	private static final class Postings {
+
+		private int[] ids = new int[4];
+		private byte[] frequencies = new byte[4];
+		private int size;
+
+		/**
+		 * 出現回数を設定する
+		 * @return 新しく追加した場合はtrue
+		 */
+		boolean put(int id, int frequency) {
+			//idは採番順に増えるため、通常は末尾への追加になる
+			int pos = size > 0 && ids[size - 1] < id ? -size - 1 : Arrays.binarySearch(ids, 0, size, id);
+			if (pos >= 0) {
+				frequencies[pos] = (byte) frequency;
+				return false;
+			}
+			pos = -pos - 1;
+			if (size == ids.length) {
+				int capacity = size + (size >> 1);
+				ids = Arrays.copyOf(ids, capacity);
+				frequencies = Arrays.copyOf(frequencies, capacity);
+			}
+			System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+			System.arraycopy(frequencies, pos, frequencies, pos + 1, size - pos);
+			ids[pos] = id;
+			frequencies[pos] = (byte) frequency;
+			size++;
+			return true;
+		}
+
+		boolean remove(int id) {
+			int pos = Arrays.binarySearch(ids, 0, size, id);
+			if (pos < 0) {
+				return false;
+			}
+			System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+			System.arraycopy(frequencies, pos + 1, frequencies, pos, size - pos - 1);
+			size--;
+			return true;
+		}
+	}
+}
@@ -1,21 +1,129 @@
 package com.example.demo.service;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskType;
+import com.example.demo.repository.TaskCursor;
+import com.example.demo.routing.ReadReplica;
 
+/**
+ * ＠ReadReplicaのメソッドは、レプリカが有効な場合（task.replica.enabled）レプリカから読む
+ */
 public interface TaskService {
 
+	@ReadReplica
 	List<Task> findAll();
 
+	@ReadReplica
 	Optional<Task> getTask(int id);
 
+	/**
+	 * 1件登録し、採番されたidをtaskに設定する
+	 * まとめ書き（task.write-behind）が有効な場合は、他の登録とまとめたトランザクションのコミットまで待つ
+	 * @param task
+	 * @throws org.springframework.dao.QueryTimeoutException コミットをtask.write-behind.timeoutまで待っても完了しない場合
+	 *         （後でコミットされる場合があり、その場合は通常の登録と同じく変更イベントが発行される）
+	 */
 	void insert(Task task);
 
+	/**
+	 * 1件登録し、コミット後に完了するFutureを返す
+	 * まとめ書きが無効な場合と待ち行列が溢れている場合は、このメソッド内で登録して完了済みのFutureを返す
+	 * Futureは書き込み用のスレッドではなく、コールバック用のスレッドで完了する
+	 * @param task
+	 * @return 登録したtask 失敗した場合は例外で完了する
+	 */
+	CompletableFuture<Task> insertAsync(Task task);
+
+	/**
+	 * 1件更新し、taskのversionを1増やす 読み込んだ時点のversionを指定すること
+	 * @param task
+	 * @throws TaskNotFoundException タスクが存在しない場合
+	 * @throws TaskConflictException 読み込んだ後に他で更新され、versionが進んでいる場合
+	 */
 	void update(Task task);
 
+	/**
+	 * 一括登録 バッチサイズごとに1トランザクションで登録し、採番されたidを各taskに設定する
+	 * @param tasks
+	 */
+	void insertAll(List<Task> tasks);
+
+	/**
+	 * 一括更新 1件ずつ更新を確定させる（ロールバックしない）
+	 * 存在しないタスク、versionが進んでいるタスクは更新せず、他のタスクを更新した後に最初の失敗の例外を投げる
+	 * @param tasks
+	 * @throws TaskNotFoundException 存在しないタスクが含まれていた場合
+	 * @throws TaskConflictException versionが進んでいるタスクが含まれていた場合
+	 */
+	void updateAll(List<Task> tasks);
+
 	void deleteById(int id);
 
+	@ReadReplica
 	List<Task> findByType(int typeId);
+
+	/**
+	 * 全件を(deadline, id)順に1件ずつactionに渡す（エクスポート用）
+	 * @param action
+	 */
+	@ReadReplica
+	void forEach(Consumer<Task> action);
+
+	@ReadReplica
+	void forEachByType(int typeId, Consumer<Task> action);
+
+	/**
+	 * タスク一覧を(deadline, id)順に1ページ分取得
+	 * @param cursor nullの場合は先頭ページ
+	 * @param size 1ページの件数
+	 * @return
+	 */
+	@ReadReplica
+	TaskPage findPage(TaskCursor cursor, int size);
+
+	@ReadReplica
+	TaskPage findPageByType(int typeId, TaskCursor cursor, int size);
+
+	/**
+	 * 選択肢に使うタスクタイプの一覧
+	 * @return
+	 */
+	List<TaskType> findAllTypes();
+
+	/**
+	 * タイトルと詳細の全文検索 空白区切りの全ての語を含むタスクを関連度の高い順に返す
+	 * @param query 2文字以上の語を1つ以上含むこと（1文字の語だけの場合は0件）
+	 * @param limit 最大件数
+	 * @return
+	 */
+	List<Task> search(String query, int limit);
+
+	/**
+	 * 期限が現在からwithinの間にあるタスクを期限の近い順に返す
+	 * @param within
+	 * @param limit 最大件数
+	 * @return
+	 */
+	List<Task> findDueWithin(Duration within, int limit);
+
+	/**
+	 * 期限を過ぎたタスクを期限の古い順に返す
+	 * @param limit 最大件数
+	 * @return
+	 */
+	List<Task> findOverdue(int limit);
+
+	/**
+	 * タスクタイプごとに、期限を過ぎていないタスクを期限の近い順にk件ずつ返す
+	 * @param k
+	 * @return タスクタイプのidごとのタスク
+	 */
+	Map<Integer, List<Task>> findMostUrgentByType(int k);
 }
@@ -1,21 +1,74 @@
 package com.example.demo.service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.demo.config.TaskProperties;
 import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskType;
+import com.example.demo.repository.TaskCursor;
 import com.example.demo.repository.TaskDao;
+import com.example.demo.repository.TaskTypeDao;
+import com.example.demo.routing.ReplicaRoute;
 
 @Service
 public class TaskServiceImpl implements TaskService {
 
+	private static final String CONFLICT_MESSAGE = "タスクは他のユーザーによって変更されています";
+
 	private final TaskDao dao;
 
-	public TaskServiceImpl(TaskDao dao) {
+	private final TaskTypeDao taskTypeDao;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final TaskProperties properties;
+
+	private final TaskCache taskCache;
+
+	private final ApplicationEventPublisher eventPublisher;
+
+	private final TaskSearchIndex searchIndex;
+
+	private final TaskDeadlineIndex deadlineIndex;
+
+	private final TaskWriteBehind writeBehind;
+
+	public TaskServiceImpl(TaskDao dao, TaskTypeDao taskTypeDao,
+			TransactionTemplate transactionTemplate, TaskProperties properties, TaskCache taskCache,
+			ApplicationEventPublisher eventPublisher, TaskSearchIndex searchIndex, TaskDeadlineIndex deadlineIndex,
+			TaskWriteBehind writeBehind) {
 		this.dao = dao;
+		this.taskTypeDao = taskTypeDao;
+		this.transactionTemplate = transactionTemplate;
+		this.properties = properties;
+		this.taskCache = taskCache;
+		this.eventPublisher = eventPublisher;
+		this.searchIndex = searchIndex;
+		this.deadlineIndex = deadlineIndex;
+		this.writeBehind = writeBehind;
 	}
 
 	@Override
@@ -26,35 +79,173 @@ public class TaskServiceImpl implements TaskService {
 	@Override
 	public Optional<Task> getTask(int id) {
 
-		//Optional<Task>一件を取得 idが無ければ例外発生　
-		try {
-			return dao.findById(id);
-		} catch (EmptyResultDataAccessException e) {
+		//Optional<Task>一件を取得 キャッシュに無ければDBから読み込み、存在しないidも短時間保持する
+		Optional<Task> task = cached(id);
+
+		//idが無ければ例外発生
+		if (task.isEmpty()) {
 			throw new TaskNotFoundException("指定されたタスクが存在しません");
 		}
+		return task;
 	}
 
 	@Override
 	public void insert(Task task) {
+		CompletableFuture<Task> future = writeBehind.submit(task);
+		if (future != null) {
+			//登録後の処理はFutureに続けて行う（insertAsyncと同じ）
+			//待ちきれずに例外を投げた場合も、後でコミットされた行には登録後の処理が行われる
+			await(future.thenApply(this::inserted));
+			return;
+		}
+		//まとめ書きが無効の場合と、待ち行列が溢れている場合はこのスレッドで登録する
 		dao.insert(task);
+		inserted(task);
+	}
+
+	@Override
+	public CompletableFuture<Task> insertAsync(Task task) {
+		CompletableFuture<Task> future = writeBehind.submit(task);
+		if (future != null) {
+			//Futureはコールバック用のスレッドで完了するため、登録後の処理は書き込み用のスレッドでは行われない
+			return future.thenApply(this::inserted);
+		}
+
+		//まとめ書きが無効の場合と、待ち行列が溢れている場合はこのスレッドで登録する
+		try {
+			dao.insert(task);
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return CompletableFuture.completedFuture(inserted(task));
+	}
+
+	/**
+	 * まとめ書きの登録のコミットを、task.write-behind.timeoutまで待つ
+	 * 書き込み用のスレッドが止まっている場合に、リクエストのスレッドを止めたままにしない
+	 */
+	private void await(CompletableFuture<Task> future) {
+		long timeout = properties.getWriteBehind().getTimeout().toMillis();
+		try {
+			future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			//このスレッドで登録した場合と同じ例外を投げる
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (TimeoutException e) {
+			//待ち行列からは取り消さないため、後で登録される場合がある（登録された場合は登録後の処理も行われる）
+			throw new QueryTimeoutException("タスクの登録が" + timeout + "ms以内に完了しませんでした", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new QueryTimeoutException("タスクの登録の完了を待つ間に割り込まれました", e);
+		}
 	}
 
 	@Override
 	public void update(Task task) {
 
-		//Taskを更新　idが無ければ例外発生
-		if(dao.update(task) == 0) {
-			throw new TaskNotFoundException("更新するタスクが存在しません");
+		//Taskを更新　idが無ければ例外発生、読み込んだ後に他で更新されていれば（versionが異なれば）競合の例外発生
+		//版数が一致した場合のみ更新するため行ロックは取らない（更新できた場合、読んだ行がそのまま更新前の行になる）
+		//更新は1文で確定させ、トランザクションで囲まない
+		//（H2 1.4.200では、競合して0件になった更新をロールバックすると、他のコミット済みの更新が失われることがある）
+		TaskChangedEvent event;
+		try {
+			event = TaskChangedEvent.updated(task, compareAndSet(task));
+		} finally {
+			taskCache.invalidate(task.getId());
+		}
+		eventPublisher.publishEvent(event);
+	}
+
+	@Override
+	public void insertAll(List<Task> tasks) {
+
+		//バッチサイズごとに1トランザクションで登録
+		for (List<Task> chunk : chunks(tasks)) {
+			transactionTemplate.executeWithoutResult(status -> dao.insertAll(chunk));
+
+			//存在しないidとして保持されている場合に備えて破棄する
+			taskCache.invalidateAll(chunk);
+			chunk.forEach(task -> eventPublisher.publishEvent(TaskChangedEvent.inserted(task)));
 		}
 	}
 
+	@Override
+	public void updateAll(List<Task> tasks) {
+
+		//1件更新と同じく、版数が一致した場合のみ更新する（compare-and-set）
+		//バッチサイズごとに更新前の行を1回のSQLで読み、JDBCのバッチで更新する
+		//トランザクションで囲まずに各行を確定させ、競合してもロールバックしない（1件更新と同じ理由）
+		//idが無い、版数が異なるタスクは更新せずに残りを更新し、最後に最初の失敗の例外を投げる（他の失敗はsuppressedに追加）
+		RuntimeException failure = null;
+		for (List<Task> chunk : chunks(tasks)) {
+			Map<Integer, Task> previous = new HashMap<>();
+			for (Task row : dao.findAllById(chunk.stream().map(Task::getId).collect(Collectors.toList()))) {
+				previous.put(row.getId(), row);
+			}
+			List<Task> candidates = new ArrayList<>(chunk.size());
+			for (Task task : chunk) {
+				Task row = previous.get(task.getId());
+				if (row == null) {
+					failure = failed(failure, new TaskNotFoundException("更新するタスクが存在しません"));
+				} else if (row.getVersion() != task.getVersion()) {
+					failure = failed(failure, new TaskConflictException(CONFLICT_MESSAGE));
+				} else {
+					candidates.add(task);
+				}
+			}
+
+			int[] counts;
+			try {
+				counts = dao.updateAll(candidates);
+			} finally {
+				taskCache.invalidateAll(chunk);
+			}
+			for (int i = 0; i < counts.length; i++) {
+				Task task = candidates.get(i);
+				if (counts[i] == 0) {
+					//読み込んでから更新するまでの間に他で更新された
+					failure = failed(failure, new TaskConflictException(CONFLICT_MESSAGE));
+				} else {
+					eventPublisher.publishEvent(TaskChangedEvent.updated(task, previous.get(task.getId())));
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * 一括更新の失敗をまとめる 最初の失敗に以降の失敗をsuppressedとして追加する
+	 */
+	private static RuntimeException failed(RuntimeException failure, RuntimeException e) {
+		if (failure == null) {
+			return e;
+		}
+		failure.addSuppressed(e);
+		return failure;
+	}
+
 	@Override
 	public void deleteById(int id) {
 
-		//Taskを更新 idがなければ例外発生
-		if(dao.deleteById(id) == 0) {
+		//Taskを削除 idがなければ例外発生
+		//更新と同じく行ロックは取らず、削除は1文で確定させる
+		//削除前の行は検索インデックスの差分に使うのみ（読んだ後に更新されていても、インデックスが版数で判定する）
+		Task previous = load(id).orElse(null);
+		int count;
+		try {
+			count = dao.deleteById(id);
+		} finally {
+			taskCache.invalidate(id);
+		}
+		if(count == 0) {
 			throw new TaskNotFoundException("削除するタスクが存在しません");
 		}
+		eventPublisher.publishEvent(TaskChangedEvent.deleted(id, previous));
 	}
 
 	@Override
@@ -62,4 +253,211 @@ public class TaskServiceImpl implements TaskService {
 		//2-3 typeIdを引数に指定してdaoのfindByType実行し、結果をreturnする
 		return dao.findByType(typeId);
 	}
+
+	@Override
+	public void forEach(Consumer<Task> action) {
+		dao.forEach(properties.getFetchSize(), action);
+	}
+
+	@Override
+	public void forEachByType(int typeId, Consumer<Task> action) {
+		dao.forEachByType(typeId, properties.getFetchSize(), action);
+	}
+
+	@Override
+	public TaskPage findPage(TaskCursor cursor, int size) {
+		//次ページの有無を判定するため1件多く取得する
+		List<Task> rows = dao.findPage(cursor, size + 1);
+		return toPage(rows, cursor, size, dao.countEstimate());
+	}
+
+	@Override
+	public TaskPage findPageByType(int typeId, TaskCursor cursor, int size) {
+		List<Task> rows = dao.findPageByType(typeId, cursor, size + 1);
+		return toPage(rows, cursor, size, dao.countByType(typeId));
+	}
+
+	@Override
+	public List<TaskType> findAllTypes() {
+		return taskTypeDao.findAll();
+	}
+
+	@Override
+	public List<Task> search(String query, int limit) {
+		if (limit <= 0) {
+			return new ArrayList<>();
+		}
+		List<String> terms = Arrays.asList(TaskSearchIndex.normalize(query).trim().split("\\s+"));
+		List<Task> result = new ArrayList<>(limit);
+
+		//インデックスは2文字の並びまでは確認しないため、本文と照合して足りなければ候補を増やして取り直す
+		for (int candidates = limit; ; candidates *= 4) {
+			int[] ids = searchIndex.search(query, candidates);
+			result.clear();
+			for (int id : ids) {
+				Optional<Task> task = cached(id);
+				if (task.isPresent() && matches(task.get(), terms)) {
+					result.add(task.get());
+					if (result.size() == limit) {
+						return result;
+					}
+				}
+			}
+			if (ids.length < candidates) {
+				return result;
+			}
+		}
+	}
+
+	@Override
+	public List<Task> findDueWithin(Duration within, int limit) {
+		LocalDateTime now = LocalDateTime.now();
+		return load(deadlineIndex.findBetween(now, now.plus(within), limit));
+	}
+
+	@Override
+	public List<Task> findOverdue(int limit) {
+		return load(deadlineIndex.findBefore(LocalDateTime.now(), limit));
+	}
+
+	@Override
+	public Map<Integer, List<Task>> findMostUrgentByType(int k) {
+		Map<Integer, List<Task>> result = new LinkedHashMap<>();
+		deadlineIndex.findFirstByType(LocalDateTime.now(), k).forEach((typeId, ids) -> result.put(typeId, load(ids)));
+		return result;
+	}
+
+	/**
+	 * インデックスから取り出したidのタスクを1件取得のキャッシュ経由で読み込む 直前に削除されたものは除く
+	 */
+	private List<Task> load(List<Integer> ids) {
+		List<Task> tasks = new ArrayList<>(ids.size());
+		for (int id : ids) {
+			cached(id).ifPresent(tasks::add);
+		}
+		return tasks;
+	}
+
+	/**
+	 * 登録後の処理 一覧と同じくタスクタイプを割り当ててからキャッシュに入れ、イベントを発行する
+	 * 呼び出し元のトランザクション内で登録した場合は、コミットされてからキャッシュに入れる
+	 * （ロールバックされた行をキャッシュに残さないように）
+	 */
+	private Task inserted(Task task) {
+		if (task.getTaskType() == null) {
+			task.setTaskType(taskTypeDao.findById(task.getTypeId()).orElse(null));
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					taskCache.put(task);
+				}
+			});
+		} else {
+			taskCache.put(task);
+		}
+		eventPublisher.publishEvent(TaskChangedEvent.inserted(task));
+		return task;
+	}
+
+	/**
+	 * 1件取得のキャッシュから取得し、無ければDBから読み込む
+	 * レプリカから読んだ行は遅れている場合があるためキャッシュに入れない
+	 * （入れると、書き込んだセッションもプライマリを読まずに古い行を返し、古いversionで更新して競合する）
+	 */
+	private Optional<Task> cached(int id) {
+		if (ReplicaRoute.isReplica()) {
+			Optional<Task> task = taskCache.getIfPresent(id);
+			return task != null ? task : load(id);
+		}
+		return taskCache.get(id, this::load);
+	}
+
+	private Optional<Task> load(int id) {
+		try {
+			return dao.findById(id);
+		} catch (EmptyResultDataAccessException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * 更新前の行を読み込み、版数がtaskと一致することを確かめる（キャッシュは使わない）
+	 * @return 更新前の行
+	 */
+	private Task loadPrevious(Task task) {
+		Task previous = load(task.getId())
+				.orElseThrow(() -> new TaskNotFoundException("更新するタスクが存在しません"));
+		if (previous.getVersion() != task.getVersion()) {
+			throw new TaskConflictException(CONFLICT_MESSAGE);
+		}
+		return previous;
+	}
+
+	/**
+	 * 版数が一致する場合のみ1件更新する 読み込んでから更新するまでの間に他で更新された場合も競合とする
+	 * @return 更新前の行
+	 */
+	private Task compareAndSet(Task task) {
+		Task previous = loadPrevious(task);
+		int count;
+		try {
+			count = dao.update(task);
+		} catch (ConcurrencyFailureException e) {
+			//同時に更新した他のトランザクションとのデッドロック、ロック待ちの時間切れ（更新されていない）
+			throw new TaskConflictException(CONFLICT_MESSAGE);
+		}
+		if (count == 0) {
+			throw new TaskConflictException(CONFLICT_MESSAGE);
+		}
+		return previous;
+	}
+
+	/**
+	 * タイトルか詳細に全ての語を含むこと
+	 */
+	private boolean matches(Task task, List<String> terms) {
+		String title = TaskSearchIndex.normalize(task.getTitle());
+		String detail = TaskSearchIndex.normalize(task.getDetail());
+		for (String term : terms) {
+			if (!title.contains(term) && !detail.contains(term)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * バッチサイズごとに分割する
+	 */
+	private List<List<Task>> chunks(List<Task> tasks) {
+		int size = Math.max(1, properties.getBatchSize());
+		List<List<Task>> chunks = new ArrayList<>(tasks.size() / size + 1);
+		for (int from = 0; from < tasks.size(); from += size) {
+			chunks.add(tasks.subList(from, Math.min(from + size, tasks.size())));
+		}
+		return chunks;
+	}
+
+	/**
+	 * 1件多く取得した結果からページと前後のカーソルを組み立てる
+	 */
+	private TaskPage toPage(List<Task> rows, TaskCursor cursor, int size, long total) {
+		boolean backward = cursor != null && cursor.isBackward();
+		boolean more = rows.size() > size;
+		List<Task> list = rows;
+		if (more) {
+			//前ページの場合は昇順に並べ直してあるため先頭が余分な1件
+			list = backward ? rows.subList(1, rows.size()) : rows.subList(0, size);
+		}
+		if (list.isEmpty()) {
+			return new TaskPage(list, null, null, total);
+		}
+		boolean hasPrev = backward ? more : cursor != null;
+		boolean hasNext = backward || more;
+		TaskCursor prev = hasPrev ? TaskCursor.before(list.get(0)) : null;
+		TaskCursor next = hasNext ? TaskCursor.after(list.get(list.size() - 1)) : null;
+		return new TaskPage(list, prev, next, total);
+	}
 }
@@ -0,0 +1,360 @@
+package com.example.demo.service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * タスクの件数（メモリ上） 全体、タスクタイプごと、ユーザーごとの件数と期限を過ぎたタスクの件数を持つ
+ * 起動時に1回のGROUP BYで集計し、以降は登録・更新・削除のコミット後のTaskChangedEventの差分で増減する
+ * 件数はLongAdder（加算をスレッドごとのセルに分散する）で持ち、同時に変更されても加算が競合しない
+ * 期限を過ぎたタスクの件数は、期限が先のタスクを期限ごとに数えておき、参照時に現在時刻までの分を移し替える
+ * task.stats.reconcile-intervalごとにGROUP BYの結果と突き合わせ、食い違っていれば集計結果に置き換える
+ * （起動時の集計と同時にコミットされた変更や、TaskServiceを経ずに変更した行の分）
+ */
+@Component
+public class TaskStats implements SmartInitializingSingleton, DisposableBean {
+
+	private static final Logger log = LoggerFactory.getLogger(TaskStats.class);
+
+	private final TaskDao dao;
+
+	private final TaskProperties.Stats config;
+
+	private final Clock clock;
+
+	/** 集計結果に置き換える間は変更の反映を待たせる */
+	private final ReadWriteLock replacing = new ReentrantReadWriteLock();
+
+	private volatile Counts counts;
+
+	/** 反映した変更の数 突き合わせの集計中に変更があったかの判定に使う */
+	private final LongAdder applied = new LongAdder();
+
+	private final Counter corrected;
+
+	private volatile ScheduledExecutorService reconciler;
+
+	@Autowired
+	public TaskStats(TaskDao dao, TaskProperties properties, MeterRegistry registry) {
+		this(dao, properties, registry, Clock.systemDefaultZone());
+	}
+
+	TaskStats(TaskDao dao, TaskProperties properties, MeterRegistry registry, Clock clock) {
+		this.dao = dao;
+		this.config = properties.getStats();
+		this.clock = clock;
+		this.counts = new Counts(LocalDateTime.now(clock));
+		Gauge.builder("todo.tasks", this, TaskStats::getTotal)
+				.description("タスクの件数")
+				.register(registry);
+		Gauge.builder("todo.tasks.overdue", this, TaskStats::getOverdue)
+				.description("期限を過ぎたタスクの件数")
+				.register(registry);
+		this.corrected = Counter.builder("todo.stats.corrected")
+				.description("突き合わせで食い違いが見つかり、集計結果に置き換えた回数")
+				.register(registry);
+	}
+
+	/**
+	 * 起動時に集計する 集計中の変更は集計完了まで待たせる
+	 */
+	@Override
+	public void afterSingletonsInstantiated() {
+		replacing.writeLock().lock();
+		try {
+			counts = load(LocalDateTime.now(clock));
+		} finally {
+			replacing.writeLock().unlock();
+		}
+		long interval = config.getReconcileInterval().toMillis();
+		if (interval > 0) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("task-stats-");
+			threadFactory.setDaemon(true);
+			ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+			executor.scheduleWithFixedDelay(this::reconcileQuietly, interval, interval, TimeUnit.MILLISECONDS);
+			reconciler = executor;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		ScheduledExecutorService executor = reconciler;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 変更前の行を取り消して変更後の行を数える
+	 * 変更前が分からない更新・削除は差分が求められないため、次の突き合わせで直す
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onChanged(TaskChangedEvent event) {
+		replacing.readLock().lock();
+		try {
+			Counts current = counts;
+			if (event.getKind() != TaskChangedEvent.Kind.INSERTED) {
+				if (event.getPrevious() == null) {
+					log.debug("変更前が不明なため件数に反映しません id={}", event.getId());
+					return;
+				}
+				current.add(event.getPrevious(), -1);
+			}
+			if (event.getTask() != null) {
+				current.add(event.getTask(), 1);
+			}
+			applied.increment();
+		} finally {
+			replacing.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 現在の件数 期限を過ぎたタスクの件数は呼び出した時点のもの
+	 */
+	public Snapshot snapshot() {
+		Counts current = counts;
+		current.advance(LocalDateTime.now(clock));
+		return current.snapshot();
+	}
+
+	public long getTotal() {
+		return counts.total.sum();
+	}
+
+	public long getOverdue() {
+		Counts current = counts;
+		current.advance(LocalDateTime.now(clock));
+		return current.overdue.sum();
+	}
+
+	/**
+	 * GROUP BYの結果と突き合わせ、食い違っていれば集計結果に置き換える
+	 * 変更のコミットから反映までの間に集計した場合も食い違うため、続けて2回食い違った場合のみ置き換える
+	 * @return 置き換えた場合はtrue
+	 */
+	public boolean reconcile() {
+		return compare(false) && compare(true);
+	}
+
+	private void reconcileQuietly() {
+		try {
+			reconcile();
+		} catch (RuntimeException e) {
+			log.warn("タスクの件数の突き合わせに失敗しました", e);
+		}
+	}
+
+	/**
+	 * @param replace 食い違っていた場合に置き換える
+	 * @return 食い違っていた場合はtrue 集計中に変更が反映された場合は突き合わせずにfalse
+	 */
+	private boolean compare(boolean replace) {
+		long before = applied.sum();
+		Counts fresh = load(LocalDateTime.now(clock));
+		replacing.writeLock().lock();
+		try {
+			if (applied.sum() != before) {
+				log.debug("集計中にタスクが変更されたため、件数の突き合わせを見送ります");
+				return false;
+			}
+			Counts current = counts;
+			//参照で現在時刻が進んでいる場合があるため、期限を過ぎたかどうかの基準を揃える
+			current.advance(fresh.asOf);
+			fresh.advance(current.asOf);
+			List<String> differences = current.snapshot().differences(fresh.snapshot());
+			if (differences.isEmpty()) {
+				return false;
+			}
+			if (replace) {
+				log.warn("タスクの件数が集計結果と食い違っていたため置き換えます {}", differences);
+				counts = fresh;
+				corrected.increment();
+			}
+			return true;
+		} finally {
+			replacing.writeLock().unlock();
+		}
+	}
+
+	private Counts load(LocalDateTime now) {
+		Counts loaded = new Counts(now);
+		dao.forEachCount(now, row -> loaded.add(row.getTypeId(), row.getUserId(), row.getDeadline(), row.getCount()));
+		return loaded;
+	}
+
+	private static LongAdder adder(ConcurrentMap<Integer, LongAdder> map, int key) {
+		LongAdder adder = map.get(key);
+		return adder != null ? adder : map.computeIfAbsent(key, k -> new LongAdder());
+	}
+
+	/**
+	 * 件数の集まり 突き合わせで食い違った場合は丸ごと置き換える
+	 */
+	private static final class Counts {
+
+		private final LongAdder total = new LongAdder();
+
+		private final ConcurrentMap<Integer, LongAdder> byType = new ConcurrentHashMap<>();
+
+		private final ConcurrentMap<Integer, LongAdder> byUser = new ConcurrentHashMap<>();
+
+		private final LongAdder overdue = new LongAdder();
+
+		/** 期限がasOf以降のタスクの期限ごとの件数 asOfとともにthisで保護する */
+		private final NavigableMap<LocalDateTime, Long> pending = new TreeMap<>();
+
+		/** 期限がこれより前のタスクをoverdueに数えている */
+		private LocalDateTime asOf;
+
+		Counts(LocalDateTime asOf) {
+			this.asOf = asOf;
+		}
+
+		void add(Task task, long delta) {
+			add(task.getTypeId(), task.getUserId(), task.getDeadline(), delta);
+		}
+
+		/**
+		 * @param deadline 期限を過ぎている（集計結果の）場合はnull
+		 */
+		void add(int typeId, int userId, LocalDateTime deadline, long delta) {
+			total.add(delta);
+			adder(byType, typeId).add(delta);
+			adder(byUser, userId).add(delta);
+			addDeadline(deadline, delta);
+		}
+
+		synchronized void addDeadline(LocalDateTime deadline, long delta) {
+			if (deadline == null || deadline.isBefore(asOf)) {
+				overdue.add(delta);
+			} else {
+				pending.merge(deadline, delta, (a, b) -> a + b == 0 ? null : a + b);
+			}
+		}
+
+		/**
+		 * 期限がnowより前になったタスクをoverdueに移す
+		 */
+		synchronized void advance(LocalDateTime now) {
+			if (!now.isAfter(asOf)) {
+				return;
+			}
+			Map<LocalDateTime, Long> passed = pending.headMap(now, false);
+			long count = 0;
+			for (long value : passed.values()) {
+				count += value;
+			}
+			overdue.add(count);
+			passed.clear();
+			asOf = now;
+		}
+
+		Snapshot snapshot() {
+			return new Snapshot(total.sum(), overdue.sum(), sums(byType), sums(byUser));
+		}
+
+		private static Map<Integer, Long> sums(ConcurrentMap<Integer, LongAdder> map) {
+			Map<Integer, Long> sums = new TreeMap<>();
+			map.forEach((key, adder) -> {
+				long sum = adder.sum();
+				if (sum != 0) {
+					sums.put(key, sum);
+				}
+			});
+			return Collections.unmodifiableMap(sums);
+		}
+	}
+
+	/**
+	 * ある時点の件数
+	 */
+	public static final class Snapshot {
+
+		private final long total;
+		private final long overdue;
+		private final Map<Integer, Long> byType;
+		private final Map<Integer, Long> byUser;
+
+		Snapshot(long total, long overdue, Map<Integer, Long> byType, Map<Integer, Long> byUser) {
+			this.total = total;
+			this.overdue = overdue;
+			this.byType = byType;
+			this.byUser = byUser;
+		}
+
+		public long getTotal() {
+			return total;
+		}
+
+		public long getOverdue() {
+			return overdue;
+		}
+
+		/**
+		 * @return タスクタイプのid順 タスクが無いタスクタイプは含まない
+		 */
+		public Map<Integer, Long> getByType() {
+			return byType;
+		}
+
+		/**
+		 * @return ユーザーのid順 タスクが無いユーザーは含まない
+		 */
+		public Map<Integer, Long> getByUser() {
+			return byUser;
+		}
+
+		/**
+		 * @return 食い違っている項目（ログ用）
+		 */
+		List<String> differences(Snapshot expected) {
+			List<String> differences = new ArrayList<>();
+			if (total != expected.total) {
+				differences.add("total=" + total + "/" + expected.total);
+			}
+			if (overdue != expected.overdue) {
+				differences.add("overdue=" + overdue + "/" + expected.overdue);
+			}
+			if (!Objects.equals(byType, expected.byType)) {
+				differences.add("byType=" + byType + "/" + expected.byType);
+			}
+			if (!Objects.equals(byUser, expected.byUser)) {
+				differences.add("byUser=" + byUser + "/" + expected.byUser);
+			}
+			return differences;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDao;
+import com.example.demo.routing.ReplicaRoute;
+
+/**
+ * タスクの1件登録を待ち行列に入れ、1つの専用スレッドでまとめて登録する（task.write-behind）
+ * 最初の1件を受け取ってからlingerの間（またはbatch-size件になるまで）後続を待ち、JDBCのバッチで1トランザクションで登録する
+ * 各登録のCompletableFutureはコミット後に完了する まとめた登録が失敗した場合は1件ずつ登録し直し、失敗した行のみ例外で完了する
+ * Futureの完了（続く登録後の処理を含む）はコールバック用のスレッドで行い、書き込み用のスレッドを待たせない
+ * コールバック用のスレッドには登録を受け付けたリクエストの情報（read-your-writesのセッション）を引き継ぐ
+ * task.write-behind.enabledがfalseの場合と、待ち行列が溢れている場合はsubmitがnullを返す（呼び出し元でそのまま登録する）
+ * 登録は専用スレッドのトランザクションで行うため、呼び出し元のトランザクションには参加しない（ロールバックされない）
+ */
+@Component
+public class TaskWriteBehind implements DisposableBean {
+
+	private static final long POLL_MILLIS = 100;
+
+	private final TaskDao dao;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final int batchSize;
+
+	private final long lingerNanos;
+
+	/** 無効の場合はnull */
+	private final BlockingQueue<Pending> queue;
+
+	private final Thread writer;
+
+	/** Futureを完了させるスレッド 無効の場合はnull */
+	private final ExecutorService callbacks;
+
+	private volatile boolean closed;
+
+	public TaskWriteBehind(TaskDao dao, TransactionTemplate transactionTemplate, TaskProperties properties) {
+		TaskProperties.WriteBehind config = properties.getWriteBehind();
+		this.dao = dao;
+		this.transactionTemplate = transactionTemplate;
+		this.batchSize = Math.max(1, config.getBatchSize());
+		this.lingerNanos = config.getLinger().toNanos();
+		if (config.isEnabled()) {
+			this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("task-writer-callback-");
+			threadFactory.setDaemon(true);
+			this.callbacks = Executors.newFixedThreadPool(Math.max(1, config.getCallbackThreads()), threadFactory);
+			this.writer = new Thread(this::run, "task-writer");
+			this.writer.setDaemon(true);
+			this.writer.start();
+		} else {
+			this.queue = null;
+			this.writer = null;
+			this.callbacks = null;
+		}
+	}
+
+	/**
+	 * 登録を待ち行列に入れる
+	 * @param task 登録後に採番されたidを設定する
+	 * @return コミット後に完了するFuture 無効の場合と待ち行列が溢れている場合はnull
+	 */
+	public CompletableFuture<Task> submit(Task task) {
+		if (queue == null || closed) {
+			return null;
+		}
+		Pending pending = new Pending(task);
+		return queue.offer(pending) ? pending.future : null;
+	}
+
+	public boolean isEnabled() {
+		return queue != null;
+	}
+
+	/**
+	 * 待ち行列に残っている登録を書き込んでから終了する
+	 */
+	@Override
+	public void destroy() throws InterruptedException {
+		closed = true;
+		if (writer != null) {
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+			//終了と同時に入った登録は書き込まれないため、例外で完了させる
+			for (Pending pending = queue.poll(); pending != null; pending = queue.poll()) {
+				pending.future.completeExceptionally(new IllegalStateException("終了処理中のため登録できません"));
+			}
+			callbacks.shutdown();
+			callbacks.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	private void run() {
+		List<Pending> batch = new ArrayList<>(batchSize);
+		while (!closed || !queue.isEmpty()) {
+			try {
+				Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				collect(batch);
+			} catch (InterruptedException e) {
+				//終了時は残りを書き込んでから抜ける
+				closed = true;
+				queue.drainTo(batch, batchSize - batch.size());
+			}
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * lingerの間、またはbatchSize件になるまで後続を集める
+	 */
+	private void collect(List<Pending> batch) throws InterruptedException {
+		long deadline = System.nanoTime() + lingerNanos;
+		while (batch.size() < batchSize) {
+			if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+				continue;
+			}
+			long remaining = deadline - System.nanoTime();
+			Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void write(List<Pending> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<Task> tasks = new ArrayList<>(batch.size());
+		for (Pending pending : batch) {
+			tasks.add(pending.task);
+		}
+		try {
+			transactionTemplate.executeWithoutResult(status -> dao.insertAll(tasks));
+		} catch (RuntimeException e) {
+			//どの行が原因か分からないため、1件ずつ登録し直す
+			for (Pending pending : batch) {
+				try {
+					dao.insert(pending.task);
+					complete(pending, null);
+				} catch (RuntimeException rowError) {
+					complete(pending, rowError);
+				}
+			}
+			return;
+		}
+		for (Pending pending : batch) {
+			complete(pending, null);
+		}
+	}
+
+	/**
+	 * コールバック用のスレッドで、登録を受け付けたリクエストの情報を設定してFutureを完了させる
+	 */
+	private void complete(Pending pending, RuntimeException error) {
+		callbacks.execute(() -> {
+			RequestContextHolder.setRequestAttributes(pending.attributes);
+			try {
+				ReplicaRoute.restoring(() -> {
+					if (error == null) {
+						pending.future.complete(pending.task);
+					} else {
+						pending.future.completeExceptionally(error);
+					}
+				});
+			} finally {
+				RequestContextHolder.resetRequestAttributes();
+			}
+		});
+	}
+
+	private static final class Pending {
+
+		private final Task task;
+		private final CompletableFuture<Task> future = new CompletableFuture<>();
+
+		/** 登録を受け付けたリクエスト リクエストの外の場合はnull */
+		private final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+		Pending(Task task) {
+			this.task = task;
+		}
+	}
+}
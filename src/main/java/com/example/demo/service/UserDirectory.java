@@ -0,0 +1,194 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserChangedEvent;
+import com.example.demo.repository.UserDao;
+
+/**
+ * ユーザーの一覧（メモリ上）
+ * idを添字にした配列と、有効なユーザー・権限ごとのidのビットセットを持ち、取得と一覧はDBに問い合わせない
+ * idは採番順に詰まっているため、配列の大きさは最大のidまでで済む
+ * 起動時に全件を読み込み、以降はUserDaoの登録・更新・削除をコミット後に反映する（UserDaoImplが発行するUserChangedEventによる）
+ * 参照はロックを取らない 変更はまれなため、変更のたびに全体を複製して差し替える
+ * 返すUserは共有しているため、変更しないこと
+ */
+@Component
+public class UserDirectory implements SmartInitializingSingleton {
+
+	private final UserDao dao;
+
+	private volatile Snapshot snapshot = Snapshot.of(List.of());
+
+	public UserDirectory(UserDao dao) {
+		this.dao = dao;
+	}
+
+	/**
+	 * 起動時に全件を読み込む 読み込み中の変更は読み込み完了まで待たせる
+	 */
+	@Override
+	public synchronized void afterSingletonsInstantiated() {
+		snapshot = Snapshot.of(dao.findAll());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void onChanged(UserChangedEvent event) {
+		snapshot = event.getUser() != null ? snapshot.with(event.getUser()) : snapshot.without(event.getId());
+	}
+
+	/**
+	 * @param id
+	 * @return 存在しない場合はOptional.empty()（UserDao.findByIdと異なり例外にしない）
+	 */
+	public Optional<User> findById(int id) {
+		return Optional.ofNullable(snapshot.get(id));
+	}
+
+	/**
+	 * 有効なユーザーか 存在しない場合はfalse
+	 */
+	public boolean isEnabled(int id) {
+		return id >= 0 && snapshot.enabled.get(id);
+	}
+
+	/**
+	 * 指定した権限を持つユーザーか 存在しない場合はfalse
+	 */
+	public boolean hasAuthority(int id, String authorityId) {
+		BitSet ids = snapshot.authorities.get(authorityId);
+		return id >= 0 && ids != null && ids.get(id);
+	}
+
+	/**
+	 * 全ユーザーをidの順に返す
+	 */
+	public List<User> findAll() {
+		Snapshot current = snapshot;
+		List<User> list = new ArrayList<>();
+		for (User user : current.users) {
+			if (user != null) {
+				list.add(user);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * 有効なユーザーをidの順に返す（UserDao.findActiveUsersと同じ）
+	 */
+	public List<User> findActiveUsers() {
+		Snapshot current = snapshot;
+		return current.list(current.enabled);
+	}
+
+	/**
+	 * 指定した権限を持つユーザーをidの順に返す
+	 */
+	public List<User> findByAuthority(String authorityId) {
+		Snapshot current = snapshot;
+		BitSet ids = current.authorities.get(authorityId);
+		return ids == null ? List.of() : current.list(ids);
+	}
+
+	public int countActive() {
+		return snapshot.enabled.cardinality();
+	}
+
+	/**
+	 * ある時点の一覧 作成後は変更しない
+	 */
+	private static final class Snapshot {
+
+		/** idを添字にしたユーザー 存在しないidはnull */
+		private final User[] users;
+
+		private final BitSet enabled;
+
+		private final Map<String, BitSet> authorities;
+
+		Snapshot(User[] users, BitSet enabled, Map<String, BitSet> authorities) {
+			this.users = users;
+			this.enabled = enabled;
+			this.authorities = authorities;
+		}
+
+		static Snapshot of(List<User> list) {
+			int maxId = list.stream().mapToInt(User::getId).max().orElse(-1);
+			Snapshot loaded = new Snapshot(new User[maxId + 1], new BitSet(), new HashMap<>());
+			for (User user : list) {
+				loaded.add(user);
+			}
+			return loaded;
+		}
+
+		User get(int id) {
+			return id >= 0 && id < users.length ? users[id] : null;
+		}
+
+		/**
+		 * userを追加（同じidは置き換え）した一覧
+		 */
+		Snapshot with(User user) {
+			Snapshot removed = without(user.getId());
+			int id = user.getId();
+			Snapshot added = id < removed.users.length ? removed : new Snapshot(
+					Arrays.copyOf(removed.users, Math.max(id + 1, removed.users.length + (removed.users.length >> 1))),
+					removed.enabled, removed.authorities);
+			added.add(user);
+			return added;
+		}
+
+		/**
+		 * idを取り除いた一覧 配列とビットセットは複製する
+		 */
+		Snapshot without(int id) {
+			User[] newUsers = users.clone();
+			BitSet newEnabled = (BitSet) enabled.clone();
+			Map<String, BitSet> newAuthorities = new HashMap<>();
+			authorities.forEach((authorityId, ids) -> {
+				BitSet copy = (BitSet) ids.clone();
+				copy.clear(id);
+				if (!copy.isEmpty()) {
+					newAuthorities.put(authorityId, copy);
+				}
+			});
+			if (id >= 0 && id < newUsers.length) {
+				newUsers[id] = null;
+			}
+			newEnabled.clear(id);
+			return new Snapshot(newUsers, newEnabled, newAuthorities);
+		}
+
+		/**
+		 * 作成中の一覧にuserを設定する 配列はidが収まる大きさであること
+		 */
+		private void add(User user) {
+			int id = user.getId();
+			users[id] = user;
+			if (user.isEnabled()) {
+				enabled.set(id);
+			}
+			authorities.computeIfAbsent(user.getAuthorityId(), key -> new BitSet()).set(id);
+		}
+
+		List<User> list(BitSet ids) {
+			List<User> list = new ArrayList<>(ids.cardinality());
+			for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+				list.add(users[id]);
+			}
+			return list;
+		}
+	}
+}
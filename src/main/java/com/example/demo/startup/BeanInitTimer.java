@@ -0,0 +1,87 @@
+package com.example.demo.startup;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+
+/**
+ * Beanごとの生成（インスタンス化の直前）から初期化までの時間をStartupTimelineに記録する
+ * 他のBeanPostProcessorより先に追加するため、AOPのプロキシの作成（他のpostProcessAfterInitialization）は含まない
+ * 生成中に依存するBeanを生成した場合は、その分を含む時間（total）と除いた時間（self）を記録する
+ */
+class BeanInitTimer implements InstantiationAwareBeanPostProcessor {
+
+	private final StartupTimeline timeline;
+
+	/** 生成中のBean（依存するBeanほど上） Beanの生成はスレッドごとに入れ子になる */
+	private final ThreadLocal<Deque<Frame>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+
+	BeanInitTimer(StartupTimeline timeline) {
+		this.timeline = timeline;
+	}
+
+	@Override
+	public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+		if (!timeline.isReady()) {
+			creating.get().push(new Frame(beanName, beanClass.getName(), System.nanoTime()));
+		}
+		return null;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		//起動の完了後（遅延させたBean、prototype）はリクエストのスレッドなどにスタックを作らない
+		if (timeline.isReady()) {
+			return bean;
+		}
+		Deque<Frame> stack = creating.get();
+		if (stack.isEmpty()) {
+			creating.remove();
+			return bean;
+		}
+		Frame frame = null;
+		for (Iterator<Frame> it = stack.iterator(); it.hasNext();) {
+			Frame candidate = it.next();
+			if (candidate.name.equals(beanName)) {
+				frame = candidate;
+				break;
+			}
+		}
+		//FactoryBeanが作ったオブジェクト、生成済みのBeanなどは記録しない
+		if (frame == null) {
+			return bean;
+		}
+		//上に残っているのは生成に失敗したBean
+		Frame popped;
+		do {
+			popped = stack.pop();
+		} while (popped != frame);
+		long total = System.nanoTime() - frame.start;
+		Frame parent = stack.peek();
+		if (parent != null) {
+			parent.children += total;
+		} else {
+			creating.remove();
+		}
+		timeline.bean(beanName, frame.type, total, total - frame.children);
+		return bean;
+	}
+
+	private static final class Frame {
+
+		final String name;
+		final String type;
+		final long start;
+
+		/** 生成中に生成した依存するBeanの時間の合計 */
+		long children;
+
+		Frame(String name, String type, long start) {
+			this.name = name;
+			this.type = type;
+			this.start = start;
+		}
+	}
+}
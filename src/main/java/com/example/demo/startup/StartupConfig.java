@@ -0,0 +1,30 @@
+package com.example.demo.startup;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 起動時間の記録（StartupRunListener）の公開と、Beanの生成を遅延させて起動する場合（application-lazy.yml）の設定
+ */
+@Configuration(proxyBeanMethods = false)
+public class StartupConfig {
+
+	/**
+	 * 起動時に読み込むBean（SmartInitializingSingleton）は遅延させない
+	 * 起動の完了後に生成されるとafterSingletonsInstantiatedが呼ばれず、読み込まれないままになる
+	 * （SmartLifecycleは遅延させてもstartの前に生成される）
+	 */
+	@Bean
+	public static LazyInitializationExcludeFilter startupBeansLazyInitializationExcludeFilter() {
+		return LazyInitializationExcludeFilter.forBeanTypes(SmartInitializingSingleton.class);
+	}
+
+	@Bean
+	public StartupEndpoint startupEndpoint(StartupTimeline timeline, Environment environment) {
+		return new StartupEndpoint(timeline,
+				environment.getProperty("spring.main.lazy-initialization", Boolean.class, false));
+	}
+}
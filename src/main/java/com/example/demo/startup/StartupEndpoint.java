@@ -0,0 +1,69 @@
+package com.example.demo.startup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ * /actuator/startup 起動の段階（phases）ごとの時間と、生成・初期化に時間のかかったBean（top件、既定20件）を返す
+ * Beanは依存するBeanの分を除いた時間（self）の長い順 時間はミリ秒
+ * spring.main.lazy-initializationがtrueの場合、起動の完了後に生成したBeanは含まない
+ */
+@Endpoint(id = "startup")
+public class StartupEndpoint {
+
+	private static final int DEFAULT_TOP = 20;
+
+	private final StartupTimeline timeline;
+
+	private final boolean lazyInitialization;
+
+	public StartupEndpoint(StartupTimeline timeline, boolean lazyInitialization) {
+		this.timeline = timeline;
+		this.lazyInitialization = lazyInitialization;
+	}
+
+	@ReadOperation
+	public Map<String, Object> startup(@Nullable Integer top) {
+		int limit = top == null ? DEFAULT_TOP : Math.max(0, top);
+
+		List<Map<String, Object>> phases = new ArrayList<>();
+		for (StartupTimeline.Phase phase : timeline.getPhases()) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("name", phase.getName());
+			map.put("start", millis(phase.getStart()));
+			map.put("duration", millis(phase.getDuration()));
+			phases.add(map);
+		}
+
+		List<Map<String, Object>> beans = new ArrayList<>();
+		for (StartupTimeline.BeanTiming bean : timeline.getSlowestBeans(limit)) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("name", bean.getName());
+			map.put("type", bean.getType());
+			map.put("self", millis(bean.getSelf()));
+			map.put("total", millis(bean.getTotal()));
+			beans.add(map);
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("ready", timeline.isReady());
+		result.put("lazyInitialization", lazyInitialization);
+		result.put("total", millis(timeline.getTotal()));
+		result.put("sinceJvmStart", millis(timeline.getSinceJvmStart()));
+		result.put("phases", phases);
+		result.put("beanCount", timeline.getBeanCount());
+		result.put("beans", beans);
+		return result;
+	}
+
+	private static double millis(Duration duration) {
+		return duration.toNanos() / 1_000_000.0;
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.demo.startup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringApplicationRunListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import com.example.demo.config.TaskProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * SpringApplication.runの段階ごとの時間をStartupTimelineに記録する（META-INF/spring.factoriesで登録）
+ * contextPreparedでStartupTimelineをBeanとして登録し、Beanごとの時間を計るBeanInitTimerを他のBeanPostProcessorより先に追加する
+ * 起動の完了を通知する（ApplicationReadyEvent、ReadinessState.ACCEPTING_TRAFFIC）前に記録を締め、
+ * task.startup.budgetを超えていれば警告を出す
+ */
+public class StartupRunListener implements SpringApplicationRunListener, Ordered {
+
+	private static final Logger log = LoggerFactory.getLogger(StartupRunListener.class);
+
+	/** ログに出す時間のかかったBeanの数 */
+	private static final int LOG_BEANS = 5;
+
+	private final StartupTimeline timeline = new StartupTimeline();
+
+	/** 前の段階の終わり */
+	private long last = timeline.getStartNanos();
+
+	public StartupRunListener(SpringApplication application, String[] args) {
+	}
+
+	@Override
+	public void environmentPrepared(ConfigurableEnvironment environment) {
+		mark("environment");
+	}
+
+	@Override
+	public void contextPrepared(ConfigurableApplicationContext context) {
+		mark("context.prepare");
+		context.getBeanFactory().registerSingleton("startupTimeline", timeline);
+		context.getBeanFactory().addBeanPostProcessor(new BeanInitTimer(timeline));
+	}
+
+	@Override
+	public void contextLoaded(ConfigurableApplicationContext context) {
+		mark("context.load");
+	}
+
+	@Override
+	public void started(ConfigurableApplicationContext context) {
+		mark("context.refresh");
+	}
+
+	@Override
+	public void running(ConfigurableApplicationContext context) {
+		mark("runners");
+		timeline.ready(last);
+		context.getBeanProvider(MeterRegistry.class).ifAvailable(registry ->
+				TimeGauge.builder("todo.startup.time", timeline, TimeUnit.MILLISECONDS, t -> t.getTotal().toMillis())
+						.description("SpringApplication.runの開始から起動の完了までの時間")
+						.register(registry));
+
+		long total = timeline.getTotal().toMillis();
+		String slowest = timeline.getSlowestBeans(LOG_BEANS).stream()
+				.map(bean -> bean.getName() + " " + bean.getSelf().toMillis() + "ms")
+				.collect(Collectors.joining(", "));
+		log.info("起動しました {}ms（JVMの起動から{}ms） 時間のかかったBean: {}",
+				total, timeline.getSinceJvmStart().toMillis(), slowest);
+		TaskProperties properties = context.getBeanProvider(TaskProperties.class).getIfAvailable();
+		if (properties != null && total > properties.getStartup().getBudget().toMillis()) {
+			log.warn("起動に{}msかかり、task.startup.budget（{}ms）を超えました", total,
+					properties.getStartup().getBudget().toMillis());
+		}
+	}
+
+	/**
+	 * 起動の完了の通知より前、SQLの計測などの他の記録より前に呼ばれるようにする
+	 */
+	@Override
+	public int getOrder() {
+		return HIGHEST_PRECEDENCE;
+	}
+
+	private void mark(String phase) {
+		long now = System.nanoTime();
+		timeline.phase(phase, last, now);
+		last = now;
+	}
+}
@@ -0,0 +1,152 @@
+package com.example.demo.startup;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 起動の記録 SpringApplication.runの段階（フェーズ）ごとの時間と、Beanごとの生成・初期化の時間を持つ
+ * StartupRunListenerが起動ごとに作ってBeanとして登録し、起動の完了（ready）の後は記録しない
+ * 時間はrun()の開始（starting）を起点とする
+ */
+public class StartupTimeline {
+
+	private final long startNanos = System.nanoTime();
+
+	/** JVMの起動からrun()の開始まで */
+	private final long sinceJvmStartMillis = Math.max(0,
+			System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+
+	private final List<Phase> phases = new ArrayList<>();
+
+	private final List<BeanTiming> beans = new ArrayList<>();
+
+	/** 起動の完了までは0 */
+	private long readyNanos;
+
+	long getStartNanos() {
+		return startNanos;
+	}
+
+	synchronized void phase(String name, long fromNanos, long toNanos) {
+		phases.add(new Phase(name, Duration.ofNanos(fromNanos - startNanos), Duration.ofNanos(toNanos - fromNanos)));
+	}
+
+	synchronized void bean(String name, String type, long totalNanos, long selfNanos) {
+		if (readyNanos == 0) {
+			beans.add(new BeanTiming(name, type, Duration.ofNanos(totalNanos), Duration.ofNanos(selfNanos)));
+		}
+	}
+
+	synchronized void ready(long nanos) {
+		readyNanos = nanos;
+	}
+
+	public synchronized boolean isReady() {
+		return readyNanos != 0;
+	}
+
+	/**
+	 * @return run()の開始から起動の完了まで（起動中は現在まで）
+	 */
+	public synchronized Duration getTotal() {
+		return Duration.ofNanos((readyNanos != 0 ? readyNanos : System.nanoTime()) - startNanos);
+	}
+
+	/**
+	 * @return JVMの起動から起動の完了まで 同じJVMで2回目以降の起動（テストなど）では前の起動の分を含む
+	 */
+	public Duration getSinceJvmStart() {
+		return getTotal().plusMillis(sinceJvmStartMillis);
+	}
+
+	/**
+	 * @return 記録した順（終わった順）
+	 */
+	public synchronized List<Phase> getPhases() {
+		return Collections.unmodifiableList(new ArrayList<>(phases));
+	}
+
+	public synchronized int getBeanCount() {
+		return beans.size();
+	}
+
+	/**
+	 * @return 依存するBeanの分を除いた時間（self）の長い順
+	 */
+	public synchronized List<BeanTiming> getSlowestBeans(int limit) {
+		return beans.stream()
+				.sorted(Comparator.comparing(BeanTiming::getSelf).reversed())
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	public static final class Phase {
+
+		private final String name;
+		private final Duration start;
+		private final Duration duration;
+
+		Phase(String name, Duration start, Duration duration) {
+			this.name = name;
+			this.start = start;
+			this.duration = duration;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return run()の開始からの時間
+		 */
+		public Duration getStart() {
+			return start;
+		}
+
+		public Duration getDuration() {
+			return duration;
+		}
+	}
+
+	public static final class BeanTiming {
+
+		private final String name;
+		private final String type;
+		private final Duration total;
+		private final Duration self;
+
+		BeanTiming(String name, String type, Duration total, Duration self) {
+			this.name = name;
+			this.type = type;
+			this.total = total;
+			this.self = self;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * @return 生成中に依存するBeanを生成した時間を含む
+		 */
+		public Duration getTotal() {
+			return total;
+		}
+
+		/**
+		 * @return 生成中に依存するBeanを生成した時間を除く
+		 */
+		public Duration getSelf() {
+			return self;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.example.demo.startup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.server.Ssl;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskCursor;
+import com.example.demo.repository.TaskDao;
+
+/**
+ * 起動の完了（ready）前に、よく使う処理を1回ずつ実行しておく（task.startup.warm-upがtrueの場合）
+ * タスクのDAOの参照系のSQL（一覧の先頭・次のページ、1件取得、件数）と、一覧画面（/task、テンプレートtask/index）の表示
+ * 一覧画面は起動したサーバーにHTTPで要求し、DispatcherServletの初期化とテンプレートの解析まで済ませる
+ * 要求先はserver.ssl.enabledとserver.address（指定が無い場合、全てのアドレスで待ち受ける場合はlocalhost）に合わせる
+ * （spring.main.lazy-initializationがtrueの場合は、ここで使うBeanもここで生成される）
+ * ApplicationRunnerは起動の完了の通知（ReadinessState.ACCEPTING_TRAFFIC）の前に呼ばれる 失敗しても起動は止めない
+ */
+@Component
+public class StartupWarmer implements ApplicationRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(StartupWarmer.class);
+
+	/** TaskControllerの一覧の1ページあたりの件数 */
+	private static final int PAGE_SIZE = 20;
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	private final TaskDao taskDao;
+
+	private final ApplicationContext context;
+
+	private final ObjectProvider<StartupTimeline> timeline;
+
+	private final ObjectProvider<ServerProperties> serverProperties;
+
+	private final boolean enabled;
+
+	public StartupWarmer(TaskDao taskDao, ApplicationContext context, ObjectProvider<StartupTimeline> timeline,
+			ObjectProvider<ServerProperties> serverProperties, TaskProperties properties) {
+		this.taskDao = taskDao;
+		this.context = context;
+		this.timeline = timeline;
+		this.serverProperties = serverProperties;
+		this.enabled = properties.getStartup().isWarmUp();
+	}
+
+	@Override
+	public void run(ApplicationArguments args) {
+		if (!enabled) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			warmDao();
+			warmIndex();
+		} catch (IOException | RuntimeException e) {
+			log.warn("起動時の準備に失敗しました", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		long end = System.nanoTime();
+		timeline.ifAvailable(t -> t.phase("warm-up", start, end));
+	}
+
+	private void warmDao() {
+		List<Task> page = taskDao.findPage(null, PAGE_SIZE);
+		taskDao.countEstimate();
+		if (page.isEmpty()) {
+			return;
+		}
+		Task first = page.get(0);
+		taskDao.findPage(TaskCursor.after(page.get(page.size() - 1)), PAGE_SIZE);
+		taskDao.findById(first.getId());
+		taskDao.findPageByType(first.getTypeId(), null, PAGE_SIZE);
+		taskDao.countByType(first.getTypeId());
+	}
+
+	/**
+	 * 組み込みのサーバーを起動しない場合（テストのMOCKなど）は何もしない
+	 */
+	private void warmIndex() throws IOException, InterruptedException {
+		if (!(context instanceof ServletWebServerApplicationContext)) {
+			return;
+		}
+		ServletWebServerApplicationContext web = (ServletWebServerApplicationContext) context;
+		if (web.getWebServer() == null || web.getWebServer().getPort() <= 0) {
+			return;
+		}
+		URI uri = indexUri(serverProperties.getIfAvailable(), web.getWebServer().getPort(),
+				web.getServletContext().getContextPath());
+		HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+		HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).timeout(TIMEOUT).build(),
+				HttpResponse.BodyHandlers.discarding());
+		if (response.statusCode() != 200) {
+			log.warn("起動時の一覧画面の表示が{}を返しました", response.statusCode());
+		}
+	}
+
+	/**
+	 * 起動したサーバーの一覧画面のURI
+	 * @param server nullの場合はhttp://localhost
+	 */
+	static URI indexUri(ServerProperties server, int port, String contextPath) {
+		Ssl ssl = server == null ? null : server.getSsl();
+		String scheme = ssl != null && ssl.isEnabled() ? "https" : "http";
+		InetAddress address = server == null ? null : server.getAddress();
+		String host = address == null || address.isAnyLocalAddress() ? "localhost" : address.getHostAddress();
+		try {
+			//IPv6のアドレスは[]で囲まれる
+			return new URI(scheme, null, host, port, contextPath + "/task", null, null);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.demo.store;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * 永続化したストアにschema.sqlとdata.sqlを流す
+ * 適用した版をschema_versionテーブルに記録し、版が無い（新しいストア）か古い場合のみ流す
+ * 版が最新の場合はschema_versionを1回読むだけで、既存のデータには触れない
+ * schema.sql、data.sqlは古い版のストアにも流せるよう、IF NOT EXISTS、MERGEなどで何度流しても同じ結果になるように書く
+ */
+public class SchemaInitializer {
+
+	private static final Logger log = LoggerFactory.getLogger(SchemaInitializer.class);
+
+	/** schema.sql・data.sqlの版 変更した場合は1増やす */
+	public static final int VERSION = 1;
+
+	private static final String CREATE_VERSION_SQL = "CREATE TABLE IF NOT EXISTS schema_version ("
+			+ "version int NOT NULL, applied_at timestamp NOT NULL, PRIMARY KEY (version))";
+	private static final String FIND_VERSION_SQL = "SELECT MAX(version) FROM schema_version";
+	private static final String INSERT_VERSION_SQL = "INSERT INTO schema_version(version, applied_at) VALUES(?, ?)";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final DataSource dataSource;
+
+	public SchemaInitializer(DataSource dataSource) {
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * @return 流した場合はtrue
+	 */
+	public boolean initialize() {
+		long start = System.nanoTime();
+		jdbcTemplate.execute(CREATE_VERSION_SQL);
+		Integer stored = jdbcTemplate.queryForObject(FIND_VERSION_SQL, Integer.class);
+		int current = stored == null ? 0 : stored;
+		if (current >= VERSION) {
+			if (current > VERSION) {
+				log.warn("ストアのスキーマの版（{}）がアプリの版（{}）より新しいため、そのまま使います", current, VERSION);
+			}
+			return false;
+		}
+
+		ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+				new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+		populator.setSqlScriptEncoding("UTF-8");
+		populator.execute(dataSource);
+		jdbcTemplate.update(INSERT_VERSION_SQL, VERSION, LocalDateTime.now());
+		log.info("スキーマを版{}から{}にしました（{}ms）", current, VERSION,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		return true;
+	}
+}
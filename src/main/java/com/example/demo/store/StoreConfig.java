@@ -0,0 +1,46 @@
+package com.example.demo.store;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.PriorityOrdered;
+
+/**
+ * 永続化したストアで起動する（task.store.enabledがtrueの場合のみ 設定はapplication-persistent.yml）
+ * Spring Bootのschema.sql・data.sqlの実行（spring.datasource.initialization-mode）の代わりに、
+ * DataSourceの作成直後にSchemaInitializerで版を確かめてから流す
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "task.store", name = "enabled", havingValue = "true")
+public class StoreConfig {
+
+	/**
+	 * 戻り値の型をBeanPostProcessorにするとPriorityOrderedが判定されず、順序の指定が効かない
+	 */
+	@Bean
+	static SchemaPostProcessor schemaInitializerPostProcessor() {
+		return new SchemaPostProcessor();
+	}
+
+	/**
+	 * PriorityOrderedを実装し、レプリカへの振り分け・SQLの計測で包む前のDataSourceに流す
+	 */
+	static final class SchemaPostProcessor implements BeanPostProcessor, PriorityOrdered {
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (bean instanceof DataSource) {
+				new SchemaInitializer((DataSource) bean).initialize();
+			}
+			return bean;
+		}
+
+		@Override
+		public int getOrder() {
+			return HIGHEST_PRECEDENCE;
+		}
+	}
+}
@@ -1,27 +1,39 @@
-CREATE TABLE task_type (
+CREATE TABLE IF NOT EXISTS task_type (
   id int(2) NOT NULL,
   type varchar(20) NOT NULL,
   comment varchar(50) DEFAULT NULL,
   PRIMARY KEY (id)
 );
 
-CREATE TABLE task (
+CREATE TABLE IF NOT EXISTS task (
   id int(5) NOT NULL AUTO_INCREMENT,
   user_id int(5) NOT NULL,
   type_id int(2) NOT NULL,
   title varchar(50) NOT NULL,
   detail text,
   deadline datetime NOT NULL,
+  -- 楽観的排他制御の版数 更新のたびに1増やす
+  version int NOT NULL DEFAULT 0,
   PRIMARY KEY (id)
 ) ;
 
-CREATE TABLE authority (
+-- 一覧・エクスポートの(deadline, id)順のページング
+CREATE INDEX IF NOT EXISTS idx_task_deadline ON task(deadline, id);
+-- 前ページは降順で取得するため、降順のインデックスも用意する
+CREATE INDEX IF NOT EXISTS idx_task_deadline_desc ON task(deadline DESC, id DESC);
+-- タスクタイプでの絞り込みと期限順の並び替え
+CREATE INDEX IF NOT EXISTS idx_task_type_deadline ON task(type_id, deadline, id);
+CREATE INDEX IF NOT EXISTS idx_task_type_deadline_desc ON task(type_id DESC, deadline DESC, id DESC);
+-- ユーザーごとの絞り込みと期限順の並び替え
+CREATE INDEX IF NOT EXISTS idx_task_user_deadline ON task(user_id, deadline);
+
+CREATE TABLE IF NOT EXISTS authority (
   id varchar(50) NOT NULL,
   order_seq int(5) NOT NULL,
   PRIMARY KEY (id)
 );
 
-CREATE TABLE user (
+CREATE TABLE IF NOT EXISTS user (
   id int(5) NOT NULL AUTO_INCREMENT,
   username varchar(50) NOT NULL,
   email varchar(70) NOT NULL,
@@ -31,3 +43,6 @@ CREATE TABLE user (
   tempkey varchar(255) DEFAULT NULL,
   PRIMARY KEY (id)
 );
+
+-- 有効なユーザーの一覧（id順）
+CREATE INDEX IF NOT EXISTS idx_user_enabled ON user(enabled, id);
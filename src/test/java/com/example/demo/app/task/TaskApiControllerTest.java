@@ -0,0 +1,237 @@
+package com.example.demo.app.task;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:controller-api")
+@AutoConfigureMockMvc
+@ActiveProfiles("unit")
+@DisplayName("タスクのJSON APIのテスト")
+class TaskApiControllerTest {
+
+    private static final String BODY = "{\"typeId\":2,\"title\":\"APIから登録\",\"detail\":\"詳細\",\"deadline\":\"2099-01-01T10:00\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("一覧を期限順に返し、次ページのカーソルで続きを取得できる")
+    void list() throws Exception {
+        mockMvc.perform(get("/api/tasks").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.tasks", hasSize(1)))
+                .andExpect(jsonPath("$.tasks[0].id", is(1)))
+                .andExpect(jsonPath("$.tasks[0].type", is("緊急")))
+                .andExpect(jsonPath("$.tasks[0].deadline", is("2020-07-07T15:00")))
+                .andExpect(jsonPath("$.prev", nullValue()))
+                .andExpect(jsonPath("$.next", is("2020-07-07T15:00_1")));
+
+        mockMvc.perform(get("/api/tasks").param("limit", "1").param("after", "2020-07-07T15:00_1"))
+                .andExpect(jsonPath("$.tasks[0].id", is(2)))
+                .andExpect(jsonPath("$.prev", is("2020-09-13T17:00_2")))
+                .andExpect(jsonPath("$.next", nullValue()));
+    }
+
+    @Test
+    @DisplayName("タスクタイプで絞り込める")
+    void listByType() throws Exception {
+        mockMvc.perform(get("/api/tasks").param("typeId", "3"))
+                .andExpect(jsonPath("$.tasks", hasSize(1)))
+                .andExpect(jsonPath("$.tasks[0].title", is("サービスの自作")))
+                .andExpect(jsonPath("$.total", is(1)));
+    }
+
+    @Test
+    @DisplayName("fieldsで指定した項目のみ返す")
+    void fields() throws Exception {
+        mockMvc.perform(get("/api/tasks/1").param("fields", "id,title"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"title\":\"JUnitを学習\"}", true));
+    }
+
+    @Test
+    @DisplayName("不正なパラメータは400")
+    void badRequest() throws Exception {
+        mockMvc.perform(get("/api/tasks").param("fields", "id,password"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("存在しない項目です: password")));
+        mockMvc.perform(get("/api/tasks").param("after", "xyz"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/tasks").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("タスクタイプごと・ユーザーごとの件数と期限を過ぎた件数を返す")
+    void stats() throws Exception {
+        mockMvc.perform(get("/api/tasks/stats"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(
+                        "{\"total\":2,\"overdue\":2,\"types\":{\"1\":1,\"3\":1},\"users\":{\"1\":2}}", true));
+    }
+
+    //検索インデックスはコミット後に更新されるため、@Transactional（ロールバック）は使わずに削除する
+    @Test
+    @DisplayName("タイトルと詳細を全文検索できる")
+    void search() throws Exception {
+        mockMvc.perform(get("/api/tasks/search").param("q", "サービス").param("fields", "id"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"tasks\":[{\"id\":2}]}", true));
+
+        //登録したタスクはすぐに検索できる
+        String location = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON)
+                .content(BODY.replace("APIから登録", "サービスの設計")))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("Location");
+        try {
+            mockMvc.perform(get("/api/tasks/search").param("q", "サービス 設計"))
+                    .andExpect(jsonPath("$.tasks", hasSize(1)))
+                    .andExpect(jsonPath("$.tasks[0].title", is("サービスの設計")));
+        } finally {
+            mockMvc.perform(delete(location));
+        }
+        mockMvc.perform(get("/api/tasks/search").param("q", "設計"))
+                .andExpect(jsonPath("$.tasks", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("期限を過ぎたタスクと期限の近いタスク")
+    void deadlines() throws Exception {
+        mockMvc.perform(get("/api/tasks/overdue").param("fields", "id"))
+                .andExpect(content().json("{\"tasks\":[{\"id\":1},{\"id\":2}]}", true));
+
+        //期限の索引はコミット後に更新されるため、@Transactional（ロールバック）は使わずに削除する
+        String location = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON)
+                .content(BODY.replace("2099-01-01T10:00", LocalDateTime.now().plusHours(2).withNano(0).toString())))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("Location");
+        try {
+            mockMvc.perform(get("/api/tasks/due").param("hours", "3"))
+                    .andExpect(jsonPath("$.tasks", hasSize(1)))
+                    .andExpect(jsonPath("$.tasks[0].title", is("APIから登録")));
+            mockMvc.perform(get("/api/tasks/due").param("hours", "1"))
+                    .andExpect(jsonPath("$.tasks", hasSize(0)));
+            mockMvc.perform(get("/api/tasks/urgent").param("k", "1"))
+                    .andExpect(jsonPath("$.2[0].title", is("APIから登録")))
+                    .andExpect(jsonPath("$.1").doesNotExist());
+        } finally {
+            mockMvc.perform(delete(location));
+        }
+    }
+
+    @Test
+    @DisplayName("存在しないタスクは404")
+    void notFound() throws Exception {
+        mockMvc.perform(get("/api/tasks/999"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message", is("指定されたタスクが存在しません")));
+        mockMvc.perform(delete("/api/tasks/999"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional //テスト終了後にロールバック
+    @DisplayName("登録・更新・削除")
+    void crud() throws Exception {
+        String location = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.title", is("APIから登録")))
+                .andExpect(jsonPath("$.type", notNullValue()))
+                .andReturn().getResponse().getHeader("Location");
+
+        mockMvc.perform(put(location).contentType(MediaType.APPLICATION_JSON)
+                .content(BODY.replace("APIから登録", "APIから更新")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("APIから更新")))
+                .andExpect(jsonPath("$.version", is(1)));
+
+        mockMvc.perform(delete(location))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get(location))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("取得した後に他で更新されたタスクの更新は409")
+    void conflict() throws Exception {
+        String location = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.version", is(0)))
+                .andReturn().getResponse().getHeader("Location");
+        try {
+            mockMvc.perform(put(location).contentType(MediaType.APPLICATION_JSON)
+                    .content(BODY.replace("APIから登録", "先に更新")))
+                    .andExpect(status().isOk());
+
+            //version 0のまま更新すると、先の更新を上書きせずに409
+            mockMvc.perform(put(location).contentType(MediaType.APPLICATION_JSON)
+                    .content(BODY.replace("APIから登録", "後から更新")))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.message", notNullValue()));
+            mockMvc.perform(get(location))
+                    .andExpect(jsonPath("$.title", is("先に更新")))
+                    .andExpect(jsonPath("$.version", is(1)));
+
+            mockMvc.perform(put(location).contentType(MediaType.APPLICATION_JSON)
+                    .content(BODY.replace("APIから登録", "後から更新").replace("}", ",\"version\":1}")))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.version", is(2)));
+        } finally {
+            mockMvc.perform(delete(location));
+        }
+    }
+
+    //変更の通知はコミット後に送られるため、@Transactional（ロールバック）は使わずに削除する
+    @Test
+    @DisplayName("変更の通知の接続には、登録したタスクがinsertedイベントで送られる")
+    void stream() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/tasks/stream").param("typeId", "2")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        String location = mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON).content(BODY))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("Location");
+        try {
+            String id = location.substring(location.lastIndexOf('/') + 1);
+            String expected = "event:inserted\ndata:{\"id\":" + id + ",";
+            //送信は別のスレッドで行われるため、届くまで待つ
+            for (int i = 0; i < 100 && !response.getContentAsString().contains(expected); i++) {
+                Thread.sleep(50);
+            }
+            assertThat(response.getContentAsString(), containsString(expected));
+        } finally {
+            mockMvc.perform(delete(location));
+        }
+    }
+
+    @Test
+    @DisplayName("入力チェックの誤りは項目ごとのメッセージ付きの400")
+    void invalid() throws Exception {
+        mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON)
+                .content(BODY.replace("\"APIから登録\"", "null")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors.title", is("タイトルを入力してください。")));
+        mockMvc.perform(post("/api/tasks").contentType(MediaType.APPLICATION_JSON)
+                .content(BODY.replace("\"typeId\":2", "\"typeId\":9")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("存在しないタスクタイプです")));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo.app.task;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+@DisplayName("TaskControllerの参照系画面のテスト")
+class TaskControllerAsyncTest {
+
+    /**
+     * 同期・非同期のどちらのモードでも同じ画面になること
+     */
+    abstract static class Pages {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Test
+        @DisplayName("一覧画面")
+        void task() throws Exception {
+            perform(get("/task"))
+                    .andExpect(status().isOk())
+                    .andExpect(view().name("task/index"))
+                    .andExpect(model().attribute("list", hasSize(2)))
+                    .andExpect(content().string(containsString("<td>JUnitを学習</td>")))
+                    .andExpect(content().string(containsString("href=\"/task/2\"")))
+                    //件数はETagの対象外のため画面には埋め込まず、/api/tasks/statsから読み込む
+                    .andExpect(content().string(containsString("data-url=\"/api/tasks/stats\"")))
+                    .andExpect(content().string(containsString("data-type-name=\"緊急\"")))
+                    .andExpect(content().string(not(containsString("期限切れ2件"))));
+        }
+
+        @Test
+        @DisplayName("更新画面")
+        void showUpdate() throws Exception {
+            perform(get("/task/1"))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("taskId", 1))
+                    .andExpect(model().attribute("taskForm", hasProperty("title", is("JUnitを学習"))))
+                    .andExpect(content().string(containsString("name=\"version\" value=\"0\"")));
+        }
+
+        @Test
+        @DisplayName("更新後のリダイレクト先でフラッシュスコープの値が表示される")
+        void showUpdateWithFlash() throws Exception {
+            perform(get("/task/1").flashAttr("complete", "変更が完了しました"))
+                    .andExpect(model().attribute("complete", "変更が完了しました"));
+        }
+
+        @Test
+        @DisplayName("複製画面ではタスクと一覧を両方表示する")
+        void duplicate() throws Exception {
+            perform(get("/task/duplicate").param("taskId", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("taskForm", hasProperty("newTask", is(true))))
+                    .andExpect(model().attribute("taskForm", hasProperty("title", is("サービスの自作"))))
+                    .andExpect(model().attribute("list", hasSize(2)));
+        }
+
+        @Test
+        @DisplayName("タスクタイプでの絞り込み")
+        void selectType() throws Exception {
+            perform(get("/task/selectType").param("typeId", "3"))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("typeId", 3))
+                    .andExpect(model().attribute("list", hasSize(1)));
+        }
+
+        @Test
+        @DisplayName("存在しないタスクはエラー画面")
+        void notFound() throws Exception {
+            perform(get("/task/999"))
+                    .andExpect(view().name("error/CustomPage"));
+        }
+
+        private ResultActions perform(RequestBuilder request) throws Exception {
+            MvcResult result = mockMvc.perform(request)
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            return mockMvc.perform(asyncDispatch(result));
+        }
+    }
+
+    //コンテキストごとに別のDBを使う（同じDBだとschema.sqlの2回目の実行で失敗する）
+    @Nested
+    @SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:controller-sync")
+    @AutoConfigureMockMvc
+    @ActiveProfiles("unit")
+    @DisplayName("同期モード")
+    class Sync extends Pages {
+    }
+
+    @Nested
+    @SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:controller-async", "task.async.enabled=true" })
+    @AutoConfigureMockMvc
+    @ActiveProfiles("unit")
+    @DisplayName("非同期モード")
+    class Async extends Pages {
+    }
+}
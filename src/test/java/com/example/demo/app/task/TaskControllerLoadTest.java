@@ -0,0 +1,146 @@
+package com.example.demo.app.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.WebToDoApplication;
+import com.example.demo.repository.TaskDao;
+
+/**
+ * 参照系画面の負荷テスト（同期モードと非同期モードのスループットの比較）
+ * 通常のテストには含めない ./gradlew loadTest で実行する
+ *
+ * DBの遅延をTaskDaoの呼び出しごとにDB_LATENCY_MILLIS、Tomcatのスレッド数をTOMCAT_THREADSとし、
+ * それを上回るCLIENTS並列で/task/duplicateを呼び出し続ける
+ * 同期モードではDBを待つ間Tomcatのスレッドが占有されるため、スループットはTomcatのスレッド数で頭打ちになる
+ * 1秒あたりの件数はテストの結果（TestReporter）に記録する
+ */
+@Tag("load")
+@DisplayName("参照系画面の負荷テスト")
+class TaskControllerLoadTest {
+
+    private static final int CLIENTS = 64;
+    private static final int TOMCAT_THREADS = 8;
+    private static final int DAO_THREADS = 32;
+    private static final long DB_LATENCY_MILLIS = 10;
+    private static final long WARMUP_MILLIS = 2_000;
+    private static final long MEASURE_MILLIS = 5_000;
+
+    @Test
+    @DisplayName("高い並列度では非同期モードのスループットが同期モードを上回る")
+    void asyncModeHasHigherThroughput(TestReporter reporter) throws Exception {
+        double sync = measure(false);
+        double async = measure(true);
+
+        Map<String, String> throughput = new LinkedHashMap<>();
+        throughput.put("clients", String.valueOf(CLIENTS));
+        throughput.put("tomcatThreads", String.valueOf(TOMCAT_THREADS));
+        throughput.put("daoThreads", String.valueOf(DAO_THREADS));
+        throughput.put("latencyMillis", String.valueOf(DB_LATENCY_MILLIS));
+        throughput.put("sync", String.format("%.1f", sync));
+        throughput.put("async", String.format("%.1f", async));
+        reporter.publishEntry(throughput);
+        assertTrue(async > sync * 1.5, "async " + async + " req/s, sync " + sync + " req/s");
+    }
+
+    /**
+     * アプリを起動し、計測期間中に正常に返ったリクエスト数から1秒あたりの件数を求める
+     */
+    private double measure(boolean async) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WebToDoApplication.class)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .initializers(c -> c.getBeanFactory().addBeanPostProcessor(new SlowTaskDao()))
+                //application.ymlより優先させるため、コマンドライン引数で指定する
+                .run(
+                        "--server.port=0",
+                        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "--server.tomcat.threads.min-spare=" + TOMCAT_THREADS,
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + (async ? "async" : "sync"),
+                        "--spring.datasource.hikari.maximum-pool-size=" + DAO_THREADS,
+                        "--task.async.enabled=" + async,
+                        "--task.async.pool-size=" + DAO_THREADS,
+                        "--task.async.queue-capacity=1000")) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + "/task/duplicate?taskId=1");
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            long start = System.currentTimeMillis();
+            long measureFrom = start + WARMUP_MILLIS;
+            long end = measureFrom + MEASURE_MILLIS;
+
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+            try {
+                List<Future<Integer>> results = new ArrayList<>();
+                for (int i = 0; i < CLIENTS; i++) {
+                    results.add(clients.submit(() -> {
+                        int completed = 0;
+                        HttpRequest request = HttpRequest.newBuilder(uri).build();
+                        while (System.currentTimeMillis() < end) {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            assertEquals(200, response.statusCode());
+                            long now = System.currentTimeMillis();
+                            if (now >= measureFrom && now < end) {
+                                completed++;
+                            }
+                        }
+                        return completed;
+                    }));
+                }
+                long total = 0;
+                for (Future<Integer> result : results) {
+                    total += result.get();
+                }
+                return total * 1000.0 / MEASURE_MILLIS;
+            } finally {
+                clients.shutdownNow();
+                clients.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * TaskDaoの呼び出しごとにDBの遅延を模擬する
+     */
+    private static class SlowTaskDao implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof TaskDao)) {
+                return bean;
+            }
+            return Proxy.newProxyInstance(TaskDao.class.getClassLoader(), new Class<?>[] { TaskDao.class },
+                    (proxy, method, args) -> {
+                        Thread.sleep(DB_LATENCY_MILLIS);
+                        try {
+                            return method.invoke(bean, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
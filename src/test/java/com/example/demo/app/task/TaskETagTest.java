@@ -0,0 +1,112 @@
+package com.example.demo.app.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskService;
+
+//更新の版数はコミット後に進むため、@Transactional（ロールバック）は使わずに登録したタスクを削除する
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:controller-etag")
+@AutoConfigureMockMvc
+@ActiveProfiles("unit")
+@DisplayName("タスク一覧の条件付きGETのテスト")
+class TaskETagTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Test
+    @DisplayName("ETagが一致する場合は304を返す")
+    void notModified() throws Exception {
+        String etag = etag(get("/task"));
+
+        mockMvc.perform(get("/task").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(request().asyncNotStarted())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+    }
+
+    @Test
+    @DisplayName("登録すると一覧とそのタスクタイプのETagだけが変わる")
+    void insertChangesETag() throws Exception {
+        String all = etag(get("/task"));
+        String type1 = etag(get("/task/selectType").param("typeId", "1"));
+        String type3 = etag(get("/task/selectType").param("typeId", "3"));
+
+        Task task = newTask(1);
+        taskService.insert(task);
+        try {
+            assertNotEquals(all, etag(get("/task")));
+            assertNotEquals(type1, etag(get("/task/selectType").param("typeId", "1")));
+            assertEquals(type3, etag(get("/task/selectType").param("typeId", "3")));
+
+            mockMvc.perform(get("/task").header(HttpHeaders.IF_NONE_MATCH, all))
+                    .andExpect(status().isOk());
+        } finally {
+            taskService.deleteById(task.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("タスクタイプを変更すると変更前と変更後の両方のETagが変わる")
+    void updateChangesBothTypes() throws Exception {
+        Task task = newTask(1);
+        taskService.insert(task);
+        try {
+            String type1 = etag(get("/task/selectType").param("typeId", "1"));
+            String type2 = etag(get("/task/selectType").param("typeId", "2"));
+            String type3 = etag(get("/task/selectType").param("typeId", "3"));
+
+            task.setTypeId(2);
+            taskService.update(task);
+
+            assertNotEquals(type1, etag(get("/task/selectType").param("typeId", "1")));
+            assertNotEquals(type2, etag(get("/task/selectType").param("typeId", "2")));
+            assertEquals(type3, etag(get("/task/selectType").param("typeId", "3")));
+        } finally {
+            taskService.deleteById(task.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("完了メッセージ付きの一覧にはETagを付けない")
+    void noETagWithFlash() throws Exception {
+        mockMvc.perform(get("/task").flashAttr("complete", "登録が完了しました"))
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
+    private String etag(RequestBuilder builder) throws Exception {
+        String etag = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+
+    private Task newTask(int typeId) {
+        Task task = new Task();
+        task.setUserId(1);
+        task.setTypeId(typeId);
+        task.setTitle("ETagの確認");
+        task.setDetail("詳細");
+        task.setDeadline(LocalDateTime.of(2021, 1, 1, 0, 0));
+        return task;
+    }
+}
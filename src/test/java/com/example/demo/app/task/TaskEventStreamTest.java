@@ -0,0 +1,219 @@
+package com.example.demo.app.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("タスクの変更の通知（Server-Sent Events）のテスト")
+class TaskEventStreamTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private TaskEventStream stream;
+
+    @AfterEach
+    void tearDown() {
+        if (stream != null) {
+            stream.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("typeIdを指定した接続には変更前・変更後がそのタスクタイプの変更のみ送る")
+    void filterByType() throws Exception {
+        stream = create(10, 10);
+        Capture all = subscribe(null, null);
+        Capture type2 = subscribe(2, null);
+
+        stream.onChanged(TaskChangedEvent.inserted(task(1, 1)));
+        stream.onChanged(TaskChangedEvent.inserted(task(2, 2)));
+        //タスクタイプ2から1への変更は、タスクタイプ2の接続にも送る
+        stream.onChanged(TaskChangedEvent.updated(task(2, 1), task(2, 2)));
+        stream.onChanged(TaskChangedEvent.deleted(1, task(1, 1)));
+
+        List<String> events = all.events(4);
+        assertEquals(List.of("inserted", "inserted", "updated", "deleted"), Capture.names(events));
+        assertTrue(events.get(3).contains("data:{\"id\":1}"), events.get(3));
+        assertEquals(List.of("inserted", "updated"), Capture.names(type2.events(2)));
+        assertNull(type2.poll(100), "タスクタイプ1のみの削除は送らない");
+    }
+
+    @Test
+    @DisplayName("Last-Event-ID以降のイベントを保持している分から再送する")
+    void resume() throws Exception {
+        stream = create(10, 10);
+        Capture first = subscribe(null, null);
+        for (int id = 1; id <= 3; id++) {
+            stream.onChanged(TaskChangedEvent.inserted(task(id, 1)));
+        }
+        String lastEventId = Capture.id(first.take());
+
+        Capture resumed = subscribe(null, lastEventId);
+        stream.onChanged(TaskChangedEvent.inserted(task(4, 1)));
+
+        List<String> events = resumed.events(3);
+        assertTrue(events.get(0).contains("\"id\":2"), events.get(0));
+        assertTrue(events.get(1).contains("\"id\":3"), events.get(1));
+        assertTrue(events.get(2).contains("\"id\":4"), events.get(2));
+    }
+
+    @Test
+    @DisplayName("保持していない、または他の起動時のLast-Event-IDで再接続した場合はresetを送る")
+    void reset() throws Exception {
+        stream = create(3, 10);
+        Capture first = subscribe(null, null);
+        for (int id = 1; id <= 5; id++) {
+            stream.onChanged(TaskChangedEvent.inserted(task(id, 1)));
+        }
+        String oldest = Capture.id(first.take());
+
+        assertEquals(List.of("reset"), Capture.names(subscribe(null, oldest).events(1)));
+        assertEquals(List.of("reset"), Capture.names(subscribe(null, "0-1").events(1)));
+
+        //resetのidは最新のイベントのidなので、そのidで再接続すれば以降のイベントを受け取れる
+        String reset = Capture.id(subscribe(null, "xyz").take());
+        Capture resumed = subscribe(null, reset);
+        stream.onChanged(TaskChangedEvent.inserted(task(6, 1)));
+        assertTrue(resumed.take().contains("\"id\":6"));
+    }
+
+    @Test
+    @DisplayName("送信待ちが溢れた接続は切断し、他の接続には全て送る")
+    void evictSlowSubscriber() throws Exception {
+        stream = create(100, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        Capture slow = new Capture(release);
+        assertTrue(stream.subscribe(slow, null, null));
+        Capture fast = subscribe(null, null);
+
+        //速い接続は1件ずつ受け取ってから次を発行し、送信待ちが溢れないようにする
+        for (int id = 1; id <= 20; id++) {
+            stream.onChanged(TaskChangedEvent.inserted(task(id, 1)));
+            assertTrue(fast.take().contains("\"id\":" + id + ","));
+        }
+
+        assertEquals(1, stream.getSubscriberCount());
+        assertEquals(1.0, registry.get("todo.stream.evicted").counter().count());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("接続数が上限に達した場合は登録しない")
+    void maxSubscribers() {
+        TaskProperties properties = new TaskProperties();
+        properties.getStream().setMaxSubscribers(1);
+        properties.getStream().setHeartbeat(Duration.ZERO);
+        stream = new TaskEventStream(properties, new ObjectMapper(), registry);
+
+        assertNotNull(stream.subscribe(null, null));
+        assertNull(stream.subscribe(null, null));
+    }
+
+    private TaskEventStream create(int history, int buffer) {
+        TaskProperties properties = new TaskProperties();
+        properties.getStream().setHistory(history);
+        properties.getStream().setBuffer(buffer);
+        properties.getStream().setHeartbeat(Duration.ZERO);
+        return new TaskEventStream(properties, new ObjectMapper(), registry);
+    }
+
+    private Capture subscribe(Integer typeId, String lastEventId) {
+        Capture capture = new Capture(null);
+        assertTrue(stream.subscribe(capture, typeId, lastEventId));
+        return capture;
+    }
+
+    private static Task task(int id, int typeId) {
+        Task task = new Task();
+        task.setId(id);
+        task.setUserId(1);
+        task.setTypeId(typeId);
+        task.setTitle("タスク" + id);
+        task.setDetail("詳細");
+        task.setDeadline(LocalDateTime.of(2099, 1, 1, 10, 0));
+        return task;
+    }
+
+    /**
+     * 送られたイベントを文字列（id:...\nevent:...\ndata:...）で記録する
+     * releaseを指定した場合は、releaseされるまで送信を止める（遅い受信者）
+     */
+    private static class Capture extends SseEmitter {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        private final CountDownLatch release;
+
+        Capture(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            events.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()));
+        }
+
+        String take() throws InterruptedException {
+            String event = poll(5000);
+            assertNotNull(event, "イベントが送られない");
+            return event;
+        }
+
+        String poll(long millis) throws InterruptedException {
+            return events.poll(millis, TimeUnit.MILLISECONDS);
+        }
+
+        List<String> events(int count) throws InterruptedException {
+            List<String> list = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                list.add(take());
+            }
+            return list;
+        }
+
+        static List<String> names(List<String> events) {
+            return events.stream().map(event -> field(event, "event:")).collect(Collectors.toList());
+        }
+
+        static String id(String event) {
+            return field(event, "id:");
+        }
+
+        private static String field(String event, String prefix) {
+            for (String line : event.split("\n")) {
+                if (line.startsWith(prefix)) {
+                    return line.substring(prefix.length());
+                }
+            }
+            return null;
+        }
+    }
+}
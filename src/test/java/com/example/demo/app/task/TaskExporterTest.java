@@ -0,0 +1,93 @@
+package com.example.demo.app.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringJUnitConfig
+@SpringBootTest
+@ActiveProfiles("unit")
+@DisplayName("TaskExporterの結合テスト")
+class TaskExporterTest {
+
+    @Autowired
+    private TaskExporter taskExporter;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("CSVで全件を期限順に出力できる")
+    void exportCsv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        taskExporter.exportCsv(null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,userId,typeId,type,title,detail,deadline", lines[0]);
+        assertTrue(lines[1].startsWith("1,1,1,"));
+        assertTrue(lines[2].startsWith("2,1,3,"));
+    }
+
+    @Test
+    @Transactional //テスト終了後にロールバック
+    @DisplayName("カンマや改行を含む値はCSVのクォートで出力され、取り込み直せる")
+    void exportCsvQuoted() throws IOException {
+        Task task = new Task();
+        task.setUserId(1);
+        task.setTypeId(1);
+        task.setTitle("カンマ,と\"引用符\"");
+        task.setDetail("改行\nを含む");
+        task.setDeadline(LocalDateTime.of(2099, 1, 1, 10, 0));
+        taskService.insert(task);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        taskExporter.exportCsv(1, out);
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.contains(",\"カンマ,と\"\"引用符\"\"\",\"改行\nを含む\",2099-01-01T10:00\r\n"));
+
+        //出力したCSVをそのまま読み込める
+        TaskCsvReader reader = new TaskCsvReader(new StringReader(csv));
+        reader.next();
+        reader.next();
+        List<String> record = reader.next();
+        assertEquals("カンマ,と\"引用符\"", record.get(4));
+        assertEquals("改行\nを含む", record.get(5));
+        assertNull(reader.next());
+    }
+
+    @Test
+    @DisplayName("NDJSONでタスクタイプを指定して出力できる")
+    void exportNdjson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        taskExporter.exportNdjson(3, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        JsonNode node = objectMapper.readTree(lines[0]);
+        assertEquals(2, node.get("id").asInt());
+        assertEquals(3, node.get("typeId").asInt());
+        assertEquals("2020-09-13T17:00", node.get("deadline").asText());
+    }
+}
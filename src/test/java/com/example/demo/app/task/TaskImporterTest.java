@@ -0,0 +1,113 @@
+package com.example.demo.app.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.service.TaskService;
+
+@SpringJUnitConfig
+@SpringBootTest
+@ActiveProfiles("unit")
+@Transactional //テスト終了後にロールバック
+@DisplayName("TaskImporterの結合テスト")
+class TaskImporterTest {
+
+    @Autowired
+    private TaskImporter taskImporter;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Test
+    @DisplayName("CSVの取り込み（クォート、改行を含む項目と入力エラー）")
+    void importCsv() throws IOException {
+        String csv = "typeId,title,detail,deadline\r\n"
+                + "1,CSVタスク1,\"カンマ,と\"\"引用符\"\"\",2099-01-01T10:00\r\n"
+                + "2,CSVタスク2,\"改行\nを含む\",2099-01-02T10:00\r\n"
+                + "3,,タイトルなし,2099-01-03T10:00\r\n"
+                + "3,過去の期限,期限切れ,2000-01-01T10:00\r\n"
+                + "x,形式エラー,typeIdが数値でない,2099-01-03T10:00\r\n";
+
+        TaskImportResult result = taskImporter.importCsv(stream(csv));
+
+        assertEquals(2, result.getImported());
+        assertEquals(3, result.getErrorCount());
+        assertTrue(result.getErrors().get(0).startsWith("3件目: "));
+        assertEquals(4, taskService.findAll().size());
+        assertTrue(taskService.findAll().stream()
+                .anyMatch(t -> "カンマ,と\"引用符\"".equals(t.getDetail())));
+        assertTrue(taskService.findAll().stream()
+                .anyMatch(t -> "改行\nを含む".equals(t.getDetail())));
+    }
+
+    @Test
+    @DisplayName("JSONの取り込み")
+    void importJson() throws IOException {
+        String json = "[{\"typeId\":1,\"title\":\"JSONタスク\",\"detail\":\"詳細\",\"deadline\":\"2099-01-01T10:00\"},"
+                + "{\"typeId\":2,\"title\":\"期限なし\",\"detail\":\"詳細\"},"
+                + "{\"typeId\":2,\"title\":\"日付の形式エラー\",\"detail\":\"詳細\",\"deadline\":\"明日\"}]";
+
+        TaskImportResult result = taskImporter.importJson(stream(json));
+
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getErrorCount());
+        assertEquals(3, taskService.findAll().size());
+    }
+
+    @Test
+    @DisplayName("閉じられていないクォートの手前までは登録し、以降を取り込めなかったことを返す")
+    void importCsvUnclosedQuote() throws IOException {
+        String csv = "typeId,title,detail,deadline\r\n"
+                + "1,CSVタスク1,詳細,2099-01-01T10:00\r\n"
+                + "2,CSVタスク2,\"閉じていない,2099-01-02T10:00\r\n";
+
+        TaskImportResult result = taskImporter.importFrom(
+                new MockMultipartFile("file", "tasks.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, result.getImported());
+        assertEquals(List.of("2件目以降を取り込めませんでした: ダブルクォートが閉じられていません"), result.getErrors());
+        assertEquals(3, taskService.findAll().size());
+    }
+
+    @Test
+    @DisplayName("JSONの構文エラー・配列でない・オブジェクトでない要素は、例外にせずエラーとして返す")
+    void importJsonErrors() throws IOException {
+        TaskImportResult broken = taskImporter.importFrom(json("[{\"typeId\":1,\"title\":\"JSONタスク\","
+                + "\"detail\":\"詳細\",\"deadline\":\"2099-01-01T10:00\"},{\"typeId\":"));
+        assertEquals(1, broken.getImported());
+        assertEquals(List.of("2件目以降を取り込めませんでした: JSONの形式が正しくありません"), broken.getErrors());
+
+        TaskImportResult notArray = taskImporter.importFrom(json("{\"typeId\":1}"));
+        assertEquals(0, notArray.getImported());
+        assertEquals(List.of("1件目以降を取り込めませんでした: JSONは配列で指定してください"), notArray.getErrors());
+
+        TaskImportResult notObject = taskImporter.importFrom(json("[1, [2, 3], "
+                + "{\"typeId\":2,\"title\":\"要素の後\",\"detail\":\"詳細\",\"deadline\":\"2099-01-01T10:00\"}]"));
+        assertEquals(1, notObject.getImported());
+        assertEquals(List.of("1件目: オブジェクトで指定してください", "2件目: オブジェクトで指定してください"),
+                notObject.getErrors());
+        assertEquals(4, taskService.findAll().size());
+    }
+
+    private MockMultipartFile json(String value) {
+        return new MockMultipartFile("file", "tasks.json", "application/json", value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InputStream stream(String value) {
+        return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
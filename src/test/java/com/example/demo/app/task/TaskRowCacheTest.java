@@ -0,0 +1,91 @@
+package com.example.demo.app.task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import com.example.demo.entity.Task;
+import com.example.demo.entity.TaskType;
+import com.example.demo.service.TaskChangedEvent;
+
+@DisplayName("タスク一覧の行のキャッシュのテスト")
+class TaskRowCacheTest {
+
+    private TaskRowCache rowCache;
+
+    @BeforeEach
+    void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        rowCache = new TaskRowCache(templateEngine, "/app", 100);
+    }
+
+    @Test
+    @DisplayName("行のHTMLを描画し、リンクにはコンテキストパスを付ける")
+    void render() {
+        String html = rowCache.render(task("<b>JUnitを学習</b>"));
+
+        assertTrue(html.startsWith("<tr>"), html);
+        assertTrue(html.contains("&lt;b&gt;JUnitを学習&lt;/b&gt;"), html);
+        assertTrue(html.contains("2020-07-07T15:00"), html);
+        assertTrue(html.contains("緊急"), html);
+        assertTrue(html.contains("href=\"/app/task/1\""), html);
+        assertTrue(html.contains("action=\"/app/task/delete\""), html);
+        assertTrue(html.contains("action=\"/app/task/duplicate\""), html);
+    }
+
+    @Test
+    @DisplayName("表示する値が同じ場合は描画済みのHTMLを使う")
+    void cached() {
+        String first = rowCache.render(task("JUnitを学習"));
+        String second = rowCache.render(task("JUnitを学習"));
+
+        assertSame(first, second);
+        assertEquals(1, rowCache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("表示する値が変わった場合は描画し直す")
+    void renderAgainWhenChanged() {
+        rowCache.render(task("JUnitを学習"));
+        String html = rowCache.render(task("JUnit5を学習"));
+
+        assertTrue(html.contains("JUnit5を学習"), html);
+    }
+
+    @Test
+    @DisplayName("変更のイベントで破棄する")
+    void invalidate() {
+        Task task = task("JUnitを学習");
+        rowCache.render(task);
+
+        rowCache.onChanged(TaskChangedEvent.updated(task, null));
+
+        assertEquals(0, rowCache.size());
+    }
+
+    private Task task(String title) {
+        TaskType type = new TaskType();
+        type.setId(1);
+        type.setType("緊急");
+        Task task = new Task();
+        task.setId(1);
+        task.setUserId(1);
+        task.setTypeId(1);
+        task.setTaskType(type);
+        task.setTitle(title);
+        task.setDetail("詳細");
+        task.setDeadline(LocalDateTime.of(2020, 7, 7, 15, 0));
+        return task;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.aspect;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import com.example.demo.service.TaskNotFoundException;
+import com.example.demo.service.TaskService;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@SpringJUnitConfig
+@SpringBootTest
+@ActiveProfiles("unit")
+@DisplayName("DAO・サービスのメソッドの計測のテスト")
+class MethodMetricsInterceptorTest {
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    @DisplayName("サービスとDAOの処理時間と一覧の件数が記録される")
+    void recordsTimerAndRows() {
+        long before = count("TaskServiceImpl", "findAll");
+        double rowsBefore = rows("TaskServiceImpl", "findAll");
+
+        int size = taskService.findAll().size();
+
+        assertEquals(before + 1, count("TaskServiceImpl", "findAll"));
+        assertTrue(count("TaskDaoImpl", "findAll") > 0);
+        assertEquals("repository", registry.get(MethodMeters.TIMER)
+                .tag("class", "TaskDaoImpl").tag("method", "findAll").timer().getId().getTag("layer"));
+
+        // 一覧を返すメソッドは件数も記録する
+        assertEquals(rowsBefore + size, rows("TaskServiceImpl", "findAll"));
+
+        // パーセンタイルも公開される
+        assertNotNull(registry.find(MethodMeters.TIMER + ".percentile")
+                .tag("class", "TaskServiceImpl").tag("method", "findAll").tag("phi", "0.99").gauge());
+    }
+
+    @Test
+    @DisplayName("例外で終了した場合は例外のクラス名ごとに件数が記録される")
+    void recordsErrors() {
+        assertThrows(TaskNotFoundException.class, () -> taskService.deleteById(0));
+
+        assertTrue(registry.get(MethodMeters.ERRORS)
+                .tag("class", "TaskServiceImpl").tag("method", "deleteById")
+                .tag("exception", "TaskNotFoundException").counter().count() >= 1);
+    }
+
+    private double rows(String type, String method) {
+        DistributionSummary summary = registry.find(MethodMeters.ROWS).tag("class", type).tag("method", method).summary();
+        return summary == null ? 0 : summary.totalAmount();
+    }
+
+    private long count(String type, String method) {
+        Timer timer = registry.find(MethodMeters.TIMER).tag("class", type).tag("method", method).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.demo.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.config.TaskProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("SQLの計測のテスト")
+class InstrumentedDataSourceTest {
+
+    private static final String SELECT_SQL = "SELECT id, title FROM item WHERE id <= ? ORDER BY id";
+
+    private SingleConnectionDataSource target;
+
+    private MeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        target = new SingleConnectionDataSource("jdbc:h2:mem:instrumented;DB_CLOSE_DELAY=-1", "sa", "", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(target);
+        jdbcTemplate.execute("CREATE TABLE item(id INT PRIMARY KEY, title VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO item VALUES(1, 'a'), (2, 'b'), (3, 'c')");
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(target).execute("DROP ALL OBJECTS");
+        target.destroy();
+        SqlRequestStats.bind(null);
+    }
+
+    @Test
+    @DisplayName("SQLごとに処理時間と取得行数が記録される")
+    void recordsStatements() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(instrument(config()));
+
+        assertEquals(2, jdbcTemplate.queryForList(SELECT_SQL, 2).size());
+        assertEquals(3, jdbcTemplate.queryForList(SELECT_SQL, 3).size());
+        jdbcTemplate.update("UPDATE item SET title = ? WHERE id = ?", "z", 1);
+
+        assertEquals(2, registry.get(SqlMeters.TIMER).tag("sql", SELECT_SQL).timer().count());
+        assertEquals(5, registry.get(SqlMeters.ROWS).tag("sql", SELECT_SQL).summary().totalAmount());
+        assertEquals(1, registry.get(SqlMeters.TIMER).tag("sql", "UPDATE item SET title = ? WHERE id = ?")
+                .timer().count());
+    }
+
+    @Test
+    @DisplayName("リクエストに結び付けた集計に実行回数・取得行数・通信回数が加算される")
+    void recordsRequest() {
+        InstrumentedDataSource dataSource = instrument(config());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        SqlRequestStats stats = new SqlRequestStats();
+        SqlRequestStats.bind(stats);
+
+        jdbcTemplate.queryForList(SELECT_SQL, 3);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList(SELECT_SQL, 1);
+            jdbcTemplate.update("DELETE FROM item WHERE id = ?", 3);
+        });
+
+        assertEquals(3, stats.getStatements());
+        assertEquals(4, stats.getRows());
+        // 実行3回とcommit 1回
+        assertEquals(4, stats.getRoundTrips());
+        assertTrue(stats.getNanos() > 0);
+
+        // 別のスレッドへの引き継ぎ
+        SqlRequestStats.propagate(() -> jdbcTemplate.queryForList(SELECT_SQL, 2)).get();
+        assertEquals(4, stats.getStatements());
+    }
+
+    @Test
+    @DisplayName("遅いSQLは実行時のパラメータで実行計画が取得される")
+    void explainsSlowStatements() {
+        TaskProperties.Sql config = config();
+        config.setSlowThreshold(Duration.ZERO);
+        SqlMetrics metrics = new SqlMetrics(() -> registry, config);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(target, () -> metrics));
+
+        jdbcTemplate.queryForList(SELECT_SQL, 2);
+        jdbcTemplate.update("DELETE FROM item WHERE id = ?", 3);
+
+        String plan = plan(metrics, SELECT_SQL);
+        // EXPLAIN ANALYZEはパラメータが未設定だと失敗する
+        assertTrue(plan.contains("scanCount"), plan);
+        // 更新系はEXPLAINのみで、もう一度実行されない
+        assertTrue(plan(metrics, "DELETE FROM item WHERE id = ?").contains("DELETE"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item", Integer.class));
+    }
+
+    @Test
+    @ExtendWith(OutputCaptureExtension.class)
+    @DisplayName("遅いSQLのログと実行計画には、実行時のパラメータの値を出力しない")
+    void hidesParameters(CapturedOutput output) {
+        TaskProperties.Sql config = config();
+        config.setSlowThreshold(Duration.ZERO);
+        SqlMetrics metrics = new SqlMetrics(() -> registry, config);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(target, () -> metrics));
+
+        jdbcTemplate.update("UPDATE item SET title = ? WHERE id = ?", "secret-pw", 1);
+
+        assertTrue(output.getOut().contains("遅いSQLです"), output.getOut());
+        assertFalse(output.getOut().contains("secret-pw"), output.getOut());
+        assertFalse(plan(metrics, "UPDATE item SET title = ? WHERE id = ?").contains("secret-pw"));
+    }
+
+    @Test
+    @DisplayName("同じSQLの実行計画はexplain-intervalに1回だけ取得する")
+    void explainsOncePerInterval() {
+        TaskProperties.Sql config = config();
+        config.setSlowThreshold(Duration.ZERO);
+        SqlMetrics metrics = new SqlMetrics(() -> registry, config);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(target, () -> metrics));
+
+        jdbcTemplate.queryForList(SELECT_SQL, 1);
+        String first = plan(metrics, SELECT_SQL);
+        jdbcTemplate.queryForList(SELECT_SQL, 3);
+
+        assertSame(first, plan(metrics, SELECT_SQL));
+        assertEquals(2, metrics.statements().iterator().next().getSlow());
+    }
+
+    @Test
+    @DisplayName("SQLの種類が上限に達した場合は以降のSQLを個別に記録しない")
+    void limitsStatements() {
+        TaskProperties.Sql config = config();
+        config.setMaxStatements(1);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(instrument(config));
+
+        jdbcTemplate.queryForList(SELECT_SQL, 1);
+        jdbcTemplate.queryForList("SELECT title FROM item");
+
+        assertNotNull(registry.find(SqlMeters.TIMER).tag("sql", SELECT_SQL).timer());
+        assertNull(registry.find(SqlMeters.TIMER).tag("sql", "SELECT title FROM item").timer());
+    }
+
+    private InstrumentedDataSource instrument(TaskProperties.Sql config) {
+        SqlMetrics metrics = new SqlMetrics(() -> registry, config);
+        return new InstrumentedDataSource(target, () -> metrics);
+    }
+
+    private TaskProperties.Sql config() {
+        TaskProperties.Sql config = new TaskProperties().getSql();
+        config.setSlowThreshold(Duration.ofDays(1));
+        return config;
+    }
+
+    private String plan(SqlMetrics metrics, String sql) {
+        List<SqlMeters> statements = List.copyOf(metrics.statements());
+        return statements.stream().filter(meters -> meters.getSql().equals(sql)).findFirst().get().getPlan();
+    }
+}
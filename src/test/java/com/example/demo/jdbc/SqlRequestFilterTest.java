@@ -0,0 +1,97 @@
+package com.example.demo.jdbc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:sql-metrics", "task.async.enabled=true" })
+@AutoConfigureMockMvc
+@ActiveProfiles("unit")
+@DisplayName("リクエストごとのSQLの集計のテスト")
+class SqlRequestFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private SqlMetricsEndpoint endpoint;
+
+    @Test
+    @DisplayName("DataSourceが計測用に包まれている")
+    void wrapsDataSource() {
+        assertTrue(dataSource instanceof InstrumentedDataSource);
+    }
+
+    @Test
+    @DisplayName("URLのパターンごとにSQLの実行回数と取得行数が記録される")
+    void recordsPerRequest() throws Exception {
+        long before = count("GET", "/api/tasks/{id}");
+
+        mockMvc.perform(get("/api/tasks/{id}", 1)).andExpect(status().isOk());
+
+        DistributionSummary statements = registry.get(SqlMetrics.REQUEST_STATEMENTS)
+                .tag("method", "GET").tag("uri", "/api/tasks/{id}").summary();
+        assertEquals(before + 1, statements.count());
+        assertNotNull(registry.get(SqlMetrics.REQUEST_ROUND_TRIPS)
+                .tag("method", "GET").tag("uri", "/api/tasks/{id}").summary());
+    }
+
+    @Test
+    @DisplayName("非同期の画面はDaoExecutorのスレッドで実行したSQLも完了時に記録される")
+    void recordsAsyncRequest() throws Exception {
+        MvcResult result = mockMvc.perform(get("/task"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        DistributionSummary rows = registry.get(SqlMetrics.REQUEST_ROWS).tag("method", "GET").tag("uri", "/task")
+                .summary();
+        assertTrue(rows.count() >= 1);
+        assertTrue(rows.max() >= 2, "一覧の2件が集計されること");
+    }
+
+    @Test
+    @DisplayName("エンドポイントがSQLとリクエストの集計を返す")
+    @SuppressWarnings("unchecked")
+    void endpoint() throws Exception {
+        mockMvc.perform(get("/api/tasks")).andExpect(status().isOk());
+
+        Map<String, Object> sql = endpoint.sql(100);
+        List<Map<String, Object>> statements = (List<Map<String, Object>>) sql.get("statements");
+        assertTrue(statements.stream().anyMatch(map -> map.get("sql").toString().contains("FROM task")));
+        assertTrue(statements.get(0).containsKey("p99"));
+        List<Map<String, Object>> requests = (List<Map<String, Object>>) sql.get("requests");
+        assertTrue(requests.stream().anyMatch(map -> "/api/tasks".equals(map.get("uri"))));
+
+        assertEquals(1, ((List<?>) endpoint.sql(1).get("statements")).size());
+    }
+
+    private long count(String method, String uri) {
+        DistributionSummary summary = registry.find(SqlMetrics.REQUEST_STATEMENTS).tag("method", method)
+                .tag("uri", uri).summary();
+        return summary == null ? 0 : summary.count();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.demo.reminder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskChangedEvent;
+import com.example.demo.service.TaskDeadlineIndex;
+import com.example.demo.service.TaskNotFoundException;
+import com.example.demo.service.TaskService;
+
+@DisplayName("期限の通知の単体テスト")
+class TaskReminderSchedulerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    private final MutableClock clock = new MutableClock(NOW);
+
+    private final Map<Integer, Task> tasks = new HashMap<>();
+
+    private final RecordingSink sink = new RecordingSink();
+
+    private TaskDeadlineIndex deadlineIndex;
+
+    private TaskReminderScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        TaskService taskService = mock(TaskService.class);
+        when(taskService.getTask(anyInt())).thenAnswer(invocation -> {
+            Task task = tasks.get(invocation.<Integer>getArgument(0));
+            if (task == null) {
+                throw new TaskNotFoundException("指定されたタスクが存在しません");
+            }
+            return Optional.of(task);
+        });
+
+        TaskProperties properties = new TaskProperties();
+        properties.getReminder().setLeadTime(Duration.ofHours(1));
+        properties.getReminder().setHorizon(Duration.ofDays(1));
+        properties.getReminder().setSinks(List.of("recording"));
+
+        // DBからの読み込みは使わない
+        deadlineIndex = new TaskDeadlineIndex(null, properties);
+        scheduler = new TaskReminderScheduler(taskService, deadlineIndex, properties, List.of(sink),
+                clock, Runnable::run);
+    }
+
+    @Test
+    @DisplayName("期限の1時間前に通知し、期限切れと期間外のタスクは載せない")
+    void load() {
+        put(task(1, NOW.plusHours(3)));
+        put(task(2, NOW.minusMinutes(1)));
+        put(task(3, NOW.plusMinutes(30)));
+        put(task(4, NOW.plusDays(3)));
+
+        scheduler.load();
+        assertEquals(2, scheduler.pending());
+
+        // 期限まで1時間を切っているタスクはすぐに通知する
+        advance(Duration.ofMinutes(1));
+        assertEquals(List.of(3), sink.ids);
+
+        advance(Duration.ofMinutes(118));
+        assertEquals(List.of(3), sink.ids);
+        advance(Duration.ofMinutes(1));
+        assertEquals(List.of(3, 1), sink.ids);
+        assertEquals(2, scheduler.sent());
+    }
+
+    @Test
+    @DisplayName("期間が進むと先のタスクを読み足す")
+    void refill() {
+        put(task(4, NOW.plusDays(3)));
+        scheduler.load();
+        assertEquals(0, scheduler.pending());
+
+        advance(Duration.ofDays(2));
+        assertEquals(1, scheduler.pending());
+        advance(Duration.ofHours(23));
+        assertEquals(List.of(4), sink.ids);
+    }
+
+    @Test
+    @DisplayName("更新で期限を変えると変更後の期限で通知し、削除すると通知しない")
+    void updateAndDelete() {
+        put(task(1, NOW.plusHours(3)));
+        put(task(2, NOW.plusHours(3)));
+        scheduler.load();
+
+        Task moved = task(1, NOW.plusHours(5));
+        put(moved);
+        scheduler.onChanged(TaskChangedEvent.updated(moved, null));
+        tasks.remove(2);
+        deadlineIndex.remove(2);
+        scheduler.onChanged(TaskChangedEvent.deleted(2, null));
+
+        advance(Duration.ofHours(3));
+        assertEquals(List.of(), sink.ids);
+        advance(Duration.ofHours(1));
+        assertEquals(List.of(1), sink.ids);
+    }
+
+    @Test
+    @DisplayName("タイマーに載せた後に変更の通知が届かずに期限が変わった場合は通知しない")
+    void staleDeadline() {
+        put(task(1, NOW.plusHours(3)));
+        scheduler.load();
+        tasks.put(1, task(1, NOW.plusHours(10)));
+
+        advance(Duration.ofHours(2));
+        assertEquals(List.of(), sink.ids);
+    }
+
+    @Test
+    @DisplayName("存在しない通知先を指定した場合は例外")
+    void unknownSink() {
+        TaskProperties properties = new TaskProperties();
+        properties.getReminder().setSinks(List.of("sms"));
+
+        assertThrows(IllegalArgumentException.class, () -> new TaskReminderScheduler(
+                mock(TaskService.class), deadlineIndex, properties, List.of(sink), clock, Runnable::run));
+    }
+
+    private void put(Task task) {
+        tasks.put(task.getId(), task);
+        deadlineIndex.put(task);
+    }
+
+    /**
+     * 1分ずつ時刻を進めて刻みを処理する
+     */
+    private void advance(Duration duration) {
+        Instant until = clock.instant().plus(duration);
+        while (clock.instant().isBefore(until)) {
+            Instant next = clock.instant().plusSeconds(60);
+            clock.set(next.isAfter(until) ? until : next);
+            scheduler.tick();
+        }
+    }
+
+    private static Task task(int id, LocalDateTime deadline) {
+        Task task = new Task();
+        task.setId(id);
+        task.setUserId(1);
+        task.setTypeId(1);
+        task.setTitle("タスク" + id);
+        task.setDeadline(deadline);
+        return task;
+    }
+
+    private static class RecordingSink implements ReminderSink {
+
+        private final List<Integer> ids = new ArrayList<>();
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public void send(TaskReminder reminder) {
+            ids.add(reminder.getTask().getId());
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(LocalDateTime now) {
+            this.instant = now.toInstant(ZoneOffset.UTC);
+        }
+
+        void set(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.reminder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("タイミングホイールの単体テスト")
+class TimingWheelTest {
+
+    /** 刻み100ms、8枠（1周800ms） */
+    private TimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel(100, 8, 3, 0);
+    }
+
+    @Test
+    @DisplayName("発火時刻より前には発火せず、発火時刻以降の最初の刻みで発火する")
+    void fireOnTime() {
+        wheel.schedule(1, 250, 1250);
+
+        assertEquals(List.of(), ids(wheel.advance(299)));
+        List<TimingWheel.Expired> expired = wheel.advance(300);
+        assertEquals(List.of(1), ids(expired));
+        assertEquals(1250, expired.get(0).getDeadline());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("1周以上先のタイマーは同じ枠でも周回が来るまで発火しない")
+    void fireAfterRounds() {
+        // 100msと900msは同じ枠
+        wheel.schedule(1, 100, 0);
+        wheel.schedule(2, 900, 0);
+
+        assertEquals(List.of(1), ids(wheel.advance(100)));
+        assertEquals(List.of(), ids(wheel.advance(800)));
+        assertEquals(List.of(2), ids(wheel.advance(900)));
+    }
+
+    @Test
+    @DisplayName("同じidの登録は置き換え、取り消したタイマーは発火しない")
+    void rescheduleAndCancel() {
+        wheel.schedule(1, 200, 0);
+        wheel.schedule(1, 500, 0);
+        wheel.schedule(2, 300, 0);
+
+        assertTrue(wheel.cancel(2));
+        assertFalse(wheel.cancel(2));
+        assertEquals(List.of(), ids(wheel.advance(400)));
+        assertEquals(List.of(1), ids(wheel.advance(500)));
+    }
+
+    @Test
+    @DisplayName("1周以上遅れて進めた場合も期限の来た全てのタイマーが発火する")
+    void catchUp() {
+        wheel.schedule(1, 100, 0);
+        wheel.schedule(2, 1500, 0);
+        wheel.schedule(3, 5000, 0);
+
+        assertEquals(List.of(1, 2), ids(wheel.advance(3000)).stream().sorted().collect(Collectors.toList()));
+        assertEquals(List.of(3), ids(wheel.advance(5000)));
+    }
+
+    @Test
+    @DisplayName("過ぎた発火時刻は次の刻みで発火し、上限を超えた登録は断る")
+    void pastAndFull() {
+        wheel.advance(1000);
+        assertTrue(wheel.schedule(1, 0, 0));
+        assertTrue(wheel.schedule(2, 2000, 0));
+        assertTrue(wheel.schedule(3, 2000, 0));
+        assertFalse(wheel.schedule(4, 2000, 0));
+        // 置き換えは件数が増えないため上限でも受け付ける
+        assertTrue(wheel.schedule(3, 3000, 0));
+
+        assertEquals(List.of(1), ids(wheel.advance(1100)));
+    }
+
+    private static List<Integer> ids(List<TimingWheel.Expired> expired) {
+        return expired.stream().map(TimingWheel.Expired::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+/**
+ * DAOのSQLの実行計画のテスト
+ * 各DAOのSQL定数をH2のEXPLAINにかけ、テーブル全体の走査（tableScan）になっていないこと、
+ * ページングのSQLがインデックスの順序で読まれていること（index sorted）を確認する
+ * SQLを追加・変更した場合もこのテストで検出されるため、必要なインデックスをschema.sqlに追加すること
+ */
+@SpringJUnitConfig
+@SpringBootTest
+@ActiveProfiles("unit")
+@DisplayName("DAOのSQLの実行計画のテスト")
+class QueryPlanTest {
+
+	/** 完結したSQL文の定数名 部品（SELECT_SQL、AFTER_SQLなど）は対象外 */
+	private static final Pattern STATEMENT_NAME = Pattern.compile("(FIND|FOR_EACH|COUNT|INSERT|UPDATE|DELETE)(_.+)?_SQL");
+
+	/** アプリのテーブルの全件走査 INFORMATION_SCHEMAなどのメタデータは対象外 */
+	private static final Pattern TABLE_SCAN = Pattern.compile("PUBLIC\\.\\w+\\.tableScan");
+
+	/** 件数を絞るSQL（ページング） */
+	private static final Pattern LIMIT = Pattern.compile("\\bLIMIT\\b");
+
+	/** 全件取得・全件の集計が目的で、走査を避けられないSQL */
+	private static final Set<String> FULL_READ = Set.of("TaskDaoImpl.FIND_ALL_SQL", "TaskDaoImpl.COUNT_GROUPED_SQL");
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@TestFactory
+	@DisplayName("全件走査・全件の並び替えになるSQLが無いこと")
+	Stream<DynamicTest> noTableScan() throws IllegalAccessException {
+		List<DynamicTest> tests = new ArrayList<>();
+		for (Class<?> dao : List.of(TaskDaoImpl.class, UserDaoImpl.class, TaskTypeDaoImpl.class)) {
+			for (Field field : dao.getDeclaredFields()) {
+				String name = dao.getSimpleName() + "." + field.getName();
+				if (!isStatement(field) || FULL_READ.contains(name)) {
+					continue;
+				}
+				field.setAccessible(true);
+				String sql = (String) field.get(null);
+				tests.add(DynamicTest.dynamicTest(name, () -> {
+					String plan = explain(sql);
+					assertFalse(TABLE_SCAN.matcher(plan).find(), () -> name + "が全件走査になっています\n" + plan);
+
+					//ページングはインデックスの順序のまま読み、条件に合う全行の並び替えをしないこと
+					if (LIMIT.matcher(sql).find()) {
+						assertTrue(plan.contains("index sorted"), () -> name + "がインデックスの順序で読まれていません\n" + plan);
+					}
+				}));
+			}
+		}
+		assertFalse(tests.isEmpty());
+		return tests.stream();
+	}
+
+	private boolean isStatement(Field field) {
+		int modifiers = field.getModifiers();
+		return Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)
+				&& field.getType() == String.class
+				&& STATEMENT_NAME.matcher(field.getName()).matches();
+	}
+
+	/**
+	 * パラメータ（?）は未設定のままEXPLAINする
+	 */
+	private String explain(String sql) {
+		return jdbcTemplate.query(con -> con.prepareStatement("EXPLAIN " + sql), rs -> {
+			StringBuilder plan = new StringBuilder();
+			while (rs.next()) {
+				plan.append(rs.getString(1)).append('\n');
+			}
+			return plan.toString();
+		});
+	}
+}
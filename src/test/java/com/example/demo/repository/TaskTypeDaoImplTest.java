@@ -0,0 +1,75 @@
+package com.example.demo.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@SpringBootTest
+@ActiveProfiles("unit")
+class TaskTypeDaoImplTest {
+
+    @Autowired
+    private TaskTypeDao taskTypeDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM task_type WHERE id = 9");
+        taskTypeDao.refresh();
+    }
+
+    @Test
+    @DisplayName("findAllのテスト")
+    void findAll() {
+        var list = taskTypeDao.findAll();
+
+        // 件数とid順になっているか
+        assertEquals(3, list.size());
+        assertEquals(1, list.get(0).getId());
+        assertEquals("緊急", list.get(0).getType());
+        assertEquals("最優先で取り掛かるべきタスク", list.get(0).getComment());
+        assertEquals(3, list.get(2).getId());
+    }
+
+    @Test
+    @DisplayName("findByIdのテスト(同じインスタンスを共有しているか)")
+    void findById1() {
+        var type1 = taskTypeDao.findById(2).orElseThrow();
+        var type2 = taskTypeDao.findById(2).orElseThrow();
+
+        assertEquals("重要", type1.getType());
+        assertSame(type1, type2);
+    }
+
+    @Test
+    @DisplayName("findByIdのテスト(存在しないid)")
+    void findById2() {
+        assertTrue(taskTypeDao.findById(0).isEmpty());
+        assertTrue(taskTypeDao.findById(10).isEmpty());
+        assertTrue(taskTypeDao.findById(-1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("refreshのテスト")
+    void refresh() {
+        jdbcTemplate.update("INSERT INTO task_type VALUES(9, 'いつか', 'テスト用')");
+
+        // 読み直すまでは保持している内容を返す
+        assertTrue(taskTypeDao.findById(9).isEmpty());
+
+        taskTypeDao.refresh();
+
+        assertEquals("いつか", taskTypeDao.findById(9).orElseThrow().getType());
+        assertEquals(4, taskTypeDao.findAll().size());
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.User;
+import com.example.demo.service.UserDirectory;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +22,9 @@ class UserDaoImplTest {
     @Autowired
     private UserDaoImpl userDao;
 
+    @Autowired
+    private UserDirectory userDirectory;
+
     @Test
     @DisplayName("findAllのテスト")
     void findAll() {
@@ -193,4 +197,41 @@ class UserDaoImplTest {
         // 件数のチェック(全てのレコードが消えていない事を確認)
         assertEquals(4, list.size());
     }
+
+    @Test
+    @DisplayName("登録・更新・削除がUserDirectoryに反映されるか")
+    void directory() {
+        var user = new User();
+        user.setUsername("ユーザーY");
+        user.setEmail("usery@example.com");
+        user.setPassword("passy");
+        user.setEnabled(true);
+        user.setAuthorityId("ADMIN");
+        user.setTempkey("keyy");
+        userDao.insert(user);
+        // 登録時のインスタンスを後から変更しても一覧は変わらない
+        user.setUsername("changed");
+        assertEquals("ユーザーY", userDirectory.findById(user.getId()).get().getUsername());
+        assertTrue(userDirectory.hasAuthority(user.getId(), "ADMIN"));
+
+        user.setEnabled(false);
+        userDao.update(user);
+        assertFalse(userDirectory.isEnabled(user.getId()));
+
+        userDao.deleteById(user.getId());
+        assertTrue(userDirectory.findById(user.getId()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("該当するユーザーが無い更新・削除はUserDirectoryに反映しないか")
+    void directoryMissing() {
+        var user = new User();
+        user.setId(10);
+        user.setUsername("ユーザー10");
+        user.setAuthorityId("USER");
+        userDao.update(user);
+        userDao.deleteById(10);
+
+        assertTrue(userDirectory.findById(10).isEmpty());
+    }
 }
@@ -0,0 +1,195 @@
+package com.example.demo.routing;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDao;
+import com.example.demo.service.TaskCache;
+import com.example.demo.service.TaskService;
+import com.zaxxer.hikari.HikariDataSource;
+
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:routing-primary", "task.replica.enabled=true",
+        "task.replica.url=jdbc:h2:mem:routing-replica" })
+@AutoConfigureMockMvc
+@ActiveProfiles("unit")
+@DisplayName("レプリカへの読み分けのテスト")
+class ReplicaRoutingTest {
+
+    private static final String INSERT_SQL = "INSERT INTO task(id, user_id, type_id, title, detail, deadline) "
+            + "VALUES(?, 1, 2, ?, '詳細', ?)";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskDao taskDao;
+
+    @Autowired
+    private TaskCache taskCache;
+
+    @Test
+    @DisplayName("＠ReadReplicaのメソッドはレプリカから、それ以外はプライマリから読む")
+    void routesReadOnlyMethods() throws Exception {
+        JdbcTemplate replica = new JdbcTemplate(routing().getReplica());
+        replica.update(INSERT_SQL, 9001, "レプリカのみ", LocalDateTime.of(2099, 1, 1, 10, 0));
+        try {
+            assertTrue(titles(taskService.findByType(2)).contains("レプリカのみ"));
+            assertFalse(titles(taskDao.findByType(2)).contains("レプリカのみ"), "DAOを直接呼んだ場合はプライマリ");
+        } finally {
+            replica.update("DELETE FROM task WHERE id = ?", 9001);
+        }
+    }
+
+    @Test
+    @DisplayName("起動時に全行を複製し、登録・削除はコミット後にレプリカへ反映される")
+    void replicates() throws Exception {
+        JdbcTemplate replica = new JdbcTemplate(routing().getReplica());
+        assertEquals(2, replica.queryForObject("SELECT COUNT(*) FROM task", Integer.class));
+        assertEquals(4, replica.queryForObject("SELECT COUNT(*) FROM user", Integer.class));
+
+        Task task = new Task();
+        task.setUserId(1);
+        task.setTypeId(2);
+        task.setTitle("複製");
+        task.setDetail("詳細");
+        task.setDeadline(LocalDateTime.of(2099, 1, 1, 10, 0));
+        taskService.insert(task);
+        try {
+            assertEquals("複製", replica.queryForObject("SELECT title FROM task WHERE id = ?", String.class,
+                    task.getId()));
+        } finally {
+            taskService.deleteById(task.getId());
+        }
+        assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM task WHERE id = ?", Integer.class,
+                task.getId()));
+    }
+
+    @Test
+    @DisplayName("書き込んだセッションは以降のリクエストもプライマリから読む")
+    void readYourWrites() throws Exception {
+        JdbcTemplate primary = new JdbcTemplate(routing().getPrimary());
+        //プライマリのみの行で読み先を判定する（変更イベントを経ないためレプリカには反映されない）
+        primary.update(INSERT_SQL, 9002, "プライマリのみ", LocalDateTime.of(2099, 1, 1, 10, 0));
+        MockHttpSession session = new MockHttpSession();
+        String location = null;
+        try {
+            mockMvc.perform(get("/api/tasks").param("typeId", "2").session(session))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.tasks[*].id", not(hasItem(9002))));
+
+            location = mockMvc.perform(post("/api/tasks").session(session).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"typeId\":2,\"title\":\"書き込み\",\"detail\":\"詳細\",\"deadline\":\"2099-01-01T10:00\"}"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getHeader("Location");
+
+            mockMvc.perform(get("/api/tasks").param("typeId", "2").session(session))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.tasks[*].id", hasItem(9002)));
+            mockMvc.perform(get("/api/tasks").param("typeId", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.tasks[*].id", not(hasItem(9002))));
+        } finally {
+            primary.update("DELETE FROM task WHERE id = ?", 9002);
+            if (location != null) {
+                mockMvc.perform(delete(location));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("ETagを付ける一覧画面は、ETagの版数と同じプライマリから読む")
+    void etagPagesReadPrimary() throws Exception {
+        JdbcTemplate primary = new JdbcTemplate(routing().getPrimary());
+        primary.update(INSERT_SQL, 9003, "プライマリのみ", LocalDateTime.of(2099, 1, 1, 10, 0));
+        try {
+            for (MockHttpServletRequestBuilder page : List.of(get("/task"),
+                    get("/task/selectType").param("typeId", "2"))) {
+                MvcResult result = mockMvc.perform(page)
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+                mockMvc.perform(asyncDispatch(result))
+                        .andExpect(status().isOk())
+                        .andExpect(content().string(containsString("プライマリのみ")));
+            }
+            //ETagを付けないAPIはレプリカから読む
+            mockMvc.perform(get("/api/tasks").param("typeId", "2"))
+                    .andExpect(jsonPath("$.tasks[*].id", not(hasItem(9003))));
+        } finally {
+            primary.update("DELETE FROM task WHERE id = ?", 9003);
+        }
+    }
+
+    @Test
+    @DisplayName("レプリカから読んだ行はキャッシュに入れず、プライマリから読む場合に古い行を返さない")
+    void replicaReadsBypassCache() throws Exception {
+        JdbcTemplate primary = new JdbcTemplate(routing().getPrimary());
+        JdbcTemplate replica = new JdbcTemplate(routing().getReplica());
+        //変更イベントを経ないため、レプリカには遅れている行が残る
+        primary.update(INSERT_SQL, 9004, "プライマリの行", LocalDateTime.of(2099, 1, 1, 10, 0));
+        replica.update(INSERT_SQL, 9004, "レプリカの古い行", LocalDateTime.of(2099, 1, 1, 10, 0));
+        //テストのスレッドにはリクエストが設定されているため、他のテストの書き込みでstickyになっている場合がある
+        ReplicaRoute.restore(false);
+        try {
+            assertEquals("レプリカの古い行", taskService.getTask(9004).get().getTitle());
+
+            boolean previous = ReplicaRoute.stick();
+            try {
+                assertEquals("プライマリの行", taskService.getTask(9004).get().getTitle());
+            } finally {
+                ReplicaRoute.restore(previous);
+            }
+        } finally {
+            primary.update("DELETE FROM task WHERE id = ?", 9004);
+            replica.update("DELETE FROM task WHERE id = ?", 9004);
+            taskCache.invalidate(9004);
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    @DisplayName("レプリカに接続できない場合はプライマリから読む")
+    void fallsBackToPrimary() throws Exception {
+        ReplicaRoutingDataSource routing = routing();
+        ((HikariDataSource) routing.getReplica()).close();
+
+        assertEquals(List.of("JUnitを学習"), titles(taskService.findByType(1)));
+        assertFalse(routing.isReplicaAvailable());
+    }
+
+    private ReplicaRoutingDataSource routing() throws Exception {
+        return dataSource.unwrap(ReplicaRoutingDataSource.class);
+    }
+
+    private static List<String> titles(List<Task> tasks) {
+        return tasks.stream().map(Task::getTitle).collect(Collectors.toList());
+    }
+}
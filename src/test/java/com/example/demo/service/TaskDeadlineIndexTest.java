@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+
+@DisplayName("期限順のインデックスの単体テスト")
+class TaskDeadlineIndexTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    private TaskDeadlineIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // DBからの読み込みは使わない
+        index = new TaskDeadlineIndex(null, new TaskProperties());
+        index.put(task(1, 1, NOW.minusDays(2)));
+        index.put(task(2, 1, NOW.minusHours(1)));
+        index.put(task(3, 2, NOW.plusHours(1)));
+        index.put(task(4, 1, NOW.plusHours(3)));
+        index.put(task(5, 2, NOW.plusHours(3)));
+        index.put(task(6, 3, NOW.plusDays(3)));
+    }
+
+    @Test
+    @DisplayName("期限が指定時間以内のタスクを期限順に返す")
+    void findBetween() {
+        assertEquals(List.of(3, 4, 5), index.findBetween(NOW, NOW.plusHours(24), 10));
+        assertEquals(List.of(3, 4), index.findBetween(NOW, NOW.plusHours(24), 2));
+        // 終わりの日時ちょうどは含まない
+        assertEquals(List.of(3), index.findBetween(NOW, NOW.plusHours(3), 10));
+    }
+
+    @Test
+    @DisplayName("期限を過ぎたタスクを古い順に返す")
+    void findBefore() {
+        assertEquals(List.of(1, 2), index.findBefore(NOW, 10));
+    }
+
+    @Test
+    @DisplayName("タスクタイプごとに期限の近い順にk件返す")
+    void findFirstByType() {
+        Map<Integer, List<Integer>> result = index.findFirstByType(NOW, 1);
+
+        assertEquals(Map.of(1, List.of(4), 2, List.of(3), 3, List.of(6)), result);
+    }
+
+    @Test
+    @DisplayName("更新で期限とタスクタイプの位置を移し、削除で取り除く")
+    void updateAndRemove() {
+        index.onChanged(TaskChangedEvent.updated(task(1, 3, NOW.plusMinutes(30)), null));
+
+        assertEquals(List.of(2), index.findBefore(NOW, 10));
+        assertEquals(List.of(1, 3), index.findBetween(NOW, NOW.plusHours(2), 10));
+        assertEquals(List.of(1, 6), index.findFirstByType(NOW, 5).get(3));
+
+        index.onChanged(TaskChangedEvent.deleted(1, null));
+
+        assertEquals(List.of(3), index.findBetween(NOW, NOW.plusHours(2), 10));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    @DisplayName("前後して届いた古い版の更新と、削除の後に届いた更新は反映しない")
+    void outOfOrder() {
+        Task v1 = task(3, 2, NOW.plusHours(2));
+        v1.setVersion(1);
+        Task v2 = task(3, 2, NOW.plusHours(5));
+        v2.setVersion(2);
+
+        index.onChanged(TaskChangedEvent.updated(v2, v1));
+        index.onChanged(TaskChangedEvent.updated(v1, null));
+
+        assertEquals(List.of(4, 5, 3), index.findBetween(NOW, NOW.plusHours(24), 10));
+
+        Task v3 = task(3, 2, NOW.plusHours(1));
+        v3.setVersion(3);
+        index.onChanged(TaskChangedEvent.deleted(3, v2));
+        index.onChanged(TaskChangedEvent.updated(v3, v2));
+
+        assertEquals(List.of(4, 5), index.findBetween(NOW, NOW.plusHours(24), 10));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    @DisplayName("削除の印は一定期間の後に捨てる")
+    void purgeDeleted() {
+        index.onChanged(TaskChangedEvent.deleted(1, null));
+        index.onChanged(TaskChangedEvent.deleted(2, null));
+        assertEquals(6, index.tracked());
+
+        // 期間内は捨てない
+        index.purgeDeleted(System.nanoTime());
+        assertEquals(6, index.tracked());
+
+        index.purgeDeleted(System.nanoTime() + TimeUnit.MINUTES.toNanos(2));
+        assertEquals(4, index.tracked());
+        assertEquals(4, index.size());
+    }
+
+    private Task task(int id, int typeId, LocalDateTime deadline) {
+        Task task = new Task();
+        task.setId(id);
+        task.setTypeId(typeId);
+        task.setDeadline(deadline);
+        return task;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskDao;
+
+//複数のスレッドがそれぞれコミットするため、@Transactional（ロールバック）は使わずに削除する
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:optimistic")
+@ActiveProfiles("unit")
+@DisplayName("タスク更新の楽観的排他制御のテスト")
+class TaskOptimisticLockTest {
+
+    private static final int THREADS = 8;
+
+    private static final int INCREMENTS = 50;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskDao taskDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("読み込んだ後に他で更新されたタスクは更新せずに競合の例外")
+    void conflict() {
+        Task task = insert("0");
+        try {
+            Task first = taskDao.findById(task.getId()).get();
+            Task second = taskDao.findById(task.getId()).get();
+
+            first.setTitle("先に更新");
+            taskService.update(first);
+            assertEquals(1, first.getVersion());
+
+            second.setTitle("後から更新");
+            assertThrows(TaskConflictException.class, () -> taskService.update(second));
+            assertEquals(0, second.getVersion());
+
+            Task actual = taskService.getTask(task.getId()).get();
+            assertEquals("先に更新", actual.getTitle());
+            assertEquals(1, actual.getVersion());
+        } finally {
+            taskService.deleteById(task.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("一括更新で版数の異なるタスクは更新せず、他のタスクの更新は確定させて競合の例外となる")
+    void conflictInUpdateAll() {
+        Task task = insert("0");
+        Task other = insert("0");
+        try {
+            Task stale = taskDao.findById(task.getId()).get();
+            Task current = taskDao.findById(task.getId()).get();
+            current.setTitle("先に更新");
+            taskService.update(current);
+
+            stale.setTitle("一括更新");
+            Task fresh = taskDao.findById(other.getId()).get();
+            fresh.setTitle("一括更新");
+            assertThrows(TaskConflictException.class, () -> taskService.updateAll(List.of(stale, fresh)));
+            assertEquals("先に更新", taskDao.findById(task.getId()).get().getTitle());
+            assertEquals("一括更新", taskDao.findById(other.getId()).get().getTitle());
+            assertEquals(1, taskService.getTask(other.getId()).get().getVersion());
+        } finally {
+            taskService.deleteById(task.getId());
+            taskService.deleteById(other.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("同じタスクを同時に読み込んで更新しても、更新が失われない")
+    void noLostUpdates() throws Exception {
+        Task task = insert("0");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger conflicts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < INCREMENTS; n++) {
+                        //競合した場合は読み込みからやり直す（read-modify-write）
+                        //キャッシュのインスタンスは共有されているため、変更用にはDBから読み込む
+                        while (true) {
+                            Task current = taskDao.findById(task.getId()).get();
+                            current.setTitle(String.valueOf(Integer.parseInt(current.getTitle()) + 1));
+                            try {
+                                taskService.update(current);
+                                break;
+                            } catch (TaskConflictException e) {
+                                conflicts.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                //競合以外の例外（ロック待ちの時間切れなど）はここで失敗する
+                future.get();
+            }
+
+            int total = THREADS * INCREMENTS;
+            Task actual = taskDao.findById(task.getId()).get();
+            assertEquals(String.valueOf(total), actual.getTitle(), "競合 " + conflicts.get() + "回");
+            assertEquals(total, actual.getVersion());
+            assertEquals(total, jdbcTemplate.queryForObject("SELECT version FROM task WHERE id = ?", Integer.class,
+                    task.getId()));
+        } finally {
+            executor.shutdown();
+            taskService.deleteById(task.getId());
+        }
+    }
+
+    private Task insert(String title) {
+        Task task = new Task();
+        task.setUserId(1);
+        task.setTypeId(2);
+        task.setTitle(title);
+        task.setDetail("楽観的排他制御");
+        task.setDeadline(LocalDateTime.of(2099, 1, 1, 10, 0));
+        taskService.insert(task);
+        return task;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+
+@DisplayName("全文検索のインデックスの単体テスト")
+class TaskSearchIndexTest {
+
+    private TaskSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // DBからの読み込みは使わない
+        index = new TaskSearchIndex(null, new TaskProperties());
+        index.add(task(1, "JUnitを学習", "テストの仕方を学習する"));
+        index.add(task(2, "サービスの自作", "マイクロサービスを作ってみる"));
+        index.add(task(3, "テスト計画", "結合テストの観点を洗い出す"));
+    }
+
+    @Test
+    @DisplayName("2文字の並びで日本語を検索できる")
+    void searchJapanese() {
+        assertArrayEquals(new int[] { 2 }, index.search("サービス", 10));
+        assertArrayEquals(new int[] { 1 }, index.search("学習", 10));
+    }
+
+    @Test
+    @DisplayName("タイトルに含むタスクを詳細に含むタスクより上位にする")
+    void titleRanksHigher() {
+        assertArrayEquals(new int[] { 3, 1 }, index.search("テスト", 10));
+        assertArrayEquals(new int[] { 3 }, index.search("テスト", 1));
+    }
+
+    @Test
+    @DisplayName("全角・大文字を正規化し、空白区切りの全ての語を含むものを返す")
+    void normalizeAndAllTerms() {
+        assertArrayEquals(new int[] { 1 }, index.search("ｊｕｎｉｔ", 10));
+        assertArrayEquals(new int[] { 1 }, index.search("テスト　学習", 10));
+        assertArrayEquals(new int[0], index.search("テスト 自作", 10));
+    }
+
+    @Test
+    @DisplayName("1文字の語だけの場合は0件")
+    void singleCharacter() {
+        assertArrayEquals(new int[0], index.search("学", 10));
+    }
+
+    @Test
+    @DisplayName("更新・削除のイベントで差分を反映する")
+    void incremental() {
+        Task previous = task(2, "サービスの自作", "マイクロサービスを作ってみる");
+        index.onChanged(TaskChangedEvent.updated(task(2, "アプリの自作", "画面を作ってみる"), previous));
+
+        assertArrayEquals(new int[0], index.search("サービス", 10));
+        assertArrayEquals(new int[] { 2 }, index.search("アプリ", 10));
+        assertEquals(3, index.size());
+
+        index.onChanged(TaskChangedEvent.deleted(1, task(1, "JUnitを学習", "テストの仕方を学習する")));
+
+        assertArrayEquals(new int[] { 3 }, index.search("テスト", 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    @DisplayName("読み込み済みのタスクの登録イベントは重複して登録しない")
+    void idempotentInsert() {
+        index.onChanged(TaskChangedEvent.inserted(task(3, "テスト計画", "結合テストの観点を洗い出す")));
+
+        assertArrayEquals(new int[] { 3, 1 }, index.search("テスト", 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    @DisplayName("前後して届いた古い版の更新と、削除の後に届いた更新は反映しない")
+    void outOfOrder() {
+        Task v0 = task(2, "サービスの自作", "マイクロサービスを作ってみる");
+        Task v1 = task(2, "アプリの自作", "画面を作ってみる");
+        v1.setVersion(1);
+        Task v2 = task(2, "サービスの設計", "画面を設計する");
+        v2.setVersion(2);
+
+        //v1→v2の更新がv0→v1より先に届く
+        index.onChanged(TaskChangedEvent.updated(v2, v1));
+        index.onChanged(TaskChangedEvent.updated(v1, v0));
+
+        assertArrayEquals(new int[] { 2 }, index.search("設計", 10));
+        assertArrayEquals(new int[] { 2 }, index.search("サービス", 10));
+        assertArrayEquals(new int[0], index.search("アプリ", 10));
+        assertArrayEquals(new int[0], index.search("自作", 10));
+        assertEquals(3, index.size());
+
+        Task v3 = task(2, "削除の後の更新", "詳細");
+        v3.setVersion(3);
+        index.onChanged(TaskChangedEvent.deleted(2, v2));
+        index.onChanged(TaskChangedEvent.updated(v3, v2));
+
+        assertArrayEquals(new int[0], index.search("削除", 10));
+        assertArrayEquals(new int[0], index.search("設計", 10));
+        assertEquals(2, index.size());
+    }
+
+    private Task task(int id, String title, String detail) {
+        Task task = new Task();
+        task.setId(id);
+        task.setTitle(title);
+        task.setDetail(detail);
+        return task;
+    }
+}
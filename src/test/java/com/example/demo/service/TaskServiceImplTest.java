@@ -2,6 +2,8 @@ package com.example.demo.service;
 
 import static org.junit.jupiter.api.Assertions.*; // Nakano to Junit5
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,6 +13,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.demo.entity.Task;
 
@@ -23,6 +27,9 @@ class TaskServiceImplTest {
     @Autowired
     private TaskService taskService;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Test
     @DisplayName("タスクが取得できない場合のテスト")
     void testGetTaskFormReturnNull() {
@@ -54,4 +61,94 @@ class TaskServiceImplTest {
       //取得できたことを確認
         assertEquals("JUnitを学習", taskOpt.get().getTitle());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("キーセットページングのテスト")
+    void testFindPage() {
+        //1件ずつページングして先頭ページを取得
+        TaskPage first = taskService.findPage(null, 1);
+        assertEquals(1, first.getList().size());
+        assertEquals("JUnitを学習", first.getList().get(0).getTitle());
+        assertNull(first.getPrev());
+        assertNotNull(first.getNext());
+
+        //次ページ（最終ページ）
+        TaskPage second = taskService.findPage(first.getNext(), 1);
+        assertEquals("サービスの自作", second.getList().get(0).getTitle());
+        assertNotNull(second.getPrev());
+        assertNull(second.getNext());
+
+        //前ページに戻ると先頭ページと同じ内容になるか
+        TaskPage back = taskService.findPage(second.getPrev(), 1);
+        assertEquals(first.getList().get(0).getId(), back.getList().get(0).getId());
+        assertNull(back.getPrev());
+        assertNotNull(back.getNext());
+    }
+
+    @Test
+    @DisplayName("タスクタイプで絞り込んだページングのテスト")
+    void testFindPageByType() {
+        TaskPage page = taskService.findPageByType(3, null, 20);
+
+        //type_idが3のタスクは1件
+        assertEquals(1, page.getList().size());
+        assertEquals(1, page.getTotal());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    @Transactional //テスト終了後にロールバック
+    @DisplayName("一括登録・一括更新のテスト")
+    void testInsertAllAndUpdateAll() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Task task = new Task();
+            task.setUserId(1);
+            task.setTypeId(2);
+            task.setTitle("一括" + i);
+            task.setDetail("一括登録のテスト");
+            task.setDeadline(LocalDateTime.of(2030, 1, 1, 9, 0).plusDays(i));
+            tasks.add(task);
+        }
+        taskService.insertAll(tasks);
+
+        //採番されたidが設定されているか
+        assertTrue(tasks.stream().allMatch(t -> t.getId() > 0));
+        assertEquals(7, taskService.findAll().size());
+
+        tasks.forEach(t -> t.setTitle(t.getTitle() + "(更新)"));
+        taskService.updateAll(tasks);
+        assertEquals("一括3(更新)", taskService.getTask(tasks.get(3).getId()).get().getTitle());
+    }
+
+    @Test
+    @Transactional
+    @DisplayName("一括更新で存在しないタスクが含まれる場合のテスト")
+    void testUpdateAllThrowException() {
+        Task task = new Task();
+        task.setId(0);
+        task.setTypeId(1);
+        task.setTitle("存在しない");
+        task.setDeadline(LocalDateTime.of(2030, 1, 1, 9, 0));
+
+        assertThrows(TaskNotFoundException.class, () -> taskService.updateAll(List.of(task)));
+    }
+
+    @Test
+    @DisplayName("ロールバックされた登録がキャッシュに残らないことのテスト")
+    void testInsertRolledBack() {
+        Task task = new Task();
+        task.setUserId(1);
+        task.setTypeId(1);
+        task.setTitle("ロールバック");
+        task.setDeadline(LocalDateTime.of(2030, 1, 1, 9, 0));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            taskService.insert(task);
+            status.setRollbackOnly();
+        });
+
+        assertTrue(task.getId() > 0);
+        assertThrows(TaskNotFoundException.class, () -> taskService.getTask(task.getId()));
+    }
+}
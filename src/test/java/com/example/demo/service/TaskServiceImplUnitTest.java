@@ -6,17 +6,26 @@ import static org.mockito.Mockito.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.demo.config.TaskProperties;
 import com.example.demo.entity.Task;
 import com.example.demo.repository.TaskDao;
+import com.example.demo.repository.TaskTypeDao;
 @ExtendWith(MockitoExtension.class)
 @DisplayName("TaskServiceImplの単体テスト")
 class TaskServiceImplUnitTest {
@@ -24,6 +33,21 @@ class TaskServiceImplUnitTest {
     @Mock // モック(stub)クラス ダミーオブジェクト
     private TaskDao dao;
 
+    @Mock
+    private TaskTypeDao taskTypeDao;
+
+    @Spy // 1件取得のキャッシュは実物を使う
+    private TaskCache taskCache = new TaskCache(new TaskProperties());
+
+    @Spy // トランザクションは何もしないトランザクションマネージャで実行する
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock // まとめ書きは無効（submitがnullを返し、呼び出し元のスレッドで登録する）
+    private TaskWriteBehind writeBehind;
+
     @InjectMocks // テスト対象クラス　モックを探す newする
     private TaskServiceImpl taskServiceImpl;
 
@@ -125,4 +149,120 @@ class TaskServiceImplUnitTest {
         	assertEquals(e.getMessage(), "削除するタスクが存在しません");
         }
     }
+
+    @Test
+    @DisplayName("2回目の1件取得はキャッシュから返すことを確認するテスト")
+    void testGetTaskFromCache() {
+
+        when(dao.findById(1)).thenReturn(Optional.of(new Task()));
+
+        taskServiceImpl.getTask(1);
+        taskServiceImpl.getTask(1);
+
+        // DBへの問い合わせは1回のみ
+        verify(dao, times(1)).findById(1);
+        assertEquals(1, taskCache.stats().hitCount());
+        assertEquals(1, taskCache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("存在しないidもキャッシュし、2回目も例外が発生することを確認するテスト")
+    void testGetTaskNegativeCache() {
+
+        when(dao.findById(0)).thenThrow(new EmptyResultDataAccessException(1));
+
+        assertThrows(TaskNotFoundException.class, () -> taskServiceImpl.getTask(0));
+        assertThrows(TaskNotFoundException.class, () -> taskServiceImpl.getTask(0));
+
+        verify(dao, times(1)).findById(0);
+    }
+
+    @Test
+    @DisplayName("更新・削除でキャッシュが破棄されることを確認するテスト")
+    void testUpdateAndDeleteInvalidateCache() {
+
+        Task task = new Task();
+        task.setId(1);
+        when(dao.findById(1)).thenReturn(Optional.of(task));
+        when(dao.update(task)).thenReturn(1);
+        when(dao.deleteById(1)).thenReturn(1);
+
+        taskServiceImpl.getTask(1);
+        taskServiceImpl.update(task);
+        taskServiceImpl.getTask(1);
+        taskServiceImpl.deleteById(1);
+        taskServiceImpl.getTask(1);
+
+        // 更新・削除のたびにDBから読み直す（更新前・削除前の行の読み込みはキャッシュを使わない）
+        verify(dao, times(5)).findById(1);
+    }
+
+    @Test
+    @DisplayName("更新は行ロックを取らず、版数が異なる場合は更新せずに競合の例外となることを確認するテスト")
+    void testUpdateWithoutLock() {
+
+        Task stored = new Task();
+        stored.setId(1);
+        stored.setVersion(3);
+        when(dao.findById(1)).thenReturn(Optional.of(stored));
+
+        Task stale = new Task();
+        stale.setId(1);
+        stale.setVersion(2);
+        assertThrows(TaskConflictException.class, () -> taskServiceImpl.update(stale));
+        verify(dao, never()).update(any());
+
+        Task current = new Task();
+        current.setId(1);
+        current.setVersion(3);
+        when(dao.update(current)).thenReturn(1);
+        taskServiceImpl.update(current);
+
+        verify(transactionTemplate, never()).execute(any());
+        verify(eventPublisher, times(1)).publishEvent(any(TaskChangedEvent.class));
+    }
+
+    @Test
+    @DisplayName("登録したタスクはDBに問い合わせずに取得できることを確認するテスト")
+    void testInsertPopulatesCache() {
+
+        Task task = new Task();
+        doAnswer(invocation -> {
+            task.setId(10);
+            return null;
+        }).when(dao).insert(task);
+
+        taskServiceImpl.insert(task);
+        Optional<Task> actual = taskServiceImpl.getTask(10);
+
+        verify(dao, never()).findById(anyInt());
+        assertEquals(10, actual.get().getId());
+    }
+
+    @Test
+    @DisplayName("同じidを同時に取得してもDBへの問い合わせは1回であることを確認するテスト")
+    void testGetTaskConcurrently() throws Exception {
+
+        when(dao.findById(1)).thenAnswer(invocation -> {
+            // 読み込み中に他のスレッドが到着するよう少し待つ
+            Thread.sleep(50);
+            return Optional.of(new Task());
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<Task>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> taskServiceImpl.getTask(1)));
+            }
+            Task first = futures.get(0).get().get();
+            for (Future<Optional<Task>> future : futures) {
+                assertSame(first, future.get().get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(dao, times(1)).findById(1);
+    }
 }
@@ -0,0 +1,183 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+import com.example.demo.repository.TaskCount;
+import com.example.demo.repository.TaskDao;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+//件数はコミット後に反映されるため、@Transactional（ロールバック）は使わずに削除する
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:stats", "task.stats.reconcile-interval=0" })
+@ActiveProfiles("unit")
+@DisplayName("タスクの件数の統計のテスト")
+class TaskStatsTest {
+
+    @Autowired
+    private TaskStats taskStats;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    @DisplayName("起動時にタスクタイプごと・ユーザーごとの件数と期限を過ぎた件数を集計する")
+    void load() {
+        TaskStats.Snapshot stats = taskStats.snapshot();
+
+        assertEquals(2, stats.getTotal());
+        assertEquals(2, stats.getOverdue());
+        assertEquals(Map.of(1, 1L, 3, 1L), stats.getByType());
+        assertEquals(Map.of(1, 2L), stats.getByUser());
+    }
+
+    @Test
+    @DisplayName("登録・更新・削除の差分で増減し、GROUP BYの結果と一致する")
+    void applyChanges() {
+        Task task = new Task();
+        task.setUserId(3);
+        task.setTypeId(2);
+        task.setTitle("件数");
+        task.setDetail("詳細");
+        task.setDeadline(LocalDateTime.now().plusDays(1));
+        taskService.insert(task);
+        try {
+            TaskStats.Snapshot stats = taskStats.snapshot();
+            assertEquals(3, stats.getTotal());
+            assertEquals(2, stats.getOverdue());
+            assertEquals(Map.of(1, 1L, 2, 1L, 3, 1L), stats.getByType());
+            assertEquals(Map.of(1, 2L, 3, 1L), stats.getByUser());
+
+            //タスクタイプを変え、期限を過去にする
+            task.setTypeId(1);
+            task.setDeadline(LocalDateTime.of(2020, 1, 1, 0, 0));
+            taskService.update(task);
+            stats = taskStats.snapshot();
+            assertEquals(3, stats.getOverdue());
+            assertEquals(Map.of(1, 2L, 3, 1L), stats.getByType());
+            assertFalse(taskStats.reconcile(), "GROUP BYの結果と一致する");
+        } finally {
+            taskService.deleteById(task.getId());
+        }
+        assertEquals(Map.of(1, 1L, 3, 1L), taskStats.snapshot().getByType());
+        assertEquals(2, taskStats.snapshot().getOverdue());
+        assertFalse(taskStats.reconcile());
+    }
+
+    @Test
+    @DisplayName("TaskServiceを経ずに変更した行は突き合わせで集計結果に置き換える")
+    void reconcile() {
+        double corrected = registry.get("todo.stats.corrected").counter().count();
+        jdbcTemplate.update("INSERT INTO task(id, user_id, type_id, title, detail, deadline) "
+                + "VALUES(9101, 4, 2, '直接登録', '詳細', '2099-01-01 10:00:00')");
+        try {
+            assertEquals(2, taskStats.snapshot().getTotal());
+
+            assertTrue(taskStats.reconcile());
+            TaskStats.Snapshot stats = taskStats.snapshot();
+            assertEquals(3, stats.getTotal());
+            assertEquals(Map.of(1, 2L, 4, 1L), stats.getByUser());
+            assertEquals(corrected + 1, registry.get("todo.stats.corrected").counter().count());
+        } finally {
+            jdbcTemplate.update("DELETE FROM task WHERE id = 9101");
+            taskStats.reconcile();
+        }
+        assertEquals(2, taskStats.snapshot().getTotal());
+    }
+
+    @Test
+    @DisplayName("期限を過ぎたタスクの件数は時刻が進むと増え、集計し直さない")
+    void overdueAdvances() {
+        LocalDateTime now = LocalDateTime.of(2030, 1, 1, 12, 0);
+        MutableClock clock = new MutableClock(now);
+        TaskDao dao = mock(TaskDao.class);
+        doAnswer(invocation -> {
+            Consumer<TaskCount> action = invocation.getArgument(1);
+            action.accept(new TaskCount(1, 1, null, 2));
+            action.accept(new TaskCount(1, 1, now.plusHours(1), 1));
+            action.accept(new TaskCount(2, 1, now.plusHours(2), 3));
+            return null;
+        }).when(dao).forEachCount(any(), any());
+        TaskStats stats = new TaskStats(dao, new TaskProperties(), new SimpleMeterRegistry(), clock);
+        stats.afterSingletonsInstantiated();
+
+        assertEquals(2, stats.getOverdue());
+        clock.set(now.plusHours(1));
+        assertEquals(2, stats.getOverdue(), "期限ちょうどはまだ期限切れではない");
+        clock.set(now.plusHours(1).plusMinutes(1));
+        assertEquals(3, stats.getOverdue());
+        clock.set(now.plusHours(3));
+        assertEquals(6, stats.getOverdue());
+
+        //期限を過ぎたタスクの削除と、期限が先のタスクの登録
+        Task overdue = task(2, 1, now.plusHours(2));
+        stats.onChanged(TaskChangedEvent.deleted(1, overdue));
+        stats.onChanged(TaskChangedEvent.inserted(task(2, 1, now.plusHours(4))));
+        assertEquals(5, stats.getOverdue());
+        assertEquals(6, stats.getTotal());
+        clock.set(now.plusHours(5));
+        assertEquals(6, stats.getOverdue());
+        verify(dao, times(1)).forEachCount(any(), any());
+        stats.destroy();
+    }
+
+    private static Task task(int typeId, int userId, LocalDateTime deadline) {
+        Task task = new Task();
+        task.setTypeId(typeId);
+        task.setUserId(userId);
+        task.setDeadline(deadline);
+        return task;
+    }
+
+    private static class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        MutableClock(LocalDateTime now) {
+            set(now);
+        }
+
+        void set(LocalDateTime now) {
+            instant = now.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.demo.config.TaskProperties;
+import com.example.demo.entity.Task;
+
+//別スレッドのトランザクションで登録するため、@Transactional（ロールバック）は使わずに削除する
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:write-behind",
+        "task.write-behind.enabled=true",
+        "task.write-behind.batch-size=10",
+        "task.write-behind.linger=20ms" })
+@ActiveProfiles("unit")
+@DisplayName("登録のまとめ書きのテスト")
+class TaskWriteBehindTest {
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskDeadlineIndex deadlineIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TaskProperties properties;
+
+    @Test
+    @DisplayName("同時に登録したタスクをまとめて登録し、全てにidを設定してインデックスにも反映する")
+    void insertConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Task> tasks = new ArrayList<>();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                Task task = task("まとめ書き" + i);
+                tasks.add(task);
+                futures.add(executor.submit(() -> taskService.insert(task)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertTrue(tasks.stream().allMatch(task -> task.getId() > 0));
+            assertEquals(40, tasks.stream().mapToInt(Task::getId).distinct().count());
+            assertEquals(40, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM task WHERE title LIKE 'まとめ書き%'", Integer.class));
+            assertEquals("まとめ書き0", taskService.getTask(tasks.get(0).getId()).get().getTitle());
+            assertEquals(42, deadlineIndex.size());
+        } finally {
+            executor.shutdown();
+            deleteInserted();
+        }
+    }
+
+    @Test
+    @DisplayName("まとめた中の1件が失敗しても、他のタスクは登録する")
+    void insertWithError() {
+        try {
+            CompletableFuture<Task> ok = taskService.insertAsync(task("まとめ書き成功"));
+            CompletableFuture<Task> ng = taskService.insertAsync(task(null));
+
+            assertTrue(ok.join().getId() > 0);
+            CompletionException e = assertThrows(CompletionException.class, ng::join);
+            assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+            assertThrows(DataIntegrityViolationException.class, () -> taskService.insert(task(null)));
+        } finally {
+            deleteInserted();
+        }
+    }
+
+    @Test
+    @DisplayName("登録後の処理と続く処理は、書き込み用のスレッドで実行しない")
+    void completeOffWriterThread() {
+        try {
+            String thread = taskService.insertAsync(task("まとめ書きスレッド"))
+                    .thenApply(task -> Thread.currentThread().getName())
+                    .join();
+
+            assertNotEquals("task-writer", thread);
+        } finally {
+            deleteInserted();
+        }
+    }
+
+    @Test
+    @DisplayName("コミットを待ちきれずに例外となった登録も、後でコミットされたら登録後の処理を行う")
+    void timeout() throws Exception {
+        Duration timeout = properties.getWriteBehind().getTimeout();
+        //lingerの20ms待つ間に時間切れにする
+        properties.getWriteBehind().setTimeout(Duration.ofMillis(1));
+        try {
+            Task task = task("まとめ書き時間切れ");
+            assertThrows(QueryTimeoutException.class, () -> taskService.insert(task));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (deadlineIndex.size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, deadlineIndex.size());
+            assertEquals(List.of(task.getId()), taskService.search("時間切れ", 10).stream()
+                    .map(Task::getId).collect(Collectors.toList()));
+        } finally {
+            properties.getWriteBehind().setTimeout(timeout);
+            deleteInserted();
+        }
+    }
+
+    private void deleteInserted() {
+        for (int id : jdbcTemplate.queryForList("SELECT id FROM task WHERE id > 2", Integer.class)) {
+            taskService.deleteById(id);
+        }
+    }
+
+    private static Task task(String title) {
+        Task task = new Task();
+        task.setUserId(1);
+        task.setTypeId(2);
+        task.setTitle(title);
+        task.setDetail("詳細");
+        task.setDeadline(LocalDateTime.of(2099, 1, 1, 10, 0));
+        return task;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserChangedEvent;
+import com.example.demo.repository.UserDao;
+
+@DisplayName("ユーザーの一覧（メモリ上）の単体テスト")
+class UserDirectoryTest {
+
+    private UserDao dao;
+
+    private UserDirectory directory;
+
+    @BeforeEach
+    void setUp() {
+        dao = mock(UserDao.class);
+        when(dao.findAll()).thenReturn(List.of(
+                user(1, true, "USER"),
+                user(2, false, "USER"),
+                user(3, true, "USER"),
+                user(4, true, "ADMIN")));
+        directory = new UserDirectory(dao);
+        directory.afterSingletonsInstantiated();
+    }
+
+    @Test
+    @DisplayName("取得と一覧をDBに問い合わせずに返す")
+    void find() {
+        assertEquals("user3", directory.findById(3).get().getUsername());
+        assertTrue(directory.findById(10).isEmpty());
+        assertTrue(directory.findById(-1).isEmpty());
+        assertEquals(List.of(1, 3, 4), ids(directory.findActiveUsers()));
+        assertEquals(List.of(1, 2, 3, 4), ids(directory.findAll()));
+        assertEquals(List.of(4), ids(directory.findByAuthority("ADMIN")));
+        assertTrue(directory.isEnabled(1));
+        assertFalse(directory.isEnabled(2));
+        assertFalse(directory.isEnabled(10));
+        assertTrue(directory.hasAuthority(4, "ADMIN"));
+        assertFalse(directory.hasAuthority(1, "ADMIN"));
+        assertEquals(3, directory.countActive());
+
+        verify(dao, times(1)).findAll();
+        verifyNoMoreInteractions(dao);
+    }
+
+    @Test
+    @DisplayName("登録・更新・削除のイベントを反映する")
+    void onChanged() {
+        directory.onChanged(UserChangedEvent.saved(user(100, true, "ADMIN")));
+        directory.onChanged(UserChangedEvent.saved(user(1, false, "ADMIN")));
+        directory.onChanged(UserChangedEvent.deleted(4));
+
+        assertEquals("user100", directory.findById(100).get().getUsername());
+        assertEquals(List.of(3, 100), ids(directory.findActiveUsers()));
+        assertEquals(List.of(1, 100), ids(directory.findByAuthority("ADMIN")));
+        assertEquals(List.of(2, 3), ids(directory.findByAuthority("USER")));
+        assertTrue(directory.findById(4).isEmpty());
+        assertFalse(directory.hasAuthority(4, "ADMIN"));
+        verify(dao, times(1)).findAll();
+        verifyNoMoreInteractions(dao);
+    }
+
+    private static List<Integer> ids(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    private static User user(int id, boolean enabled, String authorityId) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setPassword("pass" + id);
+        user.setEnabled(enabled);
+        user.setAuthorityId(authorityId);
+        return user;
+    }
+}
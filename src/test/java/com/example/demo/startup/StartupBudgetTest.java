@@ -0,0 +1,117 @@
+package com.example.demo.startup;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.server.Ssl;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.WebToDoApplication;
+import com.example.demo.service.TaskStats;
+
+@DisplayName("起動時間の記録と、Beanの生成を遅延させた起動のテスト")
+class StartupBudgetTest {
+
+    /** run()の開始から起動の完了まで（準備の実行を含む）の上限 遅い環境でも通るよう余裕を持たせる */
+    private static final Duration BUDGET = Duration.ofSeconds(15);
+
+    @Test
+    @DisplayName("lazyプロファイルでは起動の完了前に一覧画面まで準備し、それ以外のBeanは生成せずに上限内で起動する")
+    void lazyStartupWithinBudget() throws Exception {
+        int eagerBeans;
+        try (ConfigurableApplicationContext context = start("eager")) {
+            StartupTimeline timeline = context.getBean(StartupTimeline.class);
+            assertTrue(timeline.isReady());
+            assertTrue(timeline.getTotal().compareTo(BUDGET) <= 0, "起動に" + timeline.getTotal().toMillis() + "ms");
+            eagerBeans = timeline.getBeanCount();
+        }
+
+        try (ConfigurableApplicationContext context = start("lazy", "lazy")) {
+            StartupTimeline timeline = context.getBean(StartupTimeline.class);
+            assertTrue(timeline.getTotal().compareTo(BUDGET) <= 0, "起動に" + timeline.getTotal().toMillis() + "ms");
+            assertTrue(timeline.getBeanCount() < eagerBeans,
+                    "遅延させた起動で生成したBean " + timeline.getBeanCount() + "件 / " + eagerBeans + "件");
+
+            //一覧画面とDAOは準備で生成済み、起動時に読み込むBeanは遅延させない
+            assertTrue(context.getBeanFactory().containsSingleton("taskController"));
+            assertTrue(context.getBeanFactory().containsSingleton("taskDaoImpl"));
+            assertEquals(2, context.getBean(TaskStats.class).getTotal());
+            //使われていないBeanは生成しない
+            assertFalse(context.getBeanFactory().containsSingleton("taskEventStream"));
+        }
+    }
+
+    @Test
+    @DisplayName("起動の段階ごとの時間とBeanごとの時間を/actuator/startupで返す")
+    void endpoint() throws Exception {
+        try (ConfigurableApplicationContext context = start("endpoint")) {
+            StartupTimeline timeline = context.getBean(StartupTimeline.class);
+            List<String> phases = timeline.getPhases().stream().map(StartupTimeline.Phase::getName)
+                    .collect(Collectors.toList());
+            assertEquals(List.of("environment", "context.prepare", "context.load", "context.refresh", "warm-up",
+                    "runners"), phases);
+            for (StartupTimeline.BeanTiming bean : timeline.getSlowestBeans(Integer.MAX_VALUE)) {
+                assertTrue(bean.getSelf().compareTo(bean.getTotal()) <= 0, bean.getName());
+            }
+            assertTrue(timeline.getSlowestBeans(Integer.MAX_VALUE).stream()
+                    .anyMatch(bean -> bean.getName().equals("taskDaoImpl")));
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/startup?top=3")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            String body = response.body();
+            assertTrue(body.contains("\"ready\":true"), body);
+            assertTrue(body.contains("\"lazyInitialization\":false"), body);
+            assertTrue(body.contains("\"name\":\"warm-up\""), body);
+            assertEquals(3, count(body, "\"self\":"), "top件のBeanのみ返す");
+        }
+    }
+
+    @Test
+    @DisplayName("起動時の準備で表示する一覧画面のURIは、SSLの有無と待ち受けるアドレスに合わせる")
+    void warmUpUri() throws Exception {
+        assertEquals(URI.create("http://localhost:8080/task"), StartupWarmer.indexUri(null, 8080, ""));
+
+        ServerProperties server = new ServerProperties();
+        server.setAddress(InetAddress.getByName("0.0.0.0"));
+        assertEquals(URI.create("http://localhost:8080/app/task"), StartupWarmer.indexUri(server, 8080, "/app"));
+
+        server.setAddress(InetAddress.getByName("127.0.0.2"));
+        server.setSsl(new Ssl());
+        server.getSsl().setEnabled(true);
+        assertEquals(URI.create("https://127.0.0.2:8443/task"), StartupWarmer.indexUri(server, 8443, ""));
+
+        server.setAddress(InetAddress.getByName("::1"));
+        assertEquals(URI.create("https://[0:0:0:0:0:0:0:1]:8443/task"), StartupWarmer.indexUri(server, 8443, ""));
+    }
+
+    private ConfigurableApplicationContext start(String database, String... profiles) {
+        return new SpringApplicationBuilder(WebToDoApplication.class)
+                .profiles(profiles)
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run("--server.port=0", "--spring.datasource.url=jdbc:h2:mem:startup-" + database);
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
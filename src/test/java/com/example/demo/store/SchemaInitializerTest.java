@@ -0,0 +1,85 @@
+package com.example.demo.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import com.example.demo.WebToDoApplication;
+import com.example.demo.entity.Task;
+import com.example.demo.service.TaskService;
+import com.example.demo.service.TaskStats;
+
+@DisplayName("永続化したストアのスキーマの適用のテスト")
+class SchemaInitializerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("版が無い場合のみschema.sqlとdata.sqlを流し、古い版の場合は流し直してもデータが重複しない")
+    void initializeOnce() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:file:" + dir.resolve("todo") + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        try {
+            SchemaInitializer initializer = new SchemaInitializer(dataSource);
+            assertTrue(initializer.initialize());
+            assertEquals(2, count(jdbcTemplate, "task"));
+            assertEquals(4, count(jdbcTemplate, "user"));
+
+            jdbcTemplate.update("DELETE FROM task WHERE id = 1");
+            assertFalse(initializer.initialize(), "最新の版では流さない");
+            assertEquals(1, count(jdbcTemplate, "task"));
+
+            //古い版のストアには流し直す（サンプルのタスクは空のテーブルにのみ登録する）
+            jdbcTemplate.update("UPDATE schema_version SET version = 0");
+            assertTrue(initializer.initialize());
+            assertEquals(1, count(jdbcTemplate, "task"));
+            assertEquals(3, count(jdbcTemplate, "task_type"));
+            assertEquals(4, count(jdbcTemplate, "user"));
+            assertEquals(SchemaInitializer.VERSION,
+                    jdbcTemplate.queryForObject("SELECT MAX(version) FROM schema_version", Integer.class));
+        } finally {
+            jdbcTemplate.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    @DisplayName("persistentプロファイルでは再起動してもデータが残る")
+    void restart() {
+        Task task = new Task();
+        task.setUserId(1);
+        task.setTypeId(2);
+        task.setTitle("再起動後も残る");
+        task.setDetail("詳細");
+        task.setDeadline(LocalDateTime.of(2099, 1, 1, 10, 0));
+        try (ConfigurableApplicationContext context = start()) {
+            context.getBean(TaskService.class).insert(task);
+        }
+        try (ConfigurableApplicationContext context = start()) {
+            assertEquals("再起動後も残る", context.getBean(TaskService.class).getTask(task.getId()).get().getTitle());
+            assertEquals(3, context.getBean(TaskStats.class).snapshot().getTotal());
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(WebToDoApplication.class)
+                .profiles("persistent")
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                //application-persistent.ymlより優先させるため、コマンドライン引数で指定する
+                .run("--server.port=0", "--spring.datasource.url=jdbc:h2:file:" + dir.resolve("todo") + ";DB_CLOSE_ON_EXIT=FALSE");
+    }
+
+    private int count(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
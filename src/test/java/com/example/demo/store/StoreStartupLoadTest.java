@@ -0,0 +1,104 @@
+package com.example.demo.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import com.example.demo.WebToDoApplication;
+import com.example.demo.service.TaskStats;
+
+/**
+ * 永続化したストアでの起動時間の計測
+ * 通常のテストには含めない ./gradlew loadTest で実行する
+ *
+ * 空のストア（スキーマの適用を含む）、適用済みの空のストア、TASKS件のタスクを持つストアの順に
+ * WebToDoApplicationを起動し、run()が返るまでの時間（ミリ秒）をテストの結果（TestReporter）に記録する
+ */
+@Tag("load")
+@DisplayName("永続化したストアでの起動時間の計測")
+class StoreStartupLoadTest {
+
+    private static final int TASKS = 1_000_000;
+
+    private static final int BATCH_SIZE = 10_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("空のストアと、100万件のタスクを持つストアでの起動時間")
+    void startupTime(TestReporter reporter) throws Exception {
+        Map<String, String> millis = new LinkedHashMap<>();
+        millis.put("newStore", String.valueOf(measure(2)));
+        millis.put("emptyStore", String.valueOf(measure(2)));
+        millis.put("insert" + TASKS, String.valueOf(loadTasks()));
+        millis.put("store" + TASKS, String.valueOf(measure(TASKS + 2)));
+        reporter.publishEntry(millis);
+    }
+
+    /**
+     * 起動してrun()が返るまでの時間 起動時の集計の件数でストアの内容を確かめる
+     */
+    private long measure(long expectedTasks) {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WebToDoApplication.class)
+                .profiles("persistent")
+                .properties("spring.main.banner-mode=off", "logging.level.root=WARN")
+                //application-persistent.ymlより優先させるため、コマンドライン引数で指定する
+                .run("--server.port=0", "--spring.datasource.url=" + url())) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(expectedTasks, context.getBean(TaskStats.class).getTotal());
+            return elapsed;
+        }
+    }
+
+    /**
+     * アプリを経ずにJDBCのバッチで投入する
+     */
+    private long loadTasks() {
+        long start = System.nanoTime();
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(), url(), "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        LocalDateTime base = LocalDateTime.of(2030, 1, 1, 9, 0);
+        jdbcTemplate.execute((java.sql.Connection con) -> {
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO task(user_id, type_id, title, detail, deadline) VALUES(?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= TASKS; i++) {
+                    ps.setInt(1, i % 4 + 1);
+                    ps.setInt(2, i % 3 + 1);
+                    ps.setString(3, "タスク" + i);
+                    ps.setString(4, "起動時間の計測用のタスク" + i);
+                    ps.setObject(5, base.plusMinutes(i));
+                    ps.addBatch();
+                    if (i % BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                        con.commit();
+                    }
+                }
+            }
+            return null;
+        });
+        jdbcTemplate.execute("SHUTDOWN");
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private String url() {
+        return "jdbc:h2:file:" + dir.resolve("todo") + ";DB_CLOSE_ON_EXIT=FALSE";
+    }
+}